@@ -0,0 +1,78 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.util.math.ChunkPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The original purge: one groupedChunksFinder flood fill per anchor, keeping the union of what they reach. Once on
+ * packed keys with the scratch space reused, and once with the original HashSet<ChunkPos> and LinkedList fill (see
+ * OriginalGroupedChunksFinder) the way the purge used to call it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupedChunksFinderBenchmark {
+    @Param
+    public WorldShape shape;
+
+    private LongHashSet loaded;
+    private Anchors anchors;
+    private Set<ChunkPos> loadedPositions;
+
+    private final LongHashSet grouped = new LongHashSet();
+    private final LongQueue queue = new LongQueue();
+
+    @Setup(Level.Trial)
+    public void generate() {
+        loaded = new LongHashSet();
+        anchors = new Anchors();
+        shape.generate(new Random(42), loaded, anchors);
+
+        loadedPositions = new HashSet<>(loaded.size());
+        loaded.forEach(chunk -> loadedPositions.add(new ChunkPos(ChunkKeys.x(chunk), ChunkKeys.z(chunk))));
+    }
+
+    @Benchmark
+    public int perAnchorKeys() {
+        LongHashSet reached = new LongHashSet();
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            reached.addAll(WorldChunkUnloader.groupedChunksFinder(loaded, anchors.getKey(anchor),
+                    anchors.getRadius(anchor), grouped, queue));
+        }
+        return reached.size();
+    }
+
+    @Benchmark
+    public int perAnchorChunkPos() {
+        Set<ChunkPos> reached = new HashSet<>();
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            long key = anchors.getKey(anchor);
+            reached.addAll(OriginalGroupedChunksFinder.groupedChunksFinder(loadedPositions,
+                    new ChunkPos(ChunkKeys.x(key), ChunkKeys.z(key)), anchors.getRadius(anchor)));
+        }
+        return reached.size();
+    }
+}
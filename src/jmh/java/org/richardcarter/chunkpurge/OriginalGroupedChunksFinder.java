@@ -0,0 +1,95 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+/*
+ * WorldChunkUnloader.groupedChunksFinder as it was before the purge moved to packed chunk keys, copied unchanged so
+ * that GroupedChunksFinderBenchmark measures the original against what replaced it. Nothing but the benchmarks uses
+ * it.
+ */
+final class OriginalGroupedChunksFinder {
+    private OriginalGroupedChunksFinder() {
+    }
+
+    /*
+     * A flood fill algorithm to find the shape of the loaded chunks surrounding a player-occupied chunk, or seed.
+     * Will not return chunks that are further than radiusLimit from the seed. Set radiusLimit to 0 in order to
+     * ignore any limit.
+     *
+     * 1. Set Q to the empty queue.
+     * 2. If the color of node is not equal to target-color, return.
+     * 3. Add node to Q.
+     * 4. For each element N of Q:
+     * 5.     If the color of N is equal to target-color:
+     * 6.         Set w and e equal to N.
+     * 7.         Move w to the west until the color of the node to the west of w no longer matches target-color.
+     * 8.         Move e to the east until the color of the node to the east of e no longer matches target-color.
+     * 9.         For each node n between w and e:
+     * 10.             Set the color of n to replacement-color.
+     * 11.             If the color of the node to the north of n is target-color, add that node to Q.
+     * 12.             If the color of the node to the south of n is target-color, add that node to Q.
+     * 13. Continue looping until Q is exhausted.
+     * 14. Return
+     */
+    static Set<ChunkPos> groupedChunksFinder(Set<ChunkPos> loadedChunks, ChunkPos seed, int radiusLimit)
+    {
+
+        LinkedList<ChunkPos> queue = new LinkedList<>();
+        Set<ChunkPos> groupedChunks = new HashSet<>();
+
+        if (!loadedChunks.contains(seed)) return groupedChunks;
+        queue.add(seed);
+
+        while (!queue.isEmpty())
+        {
+
+            ChunkPos chunk = queue.remove();
+
+            if (!groupedChunks.contains(chunk))
+            {
+                int west, east;
+
+                for (west = chunk.x;
+                     loadedChunks.contains(new ChunkPos(west-1, chunk.z))
+                             && (radiusLimit <= 0 || Math.abs(west-1 - seed.x) <= radiusLimit);
+                     --west);
+
+                for (east = chunk.x;
+                     loadedChunks.contains(new ChunkPos(east+1, chunk.z))
+                             && (radiusLimit <= 0 || Math.abs(east+1 - seed.x) <= radiusLimit);
+                     ++east);
+
+                for (int x = west; x <= east; ++x)
+                {
+
+                    groupedChunks.add(new ChunkPos(x, chunk.z));
+
+                    if (loadedChunks.contains(new ChunkPos(x, chunk.z+1))
+                            && (radiusLimit <= 0 || Math.abs(chunk.z+1 - seed.z) <= radiusLimit))
+                    {
+
+                        queue.add(new ChunkPos (x, chunk.z+1));
+
+                    }
+
+                    if (loadedChunks.contains(new ChunkPos(x, chunk.z-1))
+                            && (radiusLimit <= 0 || Math.abs(chunk.z-1 - seed.z) <= radiusLimit))
+                    {
+
+                        queue.add(new ChunkPos (x, chunk.z-1));
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return groupedChunks;
+    }
+}
@@ -0,0 +1,117 @@
+package org.richardcarter.chunkpurge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.richardcarter.chunkpurge.reachability.AnchorType;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.MultiSourceFloodFill;
+import org.richardcarter.chunkpurge.reachability.OrphanGroups;
+import org.richardcarter.chunkpurge.reachability.PurgeAnalysis;
+import org.richardcarter.chunkpurge.reachability.PurgeSnapshot;
+import org.richardcarter.chunkpurge.reachability.ReachabilityIndex;
+import org.richardcarter.chunkpurge.reachability.UnloadQueue;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * What a purge does from the anchors to the queue of chunks to unload, as findChunksToUnload and the async analysis
+ * run it, without the world around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PurgePipelineBenchmark {
+    @Param
+    public WorldShape shape;
+
+    private LongHashSet loaded;
+    private Anchors anchors;
+    private long[] loadedArray;
+
+    // for incrementalUpdate: the index after a full purge, and two anchor sets it alternates between
+    private ReachabilityIndex index;
+    private Anchors movedAnchors;
+    private boolean moved;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        loaded = new LongHashSet();
+        anchors = new Anchors();
+        shape.generate(new Random(42), loaded, anchors);
+        loadedArray = loaded.toArray();
+
+        // every player walks one chunk, as they would between two purges
+        movedAnchors = new Anchors();
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            long key = anchors.getKey(anchor);
+            AnchorType type = anchors.getType(anchor);
+            if (type == AnchorType.PLAYER) {
+                key = ChunkKeys.of(ChunkKeys.x(key) + 1, ChunkKeys.z(key));
+            }
+            movedAnchors.add(key, anchors.getRadius(anchor), type);
+        }
+
+        index = new ReachabilityIndex();
+        loaded.forEach(index::chunkLoaded);
+        index.setAnchors(anchors);
+        index.update();
+    }
+
+    @Benchmark
+    public int floodFill() {
+        return MultiSourceFloodFill.find(loaded, anchors).size();
+    }
+
+    /*
+     * The whole synchronous purge of a world seen for the first time: fill, find orphan groups, queue them.
+     */
+    @Benchmark
+    public int fullPurge() {
+        ReachabilityIndex fresh = new ReachabilityIndex();
+        for (long chunk : loadedArray) {
+            fresh.chunkLoaded(chunk);
+        }
+        fresh.setAnchors(anchors);
+        fresh.update();
+        return queue(fresh);
+    }
+
+    /*
+     * A later purge, after the players moved: only what they affected is filled again.
+     */
+    @Benchmark
+    public int incrementalUpdate() {
+        moved = !moved;
+        index.setAnchors(moved ? movedAnchors : anchors);
+        index.update();
+        return queue(index);
+    }
+
+    @Benchmark
+    public PurgeAnalysis asyncAnalysis() {
+        return PurgeAnalysis.analyse(new PurgeSnapshot(0, loadedArray, anchors));
+    }
+
+    private int queue(ReachabilityIndex index) {
+        OrphanGroups orphans = OrphanGroups.find(index.getOrphans(), index.getOrphanCount(), index::isOrphan);
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(orphans, anchors.distancesTo(orphans.getChunks()), anchors);
+        return queue.size();
+    }
+}
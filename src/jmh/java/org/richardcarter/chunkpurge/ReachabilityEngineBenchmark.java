@@ -0,0 +1,62 @@
+package org.richardcarter.chunkpurge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.PurgeAnalysis;
+import org.richardcarter.chunkpurge.reachability.PurgeSnapshot;
+import org.richardcarter.chunkpurge.reachability.ReachabilityEngine;
+import org.richardcarter.chunkpurge.reachability.ReachedChunks;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The ReachabilityEngines side by side, on their own and as part of a whole analysis, e.g.
+ * gradle jmh -PjmhArgs="-prof gc ReachabilityEngineBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReachabilityEngineBenchmark {
+    @Param
+    public WorldShape shape;
+
+    @Param
+    public ReachabilityEngine engine;
+
+    private Anchors anchors;
+    private long[] loadedArray;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        LongHashSet loaded = new LongHashSet();
+        anchors = new Anchors();
+        shape.generate(new Random(42), loaded, anchors);
+        loadedArray = loaded.toArray();
+    }
+
+    @Benchmark
+    public ReachedChunks find() {
+        return engine.find(loadedArray, anchors);
+    }
+
+    @Benchmark
+    public PurgeAnalysis analyse() {
+        return PurgeAnalysis.analyse(new PurgeSnapshot(0, loadedArray, anchors), engine);
+    }
+}
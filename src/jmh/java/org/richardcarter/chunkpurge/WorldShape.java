@@ -0,0 +1,112 @@
+package org.richardcarter.chunkpurge;
+
+import org.richardcarter.chunkpurge.reachability.AnchorType;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Random;
+
+/*
+ * Generated dimensions for the benchmarks: the loaded chunks and the anchors that keep them loaded, shaped like the
+ * worlds the purge struggles with. Radii are the defaults: view distance 10 plus ignoreRadiusPlayer for players,
+ * ignoreRadiusTicket for tickets and ignoreRadiusSpawn for the spawn.
+ */
+public enum WorldShape {
+    // a few players, and chunks loaded all over the place by mods and machines
+    SPARSE {
+        @Override
+        void generate(Random random, LongHashSet loaded, Anchors anchors) {
+            addSpawn(loaded, anchors);
+            for (int i = 0; i < 8; i++) {
+                addPlayer(random, loaded, anchors, 2000);
+            }
+            for (int i = 0; i < 40_000; i++) {
+                loaded.add(ChunkKeys.of(random.nextInt(4000) - 2000, random.nextInt(4000) - 2000));
+            }
+        }
+    },
+    // everything connected: one player sitting in a 300 by 300 area someone flew around
+    BLOB {
+        @Override
+        void generate(Random random, LongHashSet loaded, Anchors anchors) {
+            addSquare(loaded, 0, 0, 150);
+            anchors.add(ChunkKeys.of(0, 0), PLAYER_RADIUS, AnchorType.PLAYER);
+        }
+    },
+    // long thin strips of chunks mined out by quarries, each with its ticket at one end
+    QUARRY_STRIPS {
+        @Override
+        void generate(Random random, LongHashSet loaded, Anchors anchors) {
+            addSpawn(loaded, anchors);
+            for (int strip = 0; strip < 100; strip++) {
+                int x = random.nextInt(2000) - 1000;
+                int z = random.nextInt(2000) - 1000;
+                boolean alongX = random.nextBoolean();
+                for (int i = 0; i < 500; i++) {
+                    loaded.add(alongX ? ChunkKeys.of(x + i, z) : ChunkKeys.of(x, z + i));
+                }
+                anchors.add(ChunkKeys.of(x, z), TICKET_RADIUS, AnchorType.TICKET);
+            }
+        }
+    },
+    // hundreds of bases kept loaded by chunk loaders, most of them with more loaded around them than the tickets cover
+    TICKETED_BASES {
+        @Override
+        void generate(Random random, LongHashSet loaded, Anchors anchors) {
+            addSpawn(loaded, anchors);
+            for (int base = 0; base < 400; base++) {
+                int x = random.nextInt(3000) - 1500;
+                int z = random.nextInt(3000) - 1500;
+                addSquare(loaded, x, z, 4 + random.nextInt(8));
+                for (int ticket = random.nextInt(4); ticket >= 0; ticket--) {
+                    anchors.add(ChunkKeys.of(x + random.nextInt(5) - 2, z + random.nextInt(5) - 2), TICKET_RADIUS,
+                            AnchorType.TICKET);
+                }
+            }
+        }
+    },
+    // a busy server: 100 players spread out, each with their view distance loaded and a trail behind them
+    SPREAD_PLAYERS {
+        @Override
+        void generate(Random random, LongHashSet loaded, Anchors anchors) {
+            addSpawn(loaded, anchors);
+            for (int i = 0; i < 100; i++) {
+                long player = addPlayer(random, loaded, anchors, 3000);
+                int x = ChunkKeys.x(player);
+                int z = ChunkKeys.z(player);
+                for (int step = 0; step < 200; step++) {
+                    x += random.nextInt(3) - 1;
+                    z += random.nextInt(3) - 1;
+                    addSquare(loaded, x, z, 2);
+                }
+            }
+        }
+    };
+
+    static final int PLAYER_RADIUS = 14;
+    static final int TICKET_RADIUS = 5;
+    static final int SPAWN_RADIUS = 10;
+
+    abstract void generate(Random random, LongHashSet loaded, Anchors anchors);
+
+    private static void addSquare(LongHashSet loaded, int centreX, int centreZ, int radius) {
+        for (int x = centreX - radius; x <= centreX + radius; x++) {
+            for (int z = centreZ - radius; z <= centreZ + radius; z++) {
+                loaded.add(ChunkKeys.of(x, z));
+            }
+        }
+    }
+
+    private static long addPlayer(Random random, LongHashSet loaded, Anchors anchors, int spread) {
+        long chunk = ChunkKeys.of(random.nextInt(2 * spread) - spread, random.nextInt(2 * spread) - spread);
+        addSquare(loaded, ChunkKeys.x(chunk), ChunkKeys.z(chunk), 10);
+        anchors.add(chunk, PLAYER_RADIUS, AnchorType.PLAYER);
+        return chunk;
+    }
+
+    private static void addSpawn(LongHashSet loaded, Anchors anchors) {
+        addSquare(loaded, 0, 0, 12);
+        anchors.add(ChunkKeys.of(0, 0), SPAWN_RADIUS, AnchorType.SPAWN);
+    }
+}
@@ -0,0 +1,116 @@
+package org.richardcarter.chunkpurge;
+
+import lombok.Value;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.ITickable;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import org.richardcarter.chunkpurge.metrics.TickCosts;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * What a loaded chunk costs the server to keep ticking, as a weighted count of what it holds: ticking tile entities
+ * (machines, hoppers, furnaces and the like) weigh most, other entities (mobs, items on the ground) less. Empty
+ * terrain costs nothing. If TickCostSampler timed the chunk's updates, the time they took counts on top. With
+ * costWeightedUnloads on, the UnloadQueue hands over the costliest orphans first.
+ */
+public final class ChunkCost {
+    @Value
+    public static class Costly {
+        long chunk;
+        int tickingTileEntities;
+        int entities;
+        // as measured by the last tick cost sample, 0 if there was none
+        int nanosPerTick;
+
+        public int getCost() {
+            return cost(tickingTileEntities, entities, nanosPerTick);
+        }
+    }
+
+    static final int TICKING_TILE_ENTITY_COST = 10;
+    static final int ENTITY_COST = 1;
+    // a measured microsecond per tick costs as much as an entity
+    static final int NANOS_PER_COST = 1000;
+
+    private ChunkCost() {
+    }
+
+    /*
+     * The loaded chunk, without cancelling an unload the world has queued for it the way getLoadedChunk would.
+     */
+    @Nullable
+    static Chunk peek(WorldServer world, long key) {
+        return world.getChunkProvider().id2ChunkMap.get(key);
+    }
+
+    static int tickingTileEntities(Chunk chunk) {
+        int count = 0;
+        for (TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+            if (tileEntity instanceof ITickable) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static int entities(Chunk chunk) {
+        int count = 0;
+        for (ClassInheritanceMultiMap<?> section : chunk.getEntityLists()) {
+            count += section.size();
+        }
+        return count;
+    }
+
+    static int cost(int tickingTileEntities, int entities, int nanosPerTick) {
+        return tickingTileEntities * TICKING_TILE_ENTITY_COST + entities * ENTITY_COST + nanosPerTick / NANOS_PER_COST;
+    }
+
+    /*
+     * The cost of each of the chunks, 0 for ones that aren't loaded.
+     */
+    static int[] of(WorldServer world, long[] chunks) {
+        TickCosts measured = WorldPurgeState.get(world).tickCosts;
+        int[] costs = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            Chunk chunk = peek(world, chunks[i]);
+            costs[i] = chunk == null ? 0
+                    : cost(tickingTileEntities(chunk), entities(chunk), measured.getNanosPerTick(chunks[i]));
+        }
+        return costs;
+    }
+
+    /*
+     * The max costliest chunks waiting in the dimension's unload queue, costliest first, as they are now. Chunks that
+     * cost nothing are left out.
+     */
+    public static List<Costly> getCostliestQueued(WorldServer world, int max) {
+        Comparator<Costly> byCost = Comparator.comparingInt(Costly::getCost);
+        PriorityQueue<Costly> costliest = new PriorityQueue<>(byCost);
+        WorldPurgeState state = WorldPurgeState.get(world);
+        state.unloadQueue.forEach(key -> {
+            Chunk chunk = peek(world, key);
+            if (chunk == null) {
+                return;
+            }
+            Costly costly = new Costly(key, tickingTileEntities(chunk), entities(chunk),
+                    state.tickCosts.getNanosPerTick(key));
+            if (costly.getCost() == 0) {
+                return;
+            }
+            costliest.add(costly);
+            if (costliest.size() > max) {
+                costliest.remove();
+            }
+        });
+        List<Costly> list = new ArrayList<>(costliest);
+        list.sort(byCost.reversed());
+        return list;
+    }
+}
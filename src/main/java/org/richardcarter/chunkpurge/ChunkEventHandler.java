@@ -0,0 +1,144 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.common.ForgeChunkManager.ForceChunkEvent;
+import net.minecraftforge.common.ForgeChunkManager.UnforceChunkEvent;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.entity.EntityEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerRespawnEvent;
+import org.richardcarter.chunkpurge.metrics.LoadCauses;
+import org.richardcarter.chunkpurge.reachability.AnchorRegistry;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import javax.annotation.Nullable;
+
+/*
+ * Keeps each dimension's ReachabilityIndex and AnchorRegistry in step with the world, so purges don't have to rebuild
+ * them from ChunkProviderServer.getLoadedChunks(), the player list and the forced chunks every time. With
+ * ChunkPurgeConfig.loadCauseSampling on, it also finds out what some of the chunk loads came from (see LoadCauses).
+ */
+public class ChunkEventHandler {
+    // chunk loads since the last one whose cause was sampled
+    private int loadsSinceSample;
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        if (!(event.getWorld() instanceof WorldServer)) {
+            return;
+        }
+        Chunk chunk = event.getChunk();
+        WorldServer world = (WorldServer) event.getWorld();
+        WorldPurgeState state = WorldPurgeState.get(world);
+        long key = ChunkPos.asLong(chunk.x, chunk.z);
+        state.chunkLoaded(key, (int) world.getTotalWorldTime());
+
+        int sampling = ChunkPurgeConfig.loadCauseSampling;
+        if (sampling > 0 && ++loadsSinceSample >= sampling) {
+            loadsSinceSample = 0;
+            state.loadCauses.record(LoadCauses.sourceOf(Thread.currentThread().getStackTrace()),
+                    ChunkKeys.region(key));
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (!(event.getWorld() instanceof WorldServer)) {
+            return;
+        }
+        Chunk chunk = event.getChunk();
+        WorldPurgeState.get((WorldServer) event.getWorld()).chunkUnloaded(ChunkPos.asLong(chunk.x, chunk.z));
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (event.getWorld() instanceof WorldServer) {
+            WorldPurgeState.remove((WorldServer) event.getWorld());
+        }
+    }
+
+    @SubscribeEvent
+    public void onEnteringChunk(EntityEvent.EnteringChunk event) {
+        if (event.getEntity() instanceof EntityPlayerMP && !(event.getEntity() instanceof FakePlayer)) {
+            AnchorRegistry registry = registry(event.getEntity().world);
+            if (registry != null) {
+                registry.playerEntered(event.getEntity().getEntityId(),
+                        ChunkKeys.of(event.getNewChunkX(), event.getNewChunkZ()));
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerLoggedInEvent event) {
+        playerEntered(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerLoggedOutEvent event) {
+        playerLeft(event.player.world, event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerChangedDimensionEvent event) {
+        playerLeft(DimensionManager.getWorld(event.fromDim), event.player);
+        playerEntered(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        // respawning can move the player to another dimension without a PlayerChangedDimensionEvent
+        for (WorldServer world : DimensionManager.getWorlds()) {
+            if (world != event.player.world) {
+                playerLeft(world, event.player);
+            }
+        }
+        playerEntered(event.player);
+    }
+
+    @SubscribeEvent
+    public void onForceChunk(ForceChunkEvent event) {
+        ticketsChanged(event.getTicket().world);
+    }
+
+    @SubscribeEvent
+    public void onUnforceChunk(UnforceChunkEvent event) {
+        ticketsChanged(event.getTicket().world);
+    }
+
+    private void playerEntered(EntityPlayer player) {
+        AnchorRegistry registry = registry(player.world);
+        if (registry != null && !(player instanceof FakePlayer)) {
+            registry.playerEntered(player.getEntityId(), ChunkKeys.of(player.chunkCoordX, player.chunkCoordZ));
+        }
+    }
+
+    private void playerLeft(@Nullable World world, EntityPlayer player) {
+        AnchorRegistry registry = registry(world);
+        if (registry != null) {
+            registry.playerLeft(player.getEntityId());
+        }
+    }
+
+    private void ticketsChanged(World world) {
+        AnchorRegistry registry = registry(world);
+        if (registry != null) {
+            registry.ticketsChanged();
+        }
+    }
+
+    @Nullable
+    private AnchorRegistry registry(@Nullable World world) {
+        return world instanceof WorldServer ? WorldPurgeState.get((WorldServer) world).registry : null;
+    }
+}
@@ -3,16 +3,132 @@ package org.richardcarter.chunkpurge;
 import net.minecraftforge.common.config.Config;
 import net.minecraftforge.common.config.Config.Comment;
 import net.minecraftforge.common.config.Config.RangeInt;
+import org.richardcarter.chunkpurge.reachability.ReachabilityEngine;
 
 @Config(modid = ChunkPurgeMod.MODID)
 public class ChunkPurgeConfig {
     @Comment("Enable the automatic chunk purge behavior")
     public static boolean autoChunkPurgeEnabled = true;
 
-    @Comment("Interval (in ticks) between chunk purge scans")
+    @Comment("Interval (in ticks) between chunk purge scans; the longest one when adaptivePurgeInterval is on")
     @RangeInt(min = 1)
     public static int autoChunkPurgeInterval = 600;
 
+    @Comment({"Purge each dimension sooner while its loaded chunks grow or purges find many orphaned chunks, and less",
+            "often while purges find nothing or the server is busy, between autoChunkPurgeMinInterval and",
+            "autoChunkPurgeInterval. Off to purge every autoChunkPurgeInterval ticks"})
+    public static boolean adaptivePurgeInterval = true;
+
+    @Comment("Shortest interval (in ticks) between chunk purge scans of a dimension when adaptivePurgeInterval is on")
+    @RangeInt(min = 1)
+    public static int autoChunkPurgeMinInterval = 100;
+
+    @Comment({"Time (in milliseconds) a chunk purge scan may take per tick; longer scans carry on over the next ticks",
+            "and only unload chunks once they finish. 0 to always finish the scan in one tick"})
+    @RangeInt(min = 0)
+    public static int scanTimeBudgetMs = 10;
+
+    @Comment({"When a player logs out or leaves a dimension, right away queue the loaded chunks around where they were",
+            "for unloading if no other player, chunk loader or spawn connects to them, rather than waiting for the next",
+            "scan. Only that area is looked at"})
+    public static boolean purgeOnPlayerLeave = true;
+
+    @Comment({"Run chunk purge scans on a background thread. The server thread only copies the loaded chunks and",
+            "anchors beforehand and queues the orphaned chunks afterwards; scanTimeBudgetMs does not apply"})
+    public static boolean asyncScan = false;
+
+    @Comment({"How background scans (asyncScan) work out which chunks link back to players, chunk loaders and spawn:",
+            "FLOOD_FILL visits chunk by chunk, BITMAP fills 64 chunks at a time on a bitmap per region file, UNION_FIND",
+            "labels connected groups of loaded chunks once and only checks radius limits in the groups that are kept.",
+            "All find the same chunks; BITMAP is faster when most loaded chunks are kept, FLOOD_FILL when they are",
+            "scattered, and UNION_FIND stays about as fast however many players and chunk loaders there are"})
+    public static ReachabilityEngine reachabilityEngine = ReachabilityEngine.FLOOD_FILL;
+
+    @Comment({"Number of background threads that scan dimensions in parallel when asyncScan is on. 0 for one per core,",
+            "less the one the server thread runs on. Only read when the first scan starts"})
+    @RangeInt(min = 0)
+    public static int analysisThreads = 0;
+
+    @Comment({"Chunks a purge hands to the world for unloading per tick, farthest from players, chunk loaders and spawn",
+            "first. The world unloads at most 100 chunks a tick, so more than that only builds a backlog there"})
+    @RangeInt(min = 1)
+    public static int unloadsPerTick = 100;
+
+    @Comment({"Region files (32 by 32 chunks) whose chunks a purge hands to the world per tick. Chunks go one region",
+            "after the other regardless, this stops early to save one region file at a time. 0 for no limit"})
+    @RangeInt(min = 0)
+    public static int unloadRegionsPerTick = 0;
+
+    @Comment({"Hand the orphaned chunks that cost most to keep loaded to the world first, by their ticking tile entities",
+            "and entities, so a limited unloadsPerTick frees the most server time soonest. Distance only settles ties.",
+            "If false, the chunks farthest from players, chunk loaders and spawn go first. Counting what each orphan holds",
+            "takes a pass over its tile entities and entities on the server thread whenever orphans are queued"})
+    public static boolean costWeightedUnloads = false;
+
+    @Comment({"Every this many ticks, time every tile entity and entity update for 20 ticks to find the chunks that cost",
+            "the most tick time, for costWeightedUnloads and /chunkpurge tickcost. This uses the tracker behind /forge",
+            "track, so don't sample while using that. Values under 400 count as 400. 0 to never sample"})
+    @RangeInt(min = 0)
+    public static int tickSampleIntervalTicks = 0;
+
+    @Comment({"Of every this many chunk loads, look at what loaded one (the mod, block or entity on the call stack) and",
+            "count it for /chunkpurge causes, to find what keeps loading chunks. Looking costs a stack trace per",
+            "sampled load. 0 to never look"})
+    @RangeInt(min = 0)
+    public static int loadCauseSampling = 0;
+
+    @Comment({"Ticks a chunk must have been cut off from players, chunk loaders and spawn before a purge unloads it, so",
+            "chunks a player only just walked away from stay loaded for when they come back. Purges triggered by heap",
+            "pressure don't wait. 0 to unload orphaned chunks as soon as a purge finds them"})
+    @RangeInt(min = 0)
+    public static int minIdleTicks = 1200;
+
+    @Comment({"Of the chunks handed to the world per tick, how many may be ones that were reloaded repeatedly soon after",
+            "a purge unloaded them. The others wait in the queue, behind chunks that stayed unloaded"})
+    @RangeInt(min = 0)
+    public static int reloadedUnloadsPerTick = 10;
+
+    @Comment({"Keep a chunk and the chunks around it loaded for thrashPinTicks, as if it had a chunk loader, once it has",
+            "loaded again soon after a purge unloaded it this many times within thrashWindowTicks. 0 to disable"})
+    @RangeInt(min = 0)
+    public static int thrashPinReloads = 3;
+
+    @Comment("Ticks over which reloads of a chunk count towards thrashPinReloads")
+    @RangeInt(min = 1)
+    public static int thrashWindowTicks = 12000;
+
+    @Comment("Radius (in chunks) kept loaded around a chunk pinned for reloading too often")
+    @RangeInt(min = 1)
+    public static int thrashPinRadius = 2;
+
+    @Comment("Ticks a chunk stays pinned after its last reload")
+    @RangeInt(min = 1)
+    public static int thrashPinTicks = 36000;
+
+    @Comment("Record chunk loads and unloads, tickets and player movement of every dimension to trace files")
+    public static boolean traceEnabled = false;
+
+    @Comment("Directory to write chunk traces to, relative to the server directory")
+    public static String traceDirectory = "chunkpurge-traces";
+
+    @Comment("Size (in MB) at which a dimension's chunk trace is continued in a new file")
+    @RangeInt(min = 1)
+    public static int traceMaxFileMb = 64;
+
+    @Comment("Number of chunk trace files to keep per dimension; older ones are deleted")
+    @RangeInt(min = 1)
+    public static int traceMaxFiles = 8;
+
+    @Comment({"Purge every dimension right away when the old generation of the heap is still this full (in percent)",
+            "after a garbage collection. 0 to disable"})
+    @RangeInt(min = 0, max = 100)
+    public static int heapPressureThresholdPercent = 85;
+
+    @Comment({"Ticket, spawn and additional player radii (in percent of the configured ones) used by purges triggered",
+            "by heap pressure, until the chunks they found are unloaded. Players always keep their view distance"})
+    @RangeInt(min = 1, max = 100)
+    public static int heapPressureRadiusPercent = 100;
+
     @Comment("Enable debug stuff")
     public static boolean debug = false;
 
@@ -0,0 +1,161 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import org.richardcarter.chunkpurge.metrics.PurgeMetrics;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Purges every dimension out of turn when the heap is filling up, rather than waiting for the scheduler while players
+ * load chunks faster than the purges get rid of them.
+ *
+ * The JVM notifies us when the old generation is still over ChunkPurgeConfig.heapPressureThresholdPercent full after
+ * a collection (a collection usage threshold). The notification only sets a flag; on the next server tick every
+ * world is asked to purge and put into emergencyPurge, which tightens its radii by heapPressureRadiusPercent until
+ * the chunks that purge found have gone. After that, further notifications are ignored for COOLDOWN_SECONDS so the
+ * chunks have a chance to actually unload and be collected. A change to the threshold sets the pools up again on the
+ * next server tick.
+ */
+public class HeapPressureMonitor implements NotificationListener {
+    private static final long COOLDOWN_SECONDS = 30;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    // the threshold the pools were set up with, -1 while stopped
+    private int armedPercent = -1;
+    // the pool usage behind the last notification not yet acted on
+    private final AtomicReference<String> pressure = new AtomicReference<>();
+    private boolean emergencyRunning;
+    private boolean triggeredBefore;
+    private long lastTriggerNanos;
+
+    public void start() {
+        if (!pools.isEmpty()) {
+            return;
+        }
+        armedPercent = ChunkPurgeConfig.heapPressureThresholdPercent;
+        if (armedPercent <= 0) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // the old generation: young pools support collection usage thresholds too, but not usage thresholds
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold(max / 100 * armedPercent);
+                pools.add(pool);
+            }
+        }
+        if (pools.isEmpty()) {
+            ChunkPurgeMod.log.warn("No heap memory pool supports usage thresholds, heap pressure purges are disabled");
+            return;
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+    }
+
+    public void stop() {
+        armedPercent = -1;
+        if (pools.isEmpty()) {
+            return;
+        }
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // never added
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            pool.setCollectionUsageThreshold(0);
+        }
+        pools.clear();
+        pressure.set(null);
+    }
+
+    /*
+     * Called on a JMX thread.
+     */
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            return;
+        }
+        MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+        MemoryUsage usage = info.getUsage();
+        pressure.set(info.getPoolName() + " " + (usage.getUsed() * 100 / usage.getMax()) + "% full after GC");
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != Phase.END) {
+            return;
+        }
+        if (armedPercent >= 0 && armedPercent != ChunkPurgeConfig.heapPressureThresholdPercent) {
+            stop();
+            start();
+        }
+        if (emergencyRunning) {
+            emergencyRunning = finishEmergencies();
+        }
+
+        String reason = pressure.getAndSet(null);
+        if (reason == null || !ChunkPurgeConfig.autoChunkPurgeEnabled || emergencyRunning
+                || (triggeredBefore && System.nanoTime() - lastTriggerNanos < TimeUnit.SECONDS.toNanos(COOLDOWN_SECONDS))) {
+            return;
+        }
+
+        ChunkPurgeMod.log.warn("Heap pressure (" + reason + "), purging every dimension");
+        PurgeMetrics.emergencyTriggered();
+        triggeredBefore = true;
+        lastTriggerNanos = System.nanoTime();
+        emergencyRunning = true;
+        for (WorldServer world : DimensionManager.getWorlds()) {
+            WorldPurgeState state = WorldPurgeState.get(world);
+            state.emergencyPurge = true;
+            state.emergencyScanFinished = false;
+            state.emergencyHandedOver.clear();
+            state.emergencyUnloaded = 0;
+            state.purgeRequested = true;
+        }
+    }
+
+    /*
+     * Go back to the normal radii in every world whose emergency purge is done and whose queue has run out, or in all
+     * of them once purging is turned off. Returns whether any world is still at it.
+     */
+    private boolean finishEmergencies() {
+        boolean anyLeft = false;
+        for (WorldServer world : DimensionManager.getWorlds()) {
+            WorldPurgeState state = WorldPurgeState.get(world);
+            if (!state.emergencyPurge) {
+                continue;
+            }
+            if (!ChunkPurgeConfig.autoChunkPurgeEnabled
+                    || (state.emergencyScanFinished && state.unloadQueue.isEmpty())) {
+                state.emergencyPurge = false;
+                // chunks handed over in the last ticks may not be gone yet; they are still counted when they are
+                ChunkPurgeMod.log.warn("Heap pressure purge unloaded " + state.emergencyUnloaded + " chunks in dim "
+                        + world.provider.getDimension());
+                // the radii grow back, so the anchors have to be collected again
+                state.registry.changed();
+            } else {
+                anyLeft = true;
+            }
+        }
+        return anyLeft;
+    }
+}
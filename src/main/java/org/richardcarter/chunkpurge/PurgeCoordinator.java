@@ -0,0 +1,131 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Purges the dimensions when ChunkPurgeConfig.asyncScan is enabled. Whenever a dimension's PurgeScheduler says it is
+ * due, it is snapshotted on the server thread and analysed on the PurgeExecutor pool, side by side with any other
+ * dimension's analysis. Each result is applied on the server thread, in its own world, as soon as it is ready; a
+ * dimension's scheduler only starts counting towards its next purge once that is done.
+ *
+ * Dimensions that were asked to purge over JMX (see WorldPurgeState.purgeRequested) are purged on the next tick, or
+ * as soon as their running analysis is in. Otherwise a purge is skipped when no chunk loaded or unloaded and no
+ * anchor changed since the last one.
+ *
+ * With debug on, the time each dimension cost is logged whenever no analysis is left running, costliest first.
+ */
+public class PurgeCoordinator {
+    private static final int LOGGED_DIMENSIONS = 5;
+
+    private final List<WorldServer> inProgress = new ArrayList<>();
+    private final List<WorldServer> round = new ArrayList<>();
+    private long roundStartTime;
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != Phase.END) {
+            return;
+        }
+
+        if (!inProgress.isEmpty()) {
+            // results are applied even if purging was switched off meanwhile; they were safe when they were taken
+            applyFinished();
+        }
+
+        if (!ChunkPurgeConfig.autoChunkPurgeEnabled || !ChunkPurgeConfig.asyncScan) {
+            return;
+        }
+
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        double meanTickMillis = WorldTickHandler.getMeanTickMillis(server);
+        boolean playersOnline = WorldPurgeState.hasRealPlayers();
+        for (WorldServer world : DimensionManager.getWorlds()) {
+            WorldPurgeState state = WorldPurgeState.get(world);
+            if (state.pendingAnalysis != null) {
+                // the scheduler starts counting again once this one is in
+                continue;
+            }
+            boolean due = state.scheduler.tick(state.index.getLoadedCount(), meanTickMillis);
+            // if nobody is online, skip unloading. A purge requested over JMX goes ahead regardless.
+            if (state.purgeRequested) {
+                state.purgeRequested = false;
+                startAnalysis(world);
+            } else if (due && playersOnline) {
+                WorldChunkUnloader worldChunkUnloader = new WorldChunkUnloader(world);
+                if (worldChunkUnloader.unchangedSinceLastScan()) {
+                    worldChunkUnloader.scanSkipped();
+                } else {
+                    startAnalysis(world);
+                }
+            }
+        }
+    }
+
+    private void startAnalysis(WorldServer world) {
+        if (new WorldChunkUnloader(world).startAnalysis()) {
+            if (round.isEmpty()) {
+                roundStartTime = System.nanoTime();
+            }
+            inProgress.add(world);
+            round.add(world);
+        }
+    }
+
+    private void applyFinished() {
+        Iterator<WorldServer> iterator = inProgress.iterator();
+        while (iterator.hasNext()) {
+            WorldServer world = iterator.next();
+            if (DimensionManager.getWorld(world.provider.getDimension()) != world) {
+                // unloaded while it was being analysed
+                iterator.remove();
+                round.remove(world);
+                continue;
+            }
+            if (new WorldChunkUnloader(world).applyAnalysis() >= 0) {
+                iterator.remove();
+            }
+        }
+
+        if (inProgress.isEmpty()) {
+            if (ChunkPurgeConfig.debug) {
+                logRound();
+            }
+            round.clear();
+        }
+    }
+
+    private void logRound() {
+        round.sort(Comparator.comparingLong((WorldServer world) -> {
+            WorldPurgeState state = WorldPurgeState.get(world);
+            return state.lastAnalysisNanos + state.lastMainThreadNanos;
+        }).reversed());
+
+        StringBuilder logMessage = new StringBuilder()
+                .append("Purged ").append(round.size()).append(" dims in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundStartTime))
+                .append(" ms on ").append(PurgeExecutor.getParallelism()).append(" threads. Costliest:");
+        for (int i = 0; i < round.size() && i < LOGGED_DIMENSIONS; i++) {
+            WorldServer world = round.get(i);
+            WorldPurgeState state = WorldPurgeState.get(world);
+            logMessage.append(i == 0 ? " " : ", ")
+                    .append(world.provider.getDimensionType().getName())
+                    .append(" (").append(world.provider.getDimension()).append(") ")
+                    .append(TimeUnit.NANOSECONDS.toMicros(state.lastAnalysisNanos) / 1000.0).append("/")
+                    .append(TimeUnit.NANOSECONDS.toMicros(state.lastMainThreadNanos) / 1000.0).append(" ms");
+        }
+        logMessage.append(" (off/on the server thread)");
+        ChunkPurgeMod.log.info(logMessage.toString());
+    }
+}
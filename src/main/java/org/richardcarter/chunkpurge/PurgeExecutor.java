@@ -0,0 +1,50 @@
+package org.richardcarter.chunkpurge;
+
+import org.richardcarter.chunkpurge.jfr.PhaseEvent;
+import org.richardcarter.chunkpurge.jfr.PurgeEvents;
+import org.richardcarter.chunkpurge.jfr.PurgePhase;
+import org.richardcarter.chunkpurge.reachability.PurgeAnalysis;
+import org.richardcarter.chunkpurge.reachability.PurgeSnapshot;
+import org.richardcarter.chunkpurge.reachability.ReachabilityEngine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/*
+ * The pool purge analyses run on when ChunkPurgeConfig.asyncScan is enabled, so that the analyses of many dimensions
+ * can run side by side. It is created on first use with ChunkPurgeConfig.analysisThreads threads, or by default one
+ * for every core except the server thread's. Its threads are daemons, so it never holds up the server shutting down;
+ * an analysis that gets cut short is simply never applied.
+ */
+public class PurgeExecutor {
+    private static ForkJoinPool pool;
+
+    static Future<PurgeAnalysis> submit(PurgeSnapshot snapshot, ReachabilityEngine engine) {
+        return getPool().submit(() -> {
+            PhaseEvent event = PurgeEvents.begin(PurgePhase.ORPHAN_FILTER);
+            PurgeAnalysis analysis = PurgeAnalysis.analyse(snapshot, engine);
+            event.end(snapshot.getDimension(), snapshot.getLoadedChunks().length, analysis.getOrphans().getChunks().length);
+            return analysis;
+        });
+    }
+
+    static int getParallelism() {
+        return getPool().getParallelism();
+    }
+
+    private static ForkJoinPool getPool() {
+        if (pool == null) {
+            int threads = ChunkPurgeConfig.analysisThreads > 0
+                    ? ChunkPurgeConfig.analysisThreads
+                    : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            pool = new ForkJoinPool(threads, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("ChunkPurge analysis " + thread.getPoolIndex());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+}
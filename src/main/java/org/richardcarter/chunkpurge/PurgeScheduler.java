@@ -0,0 +1,118 @@
+package org.richardcarter.chunkpurge;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/*
+ * Decides when a dimension is purged next. With ChunkPurgeConfig.adaptivePurgeInterval off, that is simply every
+ * autoChunkPurgeInterval ticks. With it on, the interval moves between autoChunkPurgeMinInterval and
+ * autoChunkPurgeInterval depending on what the purges find:
+ * - a purge that finds nothing to unload makes the next one come later,
+ * - a purge that finds a good share of the loaded chunks orphaned makes the next one come sooner,
+ * - and the loaded chunks growing quickly since the last purge brings the next one forward right away.
+ * While the server is struggling to keep up (its mean tick time near 50 ms), purges wait for the longest interval.
+ */
+public class PurgeScheduler {
+    // backing off and speeding up happen at these rates per purge
+    private static final double BACK_OFF = 1.5;
+    private static final double SPEED_UP = 0.5;
+    // a purge finding at least this share of the loaded chunks orphaned speeds up the next
+    private static final double BUSY_ORPHAN_SHARE = 0.1;
+    // growth since the last purge that calls for another, once the shortest interval has passed: a quarter of what
+    // was loaded, but at least this many chunks
+    private static final int GROWTH_MIN_CHUNKS = 256;
+    // mean tick time (in ms) from which purges hold back
+    static final double BUSY_TICK_MILLIS = 45;
+
+    private final BooleanSupplier adaptive;
+    private final IntSupplier minInterval;
+    private final IntSupplier maxInterval;
+
+    private double interval = -1;
+    private int ticksSincePurge;
+    private int loadedAtPurge;
+
+    /*
+     * A scheduler that follows ChunkPurgeConfig as it changes.
+     */
+    public PurgeScheduler() {
+        this(() -> ChunkPurgeConfig.adaptivePurgeInterval, () -> ChunkPurgeConfig.autoChunkPurgeMinInterval,
+                () -> ChunkPurgeConfig.autoChunkPurgeInterval);
+    }
+
+    /*
+     * A scheduler with settings of its own, as for a replay (see PurgeSimulation).
+     */
+    public PurgeScheduler(boolean adaptive, int minInterval, int maxInterval) {
+        this(() -> adaptive, () -> minInterval, () -> maxInterval);
+    }
+
+    private PurgeScheduler(BooleanSupplier adaptive, IntSupplier minInterval, IntSupplier maxInterval) {
+        this.adaptive = adaptive;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+    }
+
+    /*
+     * Called every tick; returns true if the dimension should be purged now, and starts counting towards the next.
+     */
+    public boolean tick(int loadedChunks, double meanTickMillis) {
+        ticksSincePurge++;
+        int maxInterval = getMaxInterval();
+        int minInterval = getMinInterval();
+        if (interval < 0) {
+            // first tick: nothing to compare growth against yet
+            interval = maxInterval;
+            loadedAtPurge = loadedChunks;
+        }
+        interval = Math.max(minInterval, Math.min(maxInterval, interval));
+
+        boolean due;
+        if (!adaptive.getAsBoolean() || meanTickMillis >= BUSY_TICK_MILLIS) {
+            due = ticksSincePurge >= maxInterval;
+        } else {
+            int growth = loadedChunks - loadedAtPurge;
+            due = ticksSincePurge >= interval
+                    || (ticksSincePurge >= minInterval && growth >= Math.max(GROWTH_MIN_CHUNKS, loadedAtPurge / 4));
+        }
+
+        if (due) {
+            ticksSincePurge = 0;
+            loadedAtPurge = loadedChunks;
+        }
+        return due;
+    }
+
+    /*
+     * A purge of loadedChunks chunks found orphanedChunks of them orphaned.
+     */
+    public void scanFinished(int loadedChunks, int orphanedChunks) {
+        if (orphanedChunks == 0) {
+            interval *= BACK_OFF;
+        } else if (orphanedChunks >= loadedChunks * BUSY_ORPHAN_SHARE) {
+            interval *= SPEED_UP;
+        }
+        interval = Math.max(getMinInterval(), Math.min(getMaxInterval(), interval));
+        // orphans found are on their way out, so growth counts from what's left
+        loadedAtPurge = loadedChunks - orphanedChunks;
+    }
+
+    /*
+     * Start counting from zero again, as while purging is disabled.
+     */
+    public void reset() {
+        ticksSincePurge = 0;
+    }
+
+    public int getInterval() {
+        return interval < 0 ? getMaxInterval() : (int) interval;
+    }
+
+    private int getMaxInterval() {
+        return maxInterval.getAsInt();
+    }
+
+    private int getMinInterval() {
+        return Math.min(minInterval.getAsInt(), maxInterval.getAsInt());
+    }
+}
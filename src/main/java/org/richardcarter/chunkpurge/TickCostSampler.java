@@ -0,0 +1,149 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.server.timings.ForgeTimings;
+import net.minecraftforge.server.timings.TimeTracker;
+import org.richardcarter.chunkpurge.metrics.TickCosts;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures which chunks the server spends its tick time in, for ChunkCost and /chunkpurge tickcost: every
+ * ChunkPurgeConfig.tickSampleIntervalTicks it times every tile entity and entity update for SAMPLE_TICKS ticks, then
+ * puts what each took into the TickCosts of its dimension, by the chunk it was in.
+ *
+ * Forge 1.12 has no hook around a single update other than its own TimeTracker, the one behind /forge track, so the
+ * sampler borrows that: it is enabled for the sample and reset after it, which also throws away anything /forge track
+ * was in the middle of. Timing is on for at most one tick in MIN_INTERVAL / SAMPLE_TICKS, so even though it slows the
+ * updates it times noticeably, it costs a few percent of tick time at most, and far less at longer intervals.
+ *
+ * TimeTracker switches itself off after TRACKER_TIMEOUT seconds of wall clock time, however many ticks that was. A
+ * sample that took that long on a lagging server may have been cut short, so it is thrown away rather than taken
+ * for the whole SAMPLE_TICKS.
+ */
+public class TickCostSampler {
+    static final int SAMPLE_TICKS = 20;
+    // sampling more often than this would spend more than a twentieth of all ticks timed
+    static final int MIN_INTERVAL = SAMPLE_TICKS * 20;
+    // how long TimeTracker may stay enabled, in seconds, should the sample never end (say the server stops): long
+    // enough for SAMPLE_TICKS at down to 2 ticks per second
+    static final int TRACKER_TIMEOUT = SAMPLE_TICKS / 2;
+
+    private boolean sampling;
+    private int ticks;
+    private long startedAt;
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != Phase.START) {
+            return;
+        }
+        if (sampling) {
+            if (++ticks >= SAMPLE_TICKS) {
+                finish();
+            }
+            return;
+        }
+        int interval = ChunkPurgeConfig.tickSampleIntervalTicks;
+        if (interval > 0 && ++ticks >= Math.max(interval, MIN_INTERVAL)) {
+            start();
+        }
+    }
+
+    private void start() {
+        TimeTracker.TILE_ENTITY_UPDATE.reset();
+        TimeTracker.ENTITY_UPDATE.reset();
+        TimeTracker.TILE_ENTITY_UPDATE.enable(TRACKER_TIMEOUT);
+        TimeTracker.ENTITY_UPDATE.enable(TRACKER_TIMEOUT);
+        sampling = true;
+        ticks = 0;
+        startedAt = System.nanoTime();
+    }
+
+    private void finish() {
+        long initialTime = System.nanoTime();
+        if (initialTime - startedAt >= TimeUnit.SECONDS.toNanos(TRACKER_TIMEOUT)) {
+            // the tracker may have switched itself off part way, so the sample would undercount
+            if (ChunkPurgeConfig.debug) {
+                ChunkPurgeMod.log.info("Threw away a tick cost sample that took "
+                        + TimeUnit.NANOSECONDS.toMillis(initialTime - startedAt) + " ms for " + ticks + " ticks");
+            }
+            stop();
+            return;
+        }
+        Map<World, TickCosts> costs = new IdentityHashMap<>();
+        for (ForgeTimings<TileEntity> timings : TimeTracker.TILE_ENTITY_UPDATE.getTimingData()) {
+            TileEntity tileEntity = timings.getObject().get();
+            if (tileEntity != null && tileEntity.getWorld() != null) {
+                BlockPos pos = tileEntity.getPos();
+                costsOf(costs, tileEntity.getWorld())
+                        .add(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4), sum(timings.getRawTimingData()));
+            }
+        }
+        for (ForgeTimings<Entity> timings : TimeTracker.ENTITY_UPDATE.getTimingData()) {
+            Entity entity = timings.getObject().get();
+            if (entity != null && entity.world != null) {
+                costsOf(costs, entity.world).add(chunkOf(entity), sum(timings.getRawTimingData()));
+            }
+        }
+        stop();
+
+        // dimensions nothing was timed in get an empty sample too, so the old one doesn't linger
+        for (WorldServer world : DimensionManager.getWorlds()) {
+            TickCosts sample = costs.get(world);
+            WorldPurgeState.get(world).tickCosts = sample != null ? sample
+                    : new TickCosts(SAMPLE_TICKS, world.getTotalWorldTime());
+        }
+        if (ChunkPurgeConfig.debug) {
+            ChunkPurgeMod.log.info("Sampled tick costs in " + costs.size() + " dimensions in "
+                    + String.format("%.2f", (System.nanoTime() - initialTime) / 1e6) + " ms");
+        }
+    }
+
+    /*
+     * Stop timing, throwing away a sample in progress.
+     */
+    public void stop() {
+        if (!sampling) {
+            return;
+        }
+        TimeTracker.TILE_ENTITY_UPDATE.reset();
+        TimeTracker.ENTITY_UPDATE.reset();
+        sampling = false;
+        ticks = 0;
+    }
+
+    private TickCosts costsOf(Map<World, TickCosts> costs, World world) {
+        return costs.computeIfAbsent(world, w -> new TickCosts(ticks, w.getTotalWorldTime()));
+    }
+
+    private static long chunkOf(Entity entity) {
+        if (entity.addedToChunk) {
+            return ChunkPos.asLong(entity.chunkCoordX, entity.chunkCoordZ);
+        }
+        return ChunkPos.asLong(MathHelper.floor(entity.posX) >> 4, MathHelper.floor(entity.posZ) >> 4);
+    }
+
+    /*
+     * TimeTracker keeps the time of each of the last updates, 0 where there was none.
+     */
+    private static long sum(int[] nanos) {
+        long sum = 0;
+        for (int n : nanos) {
+            sum += n;
+        }
+        return sum;
+    }
+}
@@ -1,33 +1,31 @@
 package org.richardcarter.chunkpurge;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import lombok.Value;
-import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.ChunkCache;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.gen.ChunkProviderServer;
-import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
-import org.apache.logging.log4j.Level;
-
-import java.util.Collection;
-import java.util.Collections;
+import org.richardcarter.chunkpurge.jfr.PhaseEvent;
+import org.richardcarter.chunkpurge.jfr.PurgeEvents;
+import org.richardcarter.chunkpurge.jfr.PurgePhase;
+import org.richardcarter.chunkpurge.reachability.AbandonedArea;
+import org.richardcarter.chunkpurge.reachability.AnchorType;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.OrphanGroups;
+import org.richardcarter.chunkpurge.reachability.PurgeAnalysis;
+import org.richardcarter.chunkpurge.reachability.PurgeSnapshot;
+import org.richardcarter.chunkpurge.reachability.Reachability;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import javax.annotation.Nullable;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /*
  * A class to handle the unloading of excess chunks from a WorldServer.
@@ -67,50 +65,77 @@ public class WorldChunkUnloader
     @VisibleForTesting
     static Set<ChunkPos> groupedChunksFinder(Set<ChunkPos> loadedChunks, ChunkPos seed, int radiusLimit)
     {
+        LongHashSet loadedKeys = new LongHashSet(loadedChunks.size());
+        for (ChunkPos chunk : loadedChunks)
+        {
+            loadedKeys.add(ChunkPos.asLong(chunk.x, chunk.z));
+        }
 
-        LinkedList<ChunkPos> queue = new LinkedList<>();
         Set<ChunkPos> groupedChunks = new HashSet<>();
+        groupedChunksFinder(loadedKeys, ChunkPos.asLong(seed.x, seed.z), radiusLimit, new LongHashSet(), new LongQueue())
+                .forEach(k -> groupedChunks.add(new ChunkPos(ChunkKeys.x(k), ChunkKeys.z(k))));
+        return groupedChunks;
+    }
+
+    /*
+     * The flood fill above, working on packed chunk keys (see ChunkKeys). groupedChunks is cleared, filled and
+     * returned; it and the queue are passed in so that the same scratch space can be reused for every seed.
+     */
+    static LongHashSet groupedChunksFinder(LongHashSet loadedChunks, long seed, int radiusLimit,
+                                           LongHashSet groupedChunks, LongQueue queue)
+    {
+
+        groupedChunks.clear();
+        queue.clear();
 
         if (!loadedChunks.contains(seed)) return groupedChunks;
         queue.add(seed);
 
+        final int seedX = ChunkKeys.x(seed);
+        final int seedZ = ChunkKeys.z(seed);
+
         while (!queue.isEmpty())
         {
 
-            ChunkPos chunk = queue.remove();
+            long chunk = queue.remove();
 
             if (!groupedChunks.contains(chunk))
             {
+                final int chunkX = ChunkKeys.x(chunk);
+                final int chunkZ = ChunkKeys.z(chunk);
                 int west, east;
 
-                for (west = chunk.x;
-                     loadedChunks.contains(new ChunkPos(west-1, chunk.z))
-                             && (radiusLimit <= 0 || Math.abs(west-1 - seed.x) <= radiusLimit);
+                for (west = chunkX;
+                     loadedChunks.contains(ChunkKeys.of(west-1, chunkZ))
+                             && (radiusLimit <= 0 || Math.abs(west-1 - seedX) <= radiusLimit);
                      --west);
 
-                for (east = chunk.x;
-                     loadedChunks.contains(new ChunkPos(east+1, chunk.z))
-                             && (radiusLimit <= 0 || Math.abs(east+1 - seed.x) <= radiusLimit);
+                for (east = chunkX;
+                     loadedChunks.contains(ChunkKeys.of(east+1, chunkZ))
+                             && (radiusLimit <= 0 || Math.abs(east+1 - seedX) <= radiusLimit);
                      ++east);
 
+                final boolean northInRange = radiusLimit <= 0 || Math.abs(chunkZ+1 - seedZ) <= radiusLimit;
+                final boolean southInRange = radiusLimit <= 0 || Math.abs(chunkZ-1 - seedZ) <= radiusLimit;
+
                 for (int x = west; x <= east; ++x)
                 {
 
-                    groupedChunks.add(new ChunkPos(x, chunk.z));
+                    groupedChunks.add(ChunkKeys.of(x, chunkZ));
 
-                    if (loadedChunks.contains(new ChunkPos(x, chunk.z+1))
-                            && (radiusLimit <= 0 || Math.abs(chunk.z+1 - seed.z) <= radiusLimit))
+                    long north = ChunkKeys.of(x, chunkZ+1);
+                    if (northInRange && loadedChunks.contains(north) && !groupedChunks.contains(north))
                     {
 
-                        queue.add(new ChunkPos (x, chunk.z+1));
+                        queue.add(north);
 
                     }
 
-                    if (loadedChunks.contains(new ChunkPos(x, chunk.z-1))
-                            && (radiusLimit <= 0 || Math.abs(chunk.z-1 - seed.z) <= radiusLimit))
+                    long south = ChunkKeys.of(x, chunkZ-1);
+                    if (southInRange && loadedChunks.contains(south) && !groupedChunks.contains(south))
                     {
 
-                        queue.add(new ChunkPos (x, chunk.z-1));
+                        queue.add(south);
 
                     }
 
@@ -125,21 +150,15 @@ public class WorldChunkUnloader
 
     @Value
     private static class ChunksToUnload {
-        static final ChunksToUnload EMPTY = new ChunksToUnload(
-                ImmutableMap.of(),
-                ImmutableSet.of(),
-                ImmutableSet.of(),
-                ImmutableSet.of());
+        static final ChunksToUnload EMPTY = new ChunksToUnload(OrphanGroups.EMPTY, Reachability.EMPTY);
 
-        Map<ChunkPos, Chunk> unloadThese;
+        OrphanGroups unloadThese;
 
-        Set<ChunkPos> playerChunks;
-        Set<ChunkPos> ticketChunks;
-        Set<ChunkPos> spawnChunks;
+        Reachability reachability;
     }
 
     /*
-     * Populate chunksToUnload with chunks that are isolated from all players, chunk loaders, and the spawn.
+     * Find the chunks that are isolated from all players, chunk loaders, and the spawn.
      *
      * Use a flood-fill algorithm to find the set of all loaded chunks in the world which link back
      * to a chunk watcher through other loaded chunks. The idea is to find the isolated chunks
@@ -149,101 +168,494 @@ public class WorldChunkUnloader
      * Unloading chunks while not unloading their neighbours would result in tps-spikes due to the breaking
      * of energy nets and the like. This approach should reduce the severity of those tps-spikes.
      *
-     * ChunkProviderServer.loadedChunks is a private field, so an access transformer is required to access it.
+     * All chunk watchers are flooded from together in a single pass (see MultiSourceFloodFill), on packed
+     * chunk keys rather than ChunkPos, so the scan itself doesn't allocate per chunk. The result is kept in the
+     * world's ReachabilityIndex between purges and only brought up to date with what changed since the last one.
      */
-    private ChunksToUnload findChunksToUnload()
+    @Nullable
+    private ChunksToUnload findChunksToUnload(WorldPurgeState state, long budgetNanos)
     {
-        ImmutableMap<ChunkPos, Chunk> loadedChunks = world.getChunkProvider().getLoadedChunks().stream()
-                .collect(ImmutableMap.toImmutableMap(Chunk::getPos, Function.identity()));
-        if (loadedChunks.isEmpty()) {
+        if (state.index.getLoadedCount() == 0) {
             return ChunksToUnload.EMPTY;
         }
 
-        Set<ChunkPos> playerChunks = findPlayerChunks(loadedChunks);
-        Set<ChunkPos> ticketChunks = findTicketChunks(loadedChunks);
-        Set<ChunkPos> spawnChunks = findSpawnChunks(loadedChunks);
+        // anchors may have moved since the previous slice of this pass; the index reworks whatever they affected
+        refreshAnchors(state);
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.ORPHAN_FILTER);
+        if (!state.index.update(budgetNanos)) {
+            event.end(world.provider.getDimension(), state.index.getLoadedCount(), -1);
+            return null;
+        }
+        Reachability reachability = state.index.getReachability();
+
+        OrphanGroups unloadThese = OrphanGroups.find(state.index.getOrphans(), state.index.getOrphanCount(),
+                state.index::isOrphan);
+        event.end(world.provider.getDimension(), state.index.getLoadedCount(), unloadThese.getChunks().length);
+        return new ChunksToUnload(unloadThese, reachability);
+    }
+
+    /*
+     * Hand the index the current anchors, if they may have changed since it was last given them.
+     */
+    private void refreshAnchors(WorldPurgeState state) {
+        Anchors anchors = currentAnchors(state);
+        if (anchors != state.lastAnchors) {
+            state.index.setAnchors(anchors);
+            state.lastAnchors = anchors;
+        }
+    }
+
+    /*
+     * The anchors as they are now, only collected again when the registry says they may have changed.
+     */
+    private Anchors currentAnchors(WorldPurgeState state) {
+        checkAnchorSettings(state);
+        if (state.currentAnchors == null || state.currentAnchorGeneration != state.registry.getGeneration()) {
+            state.currentAnchors = collectAnchors(getPlayerRadius(), getSpawnChunk());
+            state.currentAnchorGeneration = state.registry.getGeneration();
+        }
+        return state.currentAnchors;
+    }
 
-        Map<ChunkPos, Chunk> unloadThese = Maps.filterKeys(loadedChunks,
-                k -> !playerChunks.contains(k) && !ticketChunks.contains(k) && !spawnChunks.contains(k));
+    /*
+     * The radii and spawn chunk change without any event, so compare them with the ones last used and let the
+     * registry know if any changed.
+     */
+    private void checkAnchorSettings(WorldPurgeState state) {
+        final int playerRadius = getPlayerRadius();
+        final long spawnChunk = getSpawnChunk();
+
+        if (state.lastPlayerRadius == playerRadius
+                && state.lastTicketRadius == getTicketRadius()
+                && state.lastSpawnRadius == getSpawnRadius()
+                && state.lastPinRadius == getPinRadius()
+                && state.lastSpawnChunk == spawnChunk) {
+            return;
+        }
 
-        return new ChunksToUnload(unloadThese, playerChunks, ticketChunks, spawnChunks);
+        state.registry.changed();
+        state.lastPlayerRadius = playerRadius;
+        state.lastTicketRadius = getTicketRadius();
+        state.lastSpawnRadius = getSpawnRadius();
+        state.lastPinRadius = getPinRadius();
+        state.lastSpawnChunk = spawnChunk;
     }
 
-    private Set<ChunkPos> findPlayerChunks(Map<ChunkPos, Chunk> loadedChunks) {
-        Builder<ChunkPos> playerChunks = ImmutableSet.builder();
+    /*
+     * Whether a purge now could only find what the last one did: no chunk loaded or unloaded and no anchor changed
+     * since, and the last one didn't hold back any orphans to be found again later (see retainIdle).
+     */
+    public boolean unchangedSinceLastScan() {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        checkAnchorSettings(state);
+        return state.scanned
+                && !state.scanHeldBack
+                && state.scannedLoadedGeneration == state.index.getLoadedGeneration()
+                && state.scannedAnchorGeneration == state.registry.getGeneration();
+    }
 
-        final int PLAYER_RADIUS = ChunkPurgeConfig.ignoreRadiusPlayer +
+    private int getPlayerRadius() {
+        return tightened(ChunkPurgeConfig.ignoreRadiusPlayer) +
                 FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getViewDistance();
-        for (EntityPlayer player : world.playerEntities)
-        {
-            if (!(player instanceof FakePlayer))
-            {
-                ChunkPos playerChunkCoords = new ChunkPos(player.chunkCoordX, player.chunkCoordZ);
-                playerChunks.addAll(groupedChunksFinder(loadedChunks.keySet(), playerChunkCoords, PLAYER_RADIUS));
-            }
+    }
+
+    private int getTicketRadius() {
+        return tightened(ChunkPurgeConfig.ignoreRadiusTicket);
+    }
+
+    private int getSpawnRadius() {
+        return tightened(ChunkPurgeConfig.ignoreRadiusSpawn);
+    }
+
+    private int getPinRadius() {
+        return tightened(ChunkPurgeConfig.thrashPinRadius);
+    }
+
+    /*
+     * A configured radius, scaled by heapPressureRadiusPercent while an emergency purge is on in this world. Radii of
+     * 0 or less (no limit) stay as they are; players keep their view distance on top in any case.
+     */
+    private int tightened(int radius) {
+        if (radius <= 0 || !WorldPurgeState.get(world).emergencyPurge) {
+            return radius;
         }
-        return playerChunks.build();
+        return Math.max(1, radius * ChunkPurgeConfig.heapPressureRadiusPercent / 100);
+    }
+
+    private long getSpawnChunk() {
+        return ChunkKeys.ofBlock(world.getSpawnPoint().getX(), world.getSpawnPoint().getZ());
+    }
+
+    private Anchors collectAnchors(int playerRadius, long spawnChunk) {
+        final int dimension = world.provider.getDimension();
+        Anchors anchors = new Anchors();
+
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.PLAYER_ANCHORS);
+        int before = anchors.size();
+        addPlayerAnchors(anchors, playerRadius);
+        event.end(dimension, anchors.size() - before);
+
+        event = PurgeEvents.begin(PurgePhase.TICKET_ANCHORS);
+        before = anchors.size();
+        addTicketAnchors(anchors);
+        event.end(dimension, anchors.size() - before);
+
+        event = PurgeEvents.begin(PurgePhase.SPAWN_ANCHORS);
+        before = anchors.size();
+        addSpawnAnchors(anchors, spawnChunk);
+        event.end(dimension, anchors.size() - before);
+
+        addPinnedAnchors(anchors);
+        return anchors;
+    }
+
+    private void addPlayerAnchors(Anchors anchors, int playerRadius) {
+        WorldPurgeState.get(world).registry.forEachPlayer(chunk -> anchors.add(chunk, playerRadius, AnchorType.PLAYER));
     }
 
-    private Set<ChunkPos> findTicketChunks(Map<ChunkPos, Chunk> loadedChunks) {
-        Builder<ChunkPos> ticketChunks = ImmutableSet.builder();
-        for (ChunkPos coord : world.getPersistentChunks().keySet())
+    private void addTicketAnchors(Anchors anchors) {
+        final int ticketRadius = getTicketRadius();
+        for (long chunk : WorldPurgeState.get(world).registry.getTickets(this::readTicketChunks))
         {
-            ticketChunks.addAll(groupedChunksFinder(loadedChunks.keySet(), coord, ChunkPurgeConfig.ignoreRadiusTicket));
+            anchors.add(chunk, ticketRadius, AnchorType.TICKET);
         }
-        return ticketChunks.build();
     }
 
-    private Set<ChunkPos> findSpawnChunks(Map<ChunkPos, Chunk> loadedChunks) {
-        Builder<ChunkPos> spawnChunks = ImmutableSet.builder();
+    private long[] readTicketChunks() {
+        return world.getPersistentChunks().keySet().stream()
+                .mapToLong(coord -> ChunkPos.asLong(coord.x, coord.z))
+                .toArray();
+    }
+
+    private void addPinnedAnchors(Anchors anchors) {
+        final int pinRadius = getPinRadius();
+        WorldPurgeState.get(world).thrash.forEachPin((chunk, until) -> anchors.add(chunk, pinRadius, AnchorType.PINNED));
+    }
+
+    private void addSpawnAnchors(Anchors anchors, long spawnChunk) {
         if (world.provider.canRespawnHere() && world.provider.getDimensionType().shouldLoadSpawn())
         {
-            ChunkPos spawnChunkCoords = new ChunkPos(
-                    world.getSpawnPoint().getX() / 16,
-                    world.getSpawnPoint().getZ() / 16);
-
-            spawnChunks.addAll(groupedChunksFinder(loadedChunks.keySet(), spawnChunkCoords, ChunkPurgeConfig.ignoreRadiusSpawn));
+            anchors.add(spawnChunk, getSpawnRadius(), AnchorType.SPAWN);
         }
-        return spawnChunks.build();
     }
 
     /*
      * Analyse the chunks that are currently loaded in this world. Select loaded chunks that are isolated from any chunk watchers,
-     * and queue these isolated chunks for unloading.
+     * and queue these isolated chunks for unloading. They are put in the world's UnloadQueue, replacing whatever
+     * the last purge left there, and handed to the world from there by drainUnloadQueue.
      */
     public int unloadChunks()
     {
+        return unloadChunks(0);
+    }
 
-        long initialTime = MinecraftServer.getCurrentTimeMillis();
+    /*
+     * As unloadChunks(), but spend at most budgetNanos (0 or less for no limit) on the analysis before returning -1.
+     * Call again on a later tick to carry on with the same pass. Chunks are only queued once a pass has finished,
+     * with every load, unload and anchor change made in the meantime taken into account.
+     */
+    public int unloadChunks(long budgetNanos)
+    {
+
+        long initialTime = System.nanoTime();
+        WorldPurgeState state = WorldPurgeState.get(world);
 
         world.profiler.startSection("ChunkPurge");
 
-        ChunksToUnload chunksToUnload = findChunksToUnload();
+        ChunksToUnload chunksToUnload = findChunksToUnload(state, budgetNanos);
 
-        if (!chunksToUnload.unloadThese.isEmpty()) {
-            ChunkProviderServer chunkProvider = this.world.getChunkProvider();
-            for (Entry<ChunkPos, Chunk> chunkToUnload : chunksToUnload.unloadThese.entrySet()) {
-                chunkProvider.queueUnload(chunkToUnload.getValue());
-            }
+        if (chunksToUnload != null) {
+            PhaseEvent event = PurgeEvents.begin(PurgePhase.QUEUE);
+            long[] orphans = chunksToUnload.unloadThese.getChunks();
+            state.unloadQueue.replace(chunksToUnload.unloadThese, state.lastAnchors.distancesTo(orphans),
+                    costsOf(orphans), state.lastAnchors);
+            retainIdle(state, chunksToUnload.unloadThese, state.emergencyPurge);
+            event.end(world.provider.getDimension(), orphans.length);
         }
 
         world.profiler.endSection();
 
-        if (ChunkPurgeConfig.debug && !chunksToUnload.unloadThese.isEmpty()) {
-            String logMessage = "Queued " + chunksToUnload.unloadThese.size()
-                    + " chunks out of " + world.getChunkProvider().getLoadedChunks().size()
+        state.scanNanos += System.nanoTime() - initialTime;
+        state.scanSlices++;
+        if (chunksToUnload == null) {
+            return -1;
+        }
+
+        int orphaned = chunksToUnload.unloadThese.getChunks().length;
+        int queued = state.unloadQueue.size();
+        logQueued(queued, orphaned, state.index.getLoadedCount(),
+                "in " + TimeUnit.NANOSECONDS.toMillis(state.scanNanos) + " ms"
+                        + (state.scanSlices > 1 ? " over " + state.scanSlices + " ticks" : ""),
+                chunksToUnload.reachability.getCount(AnchorType.PLAYER),
+                chunksToUnload.reachability.getCount(AnchorType.TICKET),
+                chunksToUnload.reachability.getCount(AnchorType.SPAWN),
+                chunksToUnload.reachability.getCount(AnchorType.PINNED));
+
+        scanFinished(state, state.scanNanos, state.scanNanos, state.index.getLoadedCount(), orphaned, queued,
+                state.emergencyPurge);
+        scanned(state, state.index.getLoadedGeneration(), state.currentAnchorGeneration, queued < orphaned);
+        state.scanNanos = 0;
+        state.scanSlices = 0;
+        return queued;
+    }
+
+    /*
+     * Snapshot the loaded chunks and anchors and start analysing them on the PurgeExecutor pool. Returns false,
+     * doing nothing, if an analysis of this world is still waiting to be applied.
+     */
+    public boolean startAnalysis()
+    {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (state.pendingAnalysis != null) {
+            return false;
+        }
+
+        long initialTime = System.nanoTime();
+        checkAnchorSettings(state);
+        state.snapshotLoadedGeneration = state.index.getLoadedGeneration();
+        state.snapshotAnchorGeneration = state.registry.getGeneration();
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.SNAPSHOT);
+        PurgeSnapshot snapshot = new PurgeSnapshot(world.provider.getDimension(), state.index.getLoadedChunks(),
+                collectAnchors(getPlayerRadius(), getSpawnChunk()));
+        event.end(snapshot.getDimension(), snapshot.getLoadedChunks().length);
+        state.loadedSinceSnapshot = new LongHashSet();
+        state.emergencyAnalysis = state.emergencyPurge;
+        state.pendingAnalysis = PurgeExecutor.submit(snapshot, ChunkPurgeConfig.reachabilityEngine);
+        state.lastMainThreadNanos = System.nanoTime() - initialTime;
+        return true;
+    }
+
+    /*
+     * Queue the chunks found by the analysis startAnalysis started, dropping any that may have been reconnected
+     * since its snapshot or haven't been idle long enough, and return how many were queued. Returns -1 if the
+     * analysis hasn't finished yet, or there is none.
+     */
+    public int applyAnalysis()
+    {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (state.pendingAnalysis == null || !state.pendingAnalysis.isDone()) {
+            return -1;
+        }
+
+        PurgeAnalysis analysis;
+        try {
+            analysis = state.pendingAnalysis.get();
+        } catch (InterruptedException | ExecutionException e) {
+            ChunkPurgeMod.log.warn("Chunk purge analysis failed for dim " + world.provider.getDimension(), e);
+            state.pendingAnalysis = null;
+            state.loadedSinceSnapshot = null;
+            return 0;
+        }
+
+        long initialTime = System.nanoTime();
+        world.profiler.startSection("ChunkPurge");
+
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.QUEUE);
+        state.unloadQueue.replace(analysis.getOrphans(), analysis.getDistances(),
+                costsOf(analysis.getOrphans().getChunks()), analysis.getSnapshot().getAnchors());
+        state.loadedSinceSnapshot.forEach(state.unloadQueue::chunkLoaded);
+        state.unloadQueue.anchorsChanged(currentAnchors(state));
+        retainIdle(state, analysis.getOrphans(), state.emergencyAnalysis);
+        int orphaned = analysis.getOrphans().getChunks().length;
+        int queued = state.unloadQueue.size();
+        event.end(world.provider.getDimension(), orphaned);
+        state.pendingAnalysis = null;
+        state.loadedSinceSnapshot = null;
+
+        world.profiler.endSection();
+        state.lastMainThreadNanos += System.nanoTime() - initialTime;
+        state.lastAnalysisNanos = analysis.getAnalysisNanos();
+        scanFinished(state, state.lastAnalysisNanos, state.lastMainThreadNanos,
+                analysis.getSnapshot().getLoadedChunks().length, orphaned, queued, state.emergencyAnalysis);
+        scanned(state, state.snapshotLoadedGeneration, state.snapshotAnchorGeneration, queued < orphaned);
+
+        logQueued(queued, orphaned, state.index.getLoadedCount(),
+                "in " + TimeUnit.NANOSECONDS.toMillis(state.lastAnalysisNanos) + " ms off thread, "
+                        + TimeUnit.NANOSECONDS.toMillis(state.lastMainThreadNanos) + " ms on",
+                analysis.getCount(AnchorType.PLAYER),
+                analysis.getCount(AnchorType.TICKET),
+                analysis.getCount(AnchorType.SPAWN),
+                analysis.getCount(AnchorType.PINNED));
+
+        return queued;
+    }
+
+    /*
+     * Queue what the players who left this world since the last call leave behind (see AbandonedArea), next to
+     * whatever is queued already, and return how many chunks were queued. Each area is only flooded up to a few times
+     * the size a player keeps loaded; bigger ones are left to the next purge. The idle filter doesn't apply, as
+     * nobody is coming back for these right away, not even when the next purge finds them again.
+     *
+     * While a background analysis is pending this waits for it: its snapshot may still have the players in it, and
+     * applying it replaces the queue.
+     */
+    public int purgeDepartures()
+    {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (!state.registry.hasDepartures() || state.pendingAnalysis != null) {
+            return 0;
+        }
+
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.QUEUE);
+        Anchors anchors = currentAnchors(state);
+        LongHashSet anchored = new LongHashSet();
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (!anchors.isRemoved(anchor)) {
+                anchored.add(anchors.getKey(anchor));
+            }
+        }
+        int side = 2 * getPlayerRadius() + 1;
+        int maxChunks = 4 * side * side;
+
+        state.unloadQueue.anchorsChanged(anchors);
+        int queued = 0;
+        while (state.registry.hasDepartures()) {
+            long[] area = AbandonedArea.find(state.registry.nextDeparture(), state.index::isLoaded, anchored::contains,
+                    maxChunks);
+            if (area.length > 0) {
+                state.unloadQueue.add(area, anchors.distancesTo(area), costsOf(area));
+                for (long chunk : area) {
+                    state.leftBehind.add(chunk);
+                }
+                queued += area.length;
+            }
+        }
+        event.end(world.provider.getDimension(), queued);
+        state.metrics.queued(queued);
+
+        if (ChunkPurgeConfig.debug && queued > 0) {
+            ChunkPurgeMod.log.info("Queued " + queued + " chunks left behind by players for unload in dim "
+                    + world.provider.getDimensionType().getName() + " (" + world.provider.getDimension() + ")");
+        }
+        return queued;
+    }
+
+    /*
+     * What each of the chunks costs to keep loaded, for the unload queue to put the costliest first, or null to leave
+     * it to distance alone.
+     */
+    @Nullable
+    private int[] costsOf(long[] chunks) {
+        return ChunkPurgeConfig.costWeightedUnloads ? ChunkCost.of(world, chunks) : null;
+    }
+
+    /*
+     * Keep only the queued chunks that have been orphaned for minIdleTicks, or were left behind by a player (see
+     * purgeDepartures), unless heap pressure can't wait for that. The others are found again by a later purge, if
+     * nobody came back for them, while the older part of their group goes now.
+     */
+    private void retainIdle(WorldPurgeState state, OrphanGroups orphans, boolean emergency) {
+        final int now = now();
+        final int minIdleTicks = ChunkPurgeConfig.minIdleTicks;
+        state.idle.update(orphans, state.registry.takeVisited(), getPlayerRadius(), now);
+        if (minIdleTicks > 0 && !emergency) {
+            state.unloadQueue.retain(chunk -> state.idle.isIdle(chunk, now, minIdleTicks)
+                    || state.leftBehind.contains(chunk));
+        }
+        // whatever players left behind is in this purge's result now, if it is still orphaned
+        state.leftBehind.clear();
+    }
+
+    private int now() {
+        return (int) world.getTotalWorldTime();
+    }
+
+    /*
+     * Hand up to max chunks from the UnloadQueue to the ChunkProviderServer, a region file at a time (at most
+     * unloadRegionsPerTick of them), farthest from any anchor first, and return how many were handed over. Anything
+     * that may have been reconnected since the purge that found it is skipped. Chunks that were repeatedly reloaded
+     * soon after a purge unloaded them only get reloadedUnloadsPerTick of those, and wait behind the others for the
+     * rest.
+     */
+    public int drainUnloadQueue(int max)
+    {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (state.unloadQueue.isEmpty()) {
+            return 0;
+        }
+
+        state.unloadQueue.anchorsChanged(currentAnchors(state));
+
+        PhaseEvent event = PurgeEvents.begin(PurgePhase.HAND_OVER);
+        ChunkProviderServer chunkProvider = world.getChunkProvider();
+        final int now = now();
+        int maxReloaded = state.emergencyPurge ? max : ChunkPurgeConfig.reloadedUnloadsPerTick;
+        int handedOver = state.unloadQueue.drain(max, ChunkPurgeConfig.unloadRegionsPerTick, maxReloaded,
+                state.idle::isRepeatedlyReloaded, key -> {
+            // check the index first: getLoadedChunk would cancel an unload vanilla has already queued
+            if (!state.index.isLoaded(key)) {
+                return false;
+            }
+            Chunk chunk = chunkProvider.getLoadedChunk(ChunkKeys.x(key), ChunkKeys.z(key));
+            if (chunk == null) {
+                // shouldn't happen as long as every unload fires ChunkEvent.Unload, but don't keep trying if one didn't
+                state.index.chunkUnloaded(key);
+                return false;
+            }
+            chunkProvider.queueUnload(chunk);
+            state.idle.handedOver(key, now);
+            if (state.emergencyPurge) {
+                state.emergencyHandedOver.add(key);
+            }
+            return true;
+        });
+        event.end(world.provider.getDimension(), handedOver, state.unloadQueue.size());
+        state.metrics.handedOver(handedOver);
+        return handedOver;
+    }
+
+    /*
+     * Let everything that follows the purges know that one finished, having found orphaned of loaded chunks and
+     * queued queued of those.
+     */
+    private void scanFinished(WorldPurgeState state, long scanNanos, long serverThreadNanos, int loaded, int orphaned,
+                              int queued, boolean emergency) {
+        state.metrics.scanFinished(scanNanos, serverThreadNanos, loaded, orphaned, queued);
+        // chunks still too young to unload are orphans all the same, and make the scheduler purge sooner
+        state.scheduler.scanFinished(loaded, orphaned);
+        if (emergency && state.emergencyPurge && !state.emergencyScanFinished) {
+            state.emergencyScanFinished = true;
+            if (ChunkPurgeConfig.debug) {
+                ChunkPurgeMod.log.info("Heap pressure purge queued " + queued + " of " + loaded
+                        + " chunks for unload in dim " + world.provider.getDimension());
+            }
+        }
+    }
+
+    /*
+     * Remember what a finished purge saw, for unchangedSinceLastScan.
+     */
+    private static void scanned(WorldPurgeState state, int loadedGeneration, int anchorGeneration, boolean heldBack) {
+        state.scanned = true;
+        state.scannedLoadedGeneration = loadedGeneration;
+        state.scannedAnchorGeneration = anchorGeneration;
+        state.scanHeldBack = heldBack;
+    }
+
+    /*
+     * A purge was due but skipped because nothing changed since the last one.
+     */
+    public void scanSkipped() {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        state.metrics.scanSkipped();
+        // as for a purge that found nothing, the next one can wait longer
+        state.scheduler.scanFinished(state.index.getLoadedCount(), 0);
+    }
+
+    private void logQueued(int queued, int orphaned, int loaded, String timing, int playerChunks, int ticketChunks,
+                           int spawnChunks, int pinnedChunks) {
+        if (ChunkPurgeConfig.debug && orphaned > 0) {
+            String logMessage = "Queued " + queued
+                    + " chunks (" + orphaned + " orphaned) out of " + loaded
                     + " for unload in dim " + this.world.provider.getDimensionType().getName()
                     + " (" + this.world.provider.getDimension()
-                    + ") in " + (MinecraftServer.getCurrentTimeMillis() - initialTime)
-                    + " ms. ("
-                    + chunksToUnload.playerChunks.size() + " p, "
-                    + chunksToUnload.ticketChunks.size() + " t, "
-                    + chunksToUnload.spawnChunks.size() + " s)";
+                    + ") " + timing + ". ("
+                    + playerChunks + " p, "
+                    + ticketChunks + " t, "
+                    + spawnChunks + " s, "
+                    + pinnedChunks + " r)";
             ChunkPurgeMod.log.info(logMessage);
-
         }
-
-        return chunksToUnload.unloadThese.size();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package org.richardcarter.chunkpurge;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.util.FakePlayer;
+import org.richardcarter.chunkpurge.jmx.ChunkPurgeDimension;
+import org.richardcarter.chunkpurge.metrics.DimensionMetrics;
+import org.richardcarter.chunkpurge.metrics.LoadCauses;
+import org.richardcarter.chunkpurge.metrics.PurgeMetrics;
+import org.richardcarter.chunkpurge.metrics.TickCosts;
+import org.richardcarter.chunkpurge.reachability.AnchorRegistry;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.IdleTracker;
+import org.richardcarter.chunkpurge.reachability.PurgeAnalysis;
+import org.richardcarter.chunkpurge.reachability.ReachabilityIndex;
+import org.richardcarter.chunkpurge.reachability.ThrashDetector;
+import org.richardcarter.chunkpurge.reachability.UnloadQueue;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+
+/*
+ * Everything ChunkPurge keeps about a single loaded dimension between purges.
+ */
+public class WorldPurgeState {
+    private static final Map<WorldServer, WorldPurgeState> states = new WeakHashMap<>();
+
+    final ReachabilityIndex index = new ReachabilityIndex();
+    final UnloadQueue unloadQueue = new UnloadQueue();
+    final DimensionMetrics metrics;
+    final PurgeScheduler scheduler = new PurgeScheduler();
+    final IdleTracker idle = new IdleTracker();
+    final ThrashDetector thrash = new ThrashDetector();
+    // where tick time went during the last sample, set by TickCostSampler
+    TickCosts tickCosts = TickCosts.NONE;
+    // what loaded the chunks whose loads were sampled, see ChunkEventHandler
+    final LoadCauses loadCauses = new LoadCauses();
+
+    // players and tickets, kept current by ChunkEventHandler. The radii and spawn chunk can change without an event,
+    // so the values last used are kept to compare against, and a change counts as one to the registry.
+    final AnchorRegistry registry = new AnchorRegistry();
+    int lastPlayerRadius;
+    int lastTicketRadius;
+    int lastSpawnRadius;
+    int lastPinRadius;
+    long lastSpawnChunk;
+    // the anchors as of registry generation currentAnchorGeneration, and the ones the index was last given
+    Anchors currentAnchors;
+    int currentAnchorGeneration;
+    Anchors lastAnchors = new Anchors();
+
+    // what the last finished purge saw, so a purge that couldn't find anything new can be skipped: the generations of
+    // the loaded chunks and the anchors, and whether it held back orphans that weren't idle long enough yet
+    boolean scanned;
+    int scannedLoadedGeneration;
+    int scannedAnchorGeneration;
+    boolean scanHeldBack;
+    // the same, as of the pending analysis' snapshot
+    int snapshotLoadedGeneration;
+    int snapshotAnchorGeneration;
+
+    // chunks queued since the last purge because the players around them left, which its idle filter lets through
+    final LongHashSet leftBehind = new LongHashSet();
+
+    // time spent so far on a purge pass that is spread over several ticks
+    long scanNanos;
+    int scanSlices;
+
+    // an analysis running off the server thread, and every chunk loaded since its snapshot was taken
+    Future<PurgeAnalysis> pendingAnalysis;
+    LongHashSet loadedSinceSnapshot;
+
+    // on from when heap pressure triggers a purge of this world until the chunks it found are unloaded, which all
+    // happens with tighter radii (see HeapPressureMonitor)
+    boolean emergencyPurge;
+    boolean emergencyScanFinished;
+    // whether the pending analysis was started during the emergency, with its radii
+    boolean emergencyAnalysis;
+    // chunks handed to the world during an emergency that are still loaded, and how many of them have unloaded
+    final LongHashSet emergencyHandedOver = new LongHashSet();
+    int emergencyUnloaded;
+
+    // set from a JMX thread to purge this world on the next tick rather than when the scheduler says so
+    volatile boolean purgeRequested;
+
+    // what the last background analysis cost, on the server thread (snapshot and apply) and off it
+    long lastMainThreadNanos;
+    long lastAnalysisNanos;
+
+    private WorldPurgeState(WorldServer world) {
+        metrics = PurgeMetrics.get(world.provider.getDimension());
+        ChunkPurgeDimension.register(metrics, () -> purgeRequested = true);
+        // chunks loaded and players in the world before we saw it; everything after arrives through ChunkEventHandler
+        for (Chunk chunk : world.getChunkProvider().getLoadedChunks()) {
+            index.chunkLoaded(ChunkPos.asLong(chunk.x, chunk.z));
+        }
+        for (EntityPlayer player : world.playerEntities) {
+            if (!(player instanceof FakePlayer)) {
+                registry.playerEntered(player.getEntityId(), ChunkPos.asLong(player.chunkCoordX, player.chunkCoordZ));
+            }
+        }
+    }
+
+    void chunkLoaded(long chunk, int now) {
+        index.chunkLoaded(chunk);
+        // an unload the world cancelled, or one that came round again
+        emergencyHandedOver.remove(chunk);
+        if (idle.chunkLoaded(chunk, now)) {
+            metrics.chunkReloaded();
+            if (ChunkPurgeConfig.thrashPinReloads > 0 && thrash.reloaded(chunk, now, ChunkPurgeConfig.thrashPinReloads,
+                    ChunkPurgeConfig.thrashWindowTicks, ChunkPurgeConfig.thrashPinTicks)) {
+                registry.changed();
+                if (ChunkPurgeConfig.debug) {
+                    ChunkPurgeMod.log.info("Pinned chunk " + ChunkKeys.x(chunk) + ", " + ChunkKeys.z(chunk) + " in dim "
+                            + metrics.getDimension() + " after " + thrash.getReloads(chunk) + " reloads");
+                }
+            }
+        }
+        unloadQueue.chunkLoaded(chunk);
+        if (loadedSinceSnapshot != null) {
+            loadedSinceSnapshot.add(chunk);
+        }
+    }
+
+    void chunkUnloaded(long chunk) {
+        index.chunkUnloaded(chunk);
+        metrics.chunkUnloaded();
+        if (emergencyHandedOver.remove(chunk)) {
+            emergencyUnloaded++;
+            PurgeMetrics.emergencyUnloaded();
+        }
+    }
+
+    /*
+     * Unpin chunks whose pin expired, or all of them with pinning off, and forget reloads that are too old to count.
+     */
+    void expirePins(int now) {
+        boolean changed = ChunkPurgeConfig.thrashPinReloads > 0
+                ? thrash.expire(now, ChunkPurgeConfig.thrashWindowTicks)
+                : thrash.unpinAll();
+        if (changed) {
+            registry.changed();
+        }
+    }
+
+    public ThrashDetector getThrashDetector() {
+        return thrash;
+    }
+
+    public TickCosts getTickCosts() {
+        return tickCosts;
+    }
+
+    public LoadCauses getLoadCauses() {
+        return loadCauses;
+    }
+
+    /*
+     * Whether any real player is in one of the dimensions seen so far, from their registries rather than the player
+     * list.
+     */
+    static boolean hasRealPlayers() {
+        for (WorldPurgeState state : states.values()) {
+            if (state.registry.getPlayerCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static WorldPurgeState get(WorldServer world) {
+        return states.computeIfAbsent(world, WorldPurgeState::new);
+    }
+
+    public static void remove(WorldServer world) {
+        if (states.remove(world) != null) {
+            ChunkPurgeDimension.unregister(world.provider.getDimension());
+        }
+    }
+}
@@ -1,21 +1,21 @@
 package org.richardcarter.chunkpurge;
 
-import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.management.PlayerList;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.gen.ChunkProviderServer;
-import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import org.richardcarter.chunkpurge.jfr.PhaseEvent;
+import org.richardcarter.chunkpurge.jfr.PurgeEvents;
+import org.richardcarter.chunkpurge.jfr.PurgePhase;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Field;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 public class WorldTickHandler {
     private final HashMap<WorldServer, WorldTickData> worldTickData = new HashMap<>();
@@ -23,8 +23,8 @@ public class WorldTickHandler {
 
     private static class WorldTickData {
         long lastTick;
-        int tickTimer;
         boolean turnSaveOff;
+        boolean purgeInProgress;
     }
 
     @SubscribeEvent
@@ -80,43 +80,109 @@ public class WorldTickHandler {
     }
 
     private void onWorldTickEnd(WorldServer world) {
+        WorldPurgeState.get(world).expirePins((int) world.getTotalWorldTime());
         doAutoChunkPurge(world);
+        doPurgeDepartures(world);
+        doFeedUnloads(world);
         doUpdateSaveState(world);
+        doRecordMetrics(world);
     }
 
     private void doAutoChunkPurge(WorldServer world) {
         WorldTickData tickData = worldTickData.computeIfAbsent(world, (k) -> new WorldTickData());
         tickData.lastTick = MinecraftServer.getCurrentTimeMillis();
 
+        WorldPurgeState state = WorldPurgeState.get(world);
         if (!ChunkPurgeConfig.autoChunkPurgeEnabled) {
-            tickData.tickTimer = 0;
+            state.scheduler.reset();
+            state.registry.clearVisited();
+            tickData.purgeInProgress = false;
             return;
         }
 
-        tickData.tickTimer++;
-
-        if (tickData.tickTimer < ChunkPurgeConfig.autoChunkPurgeInterval) {
+        // with asyncScan, PurgeCoordinator purges every dimension instead
+        if (ChunkPurgeConfig.asyncScan) {
+            tickData.purgeInProgress = false;
             return;
         }
 
-        tickData.tickTimer = 0;
+        if (tickData.purgeInProgress) {
+            // carry on with the pass started on an earlier tick; the scheduler starts counting once it is done
+            continuePurge(world, tickData);
+            return;
+        }
 
         MinecraftServer server = world.getMinecraftServer();
-        if (server != null) {
-            PlayerList playerList = server.getPlayerList();
-            List<EntityPlayerMP> allPlayers = playerList.getPlayers();
-            // I'm not sure if it ever includes a FakePlayer, but just in case, filter it out
-            List<EntityPlayerMP> realPlayers = allPlayers.stream()
-                    .filter(p -> !(p instanceof FakePlayer))
-                    .collect(Collectors.toList());
-            if (realPlayers.isEmpty()) {
-                // nobody is online, skip unloading
-                return;
-            }
+        boolean due = state.scheduler.tick(state.index.getLoadedCount(), getMeanTickMillis(server));
+
+        // a purge requested over JMX doesn't wait for the scheduler, or for players
+        boolean requested = state.purgeRequested;
+        if (!due && !requested) {
+            return;
+        }
+        state.purgeRequested = false;
+
+        if (!requested && !WorldPurgeState.hasRealPlayers()) {
+            // nobody is online, skip unloading
+            return;
+        }
+
+        WorldChunkUnloader worldChunkUnloader = new WorldChunkUnloader(world);
+        if (!requested && worldChunkUnloader.unchangedSinceLastScan()) {
+            worldChunkUnloader.scanSkipped();
+            return;
+        }
+
+        continuePurge(world, tickData);
+    }
+
+    /*
+     * The server's mean tick time over the last 100 ticks, in milliseconds.
+     */
+    static double getMeanTickMillis(@Nullable MinecraftServer server) {
+        if (server == null) {
+            return 0;
         }
+        long sum = 0;
+        for (long tickTime : server.tickTimeArray) {
+            sum += tickTime;
+        }
+        return sum / (double) server.tickTimeArray.length / 1_000_000;
+    }
 
+    private void continuePurge(WorldServer world, WorldTickData tickData) {
         WorldChunkUnloader worldChunkUnloader = new WorldChunkUnloader(world);
-        worldChunkUnloader.unloadChunks();
+        int queued = worldChunkUnloader.unloadChunks(TimeUnit.MILLISECONDS.toNanos(ChunkPurgeConfig.scanTimeBudgetMs));
+        tickData.purgeInProgress = queued < 0;
+    }
+
+    private void doPurgeDepartures(WorldServer world) {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (!ChunkPurgeConfig.autoChunkPurgeEnabled || !ChunkPurgeConfig.purgeOnPlayerLeave) {
+            state.registry.clearDepartures();
+            return;
+        }
+        // unlike scheduled purges, this goes ahead with nobody online: it is how their chunks get unloaded
+        new WorldChunkUnloader(world).purgeDepartures();
+    }
+
+    private void doFeedUnloads(WorldServer world) {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        if (!ChunkPurgeConfig.autoChunkPurgeEnabled) {
+            state.unloadQueue.clear();
+            return;
+        }
+        // only top the provider's own backlog up to the rate, rather than adding to it every tick
+        int room = ChunkPurgeConfig.unloadsPerTick - getPendingDroppedChunks(world);
+        if (room > 0) {
+            new WorldChunkUnloader(world).drainUnloadQueue(room);
+        }
+    }
+
+    private void doRecordMetrics(WorldServer world) {
+        WorldPurgeState state = WorldPurgeState.get(world);
+        state.metrics.tick(state.index.getLoadedCount(), state.unloadQueue.size(), getPendingDroppedChunks(world),
+                world.disableLevelSaving);
     }
 
     private void doUpdateSaveState(WorldServer world) {
@@ -131,14 +197,19 @@ public class WorldTickHandler {
 
         WorldTickData worldTickData = this.worldTickData.computeIfAbsent(world, w -> new WorldTickData());
         if (!world.disableLevelSaving && worldTickData.turnSaveOff) {
+            PhaseEvent event = PurgeEvents.begin(PurgePhase.SAVE_OFF);
             world.disableLevelSaving = true;
+            event.end(world.provider.getDimension(), getPendingDroppedChunks(world));
             if (ChunkPurgeConfig.debug) {
                 ChunkPurgeMod.log.info("Disabled saving for " + world.provider.getDimensionType().getName() + " (" + world.provider.getDimension() + ")");
             }
         } else if (world.disableLevelSaving) {
-            int pendingDroppedChunks = getPendingDroppedChunks(world);
+            // chunks still waiting in our own queue count too, or they'd never get to the provider's
+            int pendingDroppedChunks = getPendingDroppedChunks(world) + WorldPurgeState.get(world).unloadQueue.size();
             if (pendingDroppedChunks >= ChunkPurgeConfig.minChunksToSave) {
+                PhaseEvent event = PurgeEvents.begin(PurgePhase.SAVE_ON);
                 world.disableLevelSaving = false;
+                event.end(world.provider.getDimension(), pendingDroppedChunks);
                 if (ChunkPurgeConfig.debug) {
                     ChunkPurgeMod.log.info("Enabled saving for " + world.provider.getDimensionType().getName() + " (" + world.provider.getDimension() + ")");
                 }
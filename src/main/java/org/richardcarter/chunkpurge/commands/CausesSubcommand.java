@@ -0,0 +1,50 @@
+package org.richardcarter.chunkpurge.commands;
+
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.WorldPurgeState;
+import org.richardcarter.chunkpurge.metrics.LoadCauses;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+/*
+ * /chunkpurge causes [dim]: what caused the most of each dimension's sampled chunk loads (see LoadCauses), and the
+ * region file each loaded most in.
+ */
+public class CausesSubcommand {
+    public static final String NAME = "causes";
+    public static final String USAGE = "[dim]";
+    // sources listed per dimension
+    private static final int LISTED = 10;
+
+    static void execute(ICommandSender sender, String[] args) throws CommandException {
+        boolean any = false;
+        for (WorldServer world : ChunkPurgeCommand.worldsFromArgs(args)) {
+            LoadCauses causes = WorldPurgeState.get(world).getLoadCauses();
+            if (causes.getSampled() == 0) {
+                continue;
+            }
+            any = true;
+            StringBuilder message = new StringBuilder("Dim " + world.provider.getDimension() + " ("
+                    + world.provider.getDimensionType().getName() + "): " + causes.getSampled() + " loads sampled");
+            for (LoadCauses.Cause cause : causes.getTop(LISTED)) {
+                message.append("\n  ").append(cause.getSource()).append(": ").append(cause.getLoads());
+                if (cause.getError() > 0) {
+                    message.append(" (up to ").append(cause.getError()).append(" of them other sources')");
+                }
+                message.append(" loads, ").append(100 * cause.getLoads() / causes.getSampled()).append("%, most in r.")
+                        .append(ChunkKeys.x(cause.getTopRegion())).append(".").append(ChunkKeys.z(cause.getTopRegion()))
+                        .append(" (").append(cause.getTopRegionLoads()).append(")");
+            }
+            sender.sendMessage(new TextComponentString(message.toString()));
+        }
+
+        if (!any) {
+            sender.sendMessage(new TextComponentString(ChunkPurgeConfig.loadCauseSampling > 0
+                    ? "No chunk loads sampled yet"
+                    : "Chunk load sampling is off, see loadcausesampling"));
+        }
+    }
+}
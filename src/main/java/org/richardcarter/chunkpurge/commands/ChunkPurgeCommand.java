@@ -2,6 +2,7 @@ package org.richardcarter.chunkpurge.commands;
 
 import com.google.common.base.Enums;
 import com.google.common.base.Joiner;
+import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommand;
 import net.minecraft.command.ICommandSender;
@@ -9,6 +10,8 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import org.richardcarter.chunkpurge.ChunkPurgeConfig;
 
@@ -18,9 +21,55 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ChunkPurgeCommand implements ICommand {
+    /*
+     * The subcommands that report on the purge rather than change a setting, with their usage, how to run them and
+     * how to complete their arguments.
+     */
+    private enum ReportSubcommand {
+        STATS(StatsSubcommand.NAME, StatsSubcommand.USAGE, StatsSubcommand::execute,
+                StatsSubcommand::getTabCompletions),
+        THRASH(ThrashSubcommand.NAME, ThrashSubcommand.USAGE, ThrashSubcommand::execute,
+                ChunkPurgeCommand::dimensionCompletions),
+        COSTLY(CostlySubcommand.NAME, CostlySubcommand.USAGE, CostlySubcommand::execute,
+                ChunkPurgeCommand::dimensionCompletions),
+        TICKCOST(TickCostSubcommand.NAME, TickCostSubcommand.USAGE, TickCostSubcommand::execute,
+                ChunkPurgeCommand::dimensionCompletions),
+        CAUSES(CausesSubcommand.NAME, CausesSubcommand.USAGE, CausesSubcommand::execute,
+                ChunkPurgeCommand::dimensionCompletions);
+
+        final String commandName;
+        final String usage;
+        final ReportHandler handler;
+        final Function<String[], List<String>> completions;
+
+        ReportSubcommand(String commandName, String usage, ReportHandler handler,
+                         Function<String[], List<String>> completions) {
+            this.commandName = commandName;
+            this.usage = usage;
+            this.handler = handler;
+            this.completions = completions;
+        }
+
+        @Nullable
+        static ReportSubcommand find(String commandName) {
+            for (ReportSubcommand subcommand : values()) {
+                if (subcommand.commandName.equals(commandName)) {
+                    return subcommand;
+                }
+            }
+            return null;
+        }
+    }
+
+    private interface ReportHandler {
+        void execute(ICommandSender sender, String[] args) throws CommandException;
+    }
+
     @Override
     @Nonnull
     public String getName() {
@@ -30,8 +79,11 @@ public class ChunkPurgeCommand implements ICommand {
     @Override
     @Nonnull
     public String getUsage(ICommandSender sender) {
-        List<String> examples = Arrays.stream(ConfigSubcommand.values())
-                .map(v -> "/" + getName() + " " + v.name() + " " + v.usageValueExample)
+        List<String> examples = Stream.concat(
+                Arrays.stream(ConfigSubcommand.values())
+                        .map(v -> "/" + getName() + " " + v.name() + " " + v.usageValueExample),
+                Arrays.stream(ReportSubcommand.values())
+                        .map(s -> "/" + getName() + " " + s.commandName + " " + s.usage))
                 .collect(Collectors.toList());
         return Joiner.on("\n").join(examples);
     }
@@ -43,6 +95,11 @@ public class ChunkPurgeCommand implements ICommand {
 
     @Override
     public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        ReportSubcommand report = args.length >= 1 ? ReportSubcommand.find(args[0]) : null;
+        if (report != null) {
+            report.handler.execute(sender, args);
+            return;
+        }
         if (args.length < 2) {
             sender.sendMessage(new TextComponentString("Usage:\n" + getUsage(sender)));
             return;
@@ -72,17 +129,19 @@ public class ChunkPurgeCommand implements ICommand {
     @Nonnull
     public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
         if (args.length == 0 || (args.length == 1 && args[0].equals(""))) {
-            return Arrays.stream(ConfigSubcommand.values())
-                    .map(Enum::name)
-                    .collect(Collectors.toList());
+            return subcommandNames().collect(Collectors.toList());
         } else if (args.length == 1) {
             // complete subcommand names that start with the args[0]
-            return Arrays.stream(ConfigSubcommand.values())
-                    .map(Enum::name)
+            return subcommandNames()
                     .filter(n -> n.startsWith(args[0]))
                     .collect(Collectors.toList());
         }
 
+        ReportSubcommand report = ReportSubcommand.find(args[0]);
+        if (report != null) {
+            return report.completions.apply(args);
+        }
+
         ConfigSubcommand subcommand = Enums.getIfPresent(ConfigSubcommand.class, args[0]).orNull();
         if (subcommand == null) {
             return Collections.emptyList();
@@ -91,6 +150,32 @@ public class ChunkPurgeCommand implements ICommand {
         return subcommand.completions.getTabCompletions(server, sender, args, targetPos);
     }
 
+    private static Stream<String> subcommandNames() {
+        return Stream.concat(Arrays.stream(ConfigSubcommand.values()).map(Enum::name),
+                Arrays.stream(ReportSubcommand.values()).map(s -> s.commandName));
+    }
+
+    /*
+     * The dimensions a subcommand taking [dim] reports on: the one in args[1], or every loaded one if there is none.
+     */
+    static List<WorldServer> worldsFromArgs(String[] args) throws CommandException {
+        if (args.length < 2) {
+            return Arrays.asList(DimensionManager.getWorlds());
+        }
+        WorldServer world = DimensionManager.getWorld(CommandBase.parseInt(args[1]));
+        return world == null ? Collections.emptyList() : Collections.singletonList(world);
+    }
+
+    /*
+     * Completes args[1] of a subcommand taking [dim] with the loaded dimensions.
+     */
+    static List<String> dimensionCompletions(String[] args) {
+        String[] dimensions = Arrays.stream(DimensionManager.getWorlds())
+                .map(w -> Integer.toString(w.provider.getDimension()))
+                .toArray(String[]::new);
+        return ConfigSubcommand.SubcommandCompletions.fromArray(dimensions).getTabCompletions(null, null, args, null);
+    }
+
     @Override
     public boolean isUsernameIndex(String[] args, int index) {
         return false;
@@ -4,15 +4,18 @@ import net.minecraft.command.ICommandSender;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextComponentString;
+import net.minecraftforge.common.config.Config.RangeInt;
 import net.minecraftforge.common.config.Config.Type;
 import net.minecraftforge.common.config.ConfigManager;
 import org.richardcarter.chunkpurge.ChunkPurgeConfig;
 import org.richardcarter.chunkpurge.ChunkPurgeMod;
+import org.richardcarter.chunkpurge.reachability.ReachabilityEngine;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.function.Consumer;
@@ -27,10 +30,113 @@ public enum ConfigSubcommand {
                     (e) -> ChunkPurgeConfig.autoChunkPurgeEnabled = e),
             SubcommandCompletions.BOOLEAN),
     purgeinterval("[ticks]",
-            intHandler("purgeinterval",
+            rangedIntHandler("purgeinterval", "autoChunkPurgeInterval",
                     () -> ChunkPurgeConfig.autoChunkPurgeInterval,
                     (i) -> ChunkPurgeConfig.autoChunkPurgeInterval = i),
             SubcommandCompletions.NO_COMPLETIONS),
+    minpurgeinterval("[ticks]",
+            rangedIntHandler("minpurgeinterval", "autoChunkPurgeMinInterval",
+                    () -> ChunkPurgeConfig.autoChunkPurgeMinInterval,
+                    (i) -> ChunkPurgeConfig.autoChunkPurgeMinInterval = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    adaptiveinterval("[true|false]",
+            boolHandler("adaptiveinterval",
+                    () -> ChunkPurgeConfig.adaptivePurgeInterval,
+                    (a) -> ChunkPurgeConfig.adaptivePurgeInterval = a),
+            SubcommandCompletions.BOOLEAN),
+    scanbudget("[ms]",
+            rangedIntHandler("scanbudget", "scanTimeBudgetMs",
+                    () -> ChunkPurgeConfig.scanTimeBudgetMs,
+                    (i) -> ChunkPurgeConfig.scanTimeBudgetMs = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    unloadspertick("[chunks]",
+            rangedIntHandler("unloadspertick", "unloadsPerTick",
+                    () -> ChunkPurgeConfig.unloadsPerTick,
+                    (i) -> ChunkPurgeConfig.unloadsPerTick = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    unloadregionspertick("[regions]",
+            rangedIntHandler("unloadregionspertick", "unloadRegionsPerTick",
+                    () -> ChunkPurgeConfig.unloadRegionsPerTick,
+                    (i) -> ChunkPurgeConfig.unloadRegionsPerTick = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    costweighted("[true|false]",
+            boolHandler("costweighted",
+                    () -> ChunkPurgeConfig.costWeightedUnloads,
+                    (a) -> ChunkPurgeConfig.costWeightedUnloads = a),
+            SubcommandCompletions.BOOLEAN),
+    ticksampleinterval("[ticks]",
+            rangedIntHandler("ticksampleinterval", "tickSampleIntervalTicks",
+                    () -> ChunkPurgeConfig.tickSampleIntervalTicks,
+                    (i) -> ChunkPurgeConfig.tickSampleIntervalTicks = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    loadcausesampling("[loads]",
+            rangedIntHandler("loadcausesampling", "loadCauseSampling",
+                    () -> ChunkPurgeConfig.loadCauseSampling,
+                    (i) -> ChunkPurgeConfig.loadCauseSampling = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    minidle("[ticks]",
+            rangedIntHandler("minidle", "minIdleTicks",
+                    () -> ChunkPurgeConfig.minIdleTicks,
+                    (i) -> ChunkPurgeConfig.minIdleTicks = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    reloadedunloadspertick("[chunks]",
+            rangedIntHandler("reloadedunloadspertick", "reloadedUnloadsPerTick",
+                    () -> ChunkPurgeConfig.reloadedUnloadsPerTick,
+                    (i) -> ChunkPurgeConfig.reloadedUnloadsPerTick = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    thrashreloads("[reloads]",
+            rangedIntHandler("thrashreloads", "thrashPinReloads",
+                    () -> ChunkPurgeConfig.thrashPinReloads,
+                    (i) -> ChunkPurgeConfig.thrashPinReloads = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    thrashwindow("[ticks]",
+            rangedIntHandler("thrashwindow", "thrashWindowTicks",
+                    () -> ChunkPurgeConfig.thrashWindowTicks,
+                    (i) -> ChunkPurgeConfig.thrashWindowTicks = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    thrashradius("[chunks]",
+            rangedIntHandler("thrashradius", "thrashPinRadius",
+                    () -> ChunkPurgeConfig.thrashPinRadius,
+                    (i) -> ChunkPurgeConfig.thrashPinRadius = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    thrashpinticks("[ticks]",
+            rangedIntHandler("thrashpinticks", "thrashPinTicks",
+                    () -> ChunkPurgeConfig.thrashPinTicks,
+                    (i) -> ChunkPurgeConfig.thrashPinTicks = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    purgeonleave("[true|false]",
+            boolHandler("purgeonleave",
+                    () -> ChunkPurgeConfig.purgeOnPlayerLeave,
+                    (a) -> ChunkPurgeConfig.purgeOnPlayerLeave = a),
+            SubcommandCompletions.BOOLEAN),
+    asyncscan("[true|false]",
+            boolHandler("asyncscan",
+                    () -> ChunkPurgeConfig.asyncScan,
+                    (a) -> ChunkPurgeConfig.asyncScan = a),
+            SubcommandCompletions.BOOLEAN),
+    engine("[flood_fill|bitmap|union_find]",
+            handler("engine",
+                    () -> ChunkPurgeConfig.reachabilityEngine,
+                    (e) -> ReachabilityEngine.valueOf(e.toUpperCase(Locale.ROOT)),
+                    (e) -> ChunkPurgeConfig.reachabilityEngine = e),
+            SubcommandCompletions.fromArray(Arrays.stream(ReachabilityEngine.values())
+                    .map(e -> e.name().toLowerCase(Locale.ROOT))
+                    .toArray(String[]::new))),
+    trace("[true|false]",
+            boolHandler("trace",
+                    () -> ChunkPurgeConfig.traceEnabled,
+                    (t) -> ChunkPurgeConfig.traceEnabled = t),
+            SubcommandCompletions.BOOLEAN),
+    heapthreshold("[percent]",
+            rangedIntHandler("heapthreshold", "heapPressureThresholdPercent",
+                    () -> ChunkPurgeConfig.heapPressureThresholdPercent,
+                    (i) -> ChunkPurgeConfig.heapPressureThresholdPercent = i),
+            SubcommandCompletions.NO_COMPLETIONS),
+    heapradius("[percent]",
+            rangedIntHandler("heapradius", "heapPressureRadiusPercent",
+                    () -> ChunkPurgeConfig.heapPressureRadiusPercent,
+                    (i) -> ChunkPurgeConfig.heapPressureRadiusPercent = i),
+            SubcommandCompletions.NO_COMPLETIONS),
     debug("[true|false]",
             boolHandler("debug",
                     () -> ChunkPurgeConfig.debug,
@@ -100,6 +206,31 @@ public enum ConfigSubcommand {
         return handler(field, configGet, Integer::parseInt, configSet);
     }
 
+    /*
+     * As intHandler, but turns down values outside the @RangeInt bounds of the ChunkPurgeConfig field, as the config
+     * file would.
+     */
+    private static SubcommandHandler rangedIntHandler(String field, String configField, Supplier<Integer> configGet,
+                                                      Consumer<Integer> configSet) {
+        RangeInt range;
+        try {
+            range = ChunkPurgeConfig.class.getField(configField).getAnnotation(RangeInt.class);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("No config field " + configField, e);
+        }
+        SubcommandHandler update = intHandler(field, configGet, configSet);
+        return (sender, arg) -> {
+            int value = Integer.parseInt(arg);
+            if (value < range.min() || value > range.max()) {
+                sender.sendMessage(new TextComponentString(field + " must be "
+                        + (range.max() == Integer.MAX_VALUE ? "at least " + range.min()
+                                : "between " + range.min() + " and " + range.max())));
+                return;
+            }
+            update.update(sender, arg);
+        };
+    }
+
     private static <T> SubcommandHandler handler(String field, Supplier<T> configGet, Function<String, T> argParse, Consumer<T> configSet) {
         return (sender, arg) -> {
             T newValue = argParse.apply(arg);
@@ -0,0 +1,50 @@
+package org.richardcarter.chunkpurge.commands;
+
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import org.richardcarter.chunkpurge.ChunkCost;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import java.util.List;
+
+/*
+ * /chunkpurge costly [dim]: the orphaned chunks waiting to be unloaded in each dimension that cost most to keep
+ * loaded, with what they hold (see ChunkCost).
+ */
+public class CostlySubcommand {
+    public static final String NAME = "costly";
+    public static final String USAGE = "[dim]";
+    // chunks listed per dimension
+    private static final int LISTED = 10;
+
+    static void execute(ICommandSender sender, String[] args) throws CommandException {
+        boolean any = false;
+        for (WorldServer world : ChunkPurgeCommand.worldsFromArgs(args)) {
+            List<ChunkCost.Costly> costliest = ChunkCost.getCostliestQueued(world, LISTED);
+            if (costliest.isEmpty()) {
+                continue;
+            }
+            any = true;
+            StringBuilder message = new StringBuilder("Dim " + world.provider.getDimension() + " ("
+                    + world.provider.getDimensionType().getName() + "):");
+            for (ChunkCost.Costly costly : costliest) {
+                message.append("\n  ").append(ChunkKeys.x(costly.getChunk())).append(", ")
+                        .append(ChunkKeys.z(costly.getChunk())).append(": ")
+                        .append(costly.getTickingTileEntities()).append(" ticking tile entities, ")
+                        .append(costly.getEntities()).append(" entities");
+                if (costly.getNanosPerTick() > 0) {
+                    message.append(", ").append(String.format("%.3f", costly.getNanosPerTick() / 1e6))
+                            .append(" ms per tick");
+                }
+                message.append(", cost ").append(costly.getCost());
+            }
+            sender.sendMessage(new TextComponentString(message.toString()));
+        }
+
+        if (!any) {
+            sender.sendMessage(new TextComponentString("No orphaned chunks with tile entities or entities waiting to be unloaded"));
+        }
+    }
+}
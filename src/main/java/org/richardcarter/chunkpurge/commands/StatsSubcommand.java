@@ -0,0 +1,80 @@
+package org.richardcarter.chunkpurge.commands;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+import org.richardcarter.chunkpurge.metrics.DimensionMetrics;
+import org.richardcarter.chunkpurge.metrics.PurgeMetrics;
+import org.richardcarter.chunkpurge.metrics.RollingHistogram;
+import org.richardcarter.chunkpurge.metrics.SampleSeries;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * /chunkpurge stats [dim]: a few lines per dimension from its DimensionMetrics.
+ */
+public class StatsSubcommand {
+    public static final String NAME = "stats";
+    public static final String USAGE = "[dim]";
+
+    static void execute(ICommandSender sender, String[] args) throws CommandException {
+        List<DimensionMetrics> dimensions;
+        if (args.length < 2) {
+            dimensions = PurgeMetrics.all();
+        } else {
+            DimensionMetrics metrics = PurgeMetrics.find(CommandBase.parseInt(args[1]));
+            dimensions = metrics == null ? Collections.emptyList() : Collections.singletonList(metrics);
+        }
+
+        if (dimensions.isEmpty()) {
+            sender.sendMessage(new TextComponentString("No chunk purge stats yet"));
+            return;
+        }
+        long now = System.nanoTime();
+        for (DimensionMetrics metrics : dimensions) {
+            sender.sendMessage(new TextComponentString(summarize(metrics, now)));
+        }
+        if (PurgeMetrics.getEmergencies() > 0) {
+            sender.sendMessage(new TextComponentString("Heap pressure purges: " + PurgeMetrics.getEmergencies()
+                    + ", unloading " + PurgeMetrics.getEmergencyChunks() + " chunks"));
+        }
+    }
+
+    private static String summarize(DimensionMetrics metrics, long now) {
+        WorldServer world = DimensionManager.getWorld(metrics.getDimension());
+        String name = world != null ? world.provider.getDimensionType().getName() : "not loaded";
+        SampleSeries loaded = metrics.getLoadedChunks();
+        RollingHistogram scans = metrics.getScanNanos();
+        RollingHistogram serverThread = metrics.getServerThreadNanos();
+
+        return "Dim " + metrics.getDimension() + " (" + name + "): "
+                + loaded.getLast() + " loaded (avg " + Math.round(loaded.getAverage()) + ", max " + loaded.getMax() + "), "
+                + metrics.getUnloadQueue().getLast() + " in queue, "
+                + metrics.getDroppedChunks().getLast() + " waiting in the world (max " + metrics.getDroppedChunks().getMax() + ")"
+                + "\n  " + scans.getCount(now) + " scans: p50 " + millis(scans.getPercentile(0.5, now))
+                + ", p99 " + millis(scans.getPercentile(0.99, now))
+                + ", max " + millis(scans.getMax(now)) + " ms"
+                + " (server thread p50 " + millis(serverThread.getPercentile(0.5, now))
+                + ", p99 " + millis(serverThread.getPercentile(0.99, now))
+                + ", max " + millis(serverThread.getMax(now)) + " ms)"
+                + "\n  since start: " + metrics.getScans() + " scans, " + metrics.getScansSkipped() + " skipped as unchanged, "
+                + metrics.getChunksQueued() + " queued, "
+                + metrics.getChunksHandedOver() + " handed to the world, " + metrics.getChunksUnloaded() + " unloaded, "
+                + metrics.getChunksReloaded() + " reloaded soon after";
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    static List<String> getTabCompletions(String[] args) {
+        String[] dimensions = PurgeMetrics.all().stream()
+                .map(m -> Integer.toString(m.getDimension()))
+                .toArray(String[]::new);
+        return ConfigSubcommand.SubcommandCompletions.fromArray(dimensions).getTabCompletions(null, null, args, null);
+    }
+}
@@ -0,0 +1,52 @@
+package org.richardcarter.chunkpurge.commands;
+
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.WorldPurgeState;
+import org.richardcarter.chunkpurge.reachability.ThrashDetector;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import java.util.List;
+
+/*
+ * /chunkpurge thrash [dim]: the chunks each dimension pinned for reloading right after purges, and the ones closest
+ * to being pinned, from its ThrashDetector.
+ */
+public class ThrashSubcommand {
+    public static final String NAME = "thrash";
+    public static final String USAGE = "[dim]";
+    // chunks listed per dimension
+    private static final int LISTED = 10;
+
+    static void execute(ICommandSender sender, String[] args) throws CommandException {
+        boolean any = false;
+        for (WorldServer world : ChunkPurgeCommand.worldsFromArgs(args)) {
+            int now = (int) world.getTotalWorldTime();
+            ThrashDetector thrash = WorldPurgeState.get(world).getThrashDetector();
+            List<ThrashDetector.Offender> worst = thrash.getWorst(LISTED, now);
+            if (worst.isEmpty()) {
+                continue;
+            }
+            any = true;
+            StringBuilder message = new StringBuilder("Dim " + world.provider.getDimension() + " ("
+                    + world.provider.getDimensionType().getName() + "): " + thrash.getPinCount() + " pinned");
+            for (ThrashDetector.Offender offender : worst) {
+                message.append("\n  ").append(ChunkKeys.x(offender.getChunk())).append(", ")
+                        .append(ChunkKeys.z(offender.getChunk())).append(": ")
+                        .append(offender.getReloads()).append(" reloads");
+                if (offender.getPinnedFor() > 0) {
+                    message.append(", pinned for ").append(offender.getPinnedFor() / 20).append(" s more");
+                }
+            }
+            sender.sendMessage(new TextComponentString(message.toString()));
+        }
+
+        if (!any) {
+            sender.sendMessage(new TextComponentString("No chunks reloaded soon after a purge in the last "
+                    + ChunkPurgeConfig.thrashWindowTicks + " ticks"));
+        }
+    }
+}
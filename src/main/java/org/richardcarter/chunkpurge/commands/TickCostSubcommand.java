@@ -0,0 +1,53 @@
+package org.richardcarter.chunkpurge.commands;
+
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.WorldPurgeState;
+import org.richardcarter.chunkpurge.metrics.TickCosts;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+/*
+ * /chunkpurge tickcost [dim]: the region files whose chunks took the most tick time in each dimension's last tick
+ * cost sample (see TickCostSampler).
+ */
+public class TickCostSubcommand {
+    public static final String NAME = "tickcost";
+    public static final String USAGE = "[dim]";
+    // regions listed per dimension
+    private static final int LISTED = 10;
+
+    static void execute(ICommandSender sender, String[] args) throws CommandException {
+        boolean any = false;
+        for (WorldServer world : ChunkPurgeCommand.worldsFromArgs(args)) {
+            TickCosts costs = WorldPurgeState.get(world).getTickCosts();
+            if (costs.getChunkCount() == 0) {
+                continue;
+            }
+            any = true;
+            StringBuilder message = new StringBuilder("Dim " + world.provider.getDimension() + " ("
+                    + world.provider.getDimensionType().getName() + "): " + millis(costs.getTotalNanosPerTick())
+                    + " ms per tick in " + costs.getChunkCount() + " chunks, sampled "
+                    + (world.getTotalWorldTime() - costs.getSampledAt()) / 20 + " s ago");
+            for (TickCosts.Region region : costs.getCostliestRegions(LISTED)) {
+                message.append("\n  r.").append(ChunkKeys.x(region.getRegion())).append(".")
+                        .append(ChunkKeys.z(region.getRegion())).append(": ")
+                        .append(millis(region.getNanosPerTick())).append(" ms per tick in ")
+                        .append(region.getChunks()).append(" chunks");
+            }
+            sender.sendMessage(new TextComponentString(message.toString()));
+        }
+
+        if (!any) {
+            sender.sendMessage(new TextComponentString(ChunkPurgeConfig.tickSampleIntervalTicks > 0
+                    ? "No tick costs sampled yet"
+                    : "Tick cost sampling is off, see ticksampleinterval"));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,183 @@
+package org.richardcarter.chunkpurge.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * The jdk.jfr side of PurgeEvents, only loaded once it knows jdk.jfr is there.
+ */
+class FlightRecorderEvents {
+
+    static PhaseEvent begin(PurgePhase phase) {
+        if (!FlightRecorder.isInitialized()) {
+            return PhaseEvent.NONE;
+        }
+        PurgePhaseEvent event = create(phase);
+        if (!event.isEnabled()) {
+            return PhaseEvent.NONE;
+        }
+        event.begin();
+        return (dimension, chunks, otherChunks) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(dimension, chunks, otherChunks);
+                event.commit();
+            }
+        };
+    }
+
+    private static PurgePhaseEvent create(PurgePhase phase) {
+        switch (phase) {
+            case SNAPSHOT:
+                return new SnapshotEvent();
+            case PLAYER_ANCHORS:
+                return new AnchorsEvent("player");
+            case TICKET_ANCHORS:
+                return new AnchorsEvent("ticket");
+            case SPAWN_ANCHORS:
+                return new AnchorsEvent("spawn");
+            case ORPHAN_FILTER:
+                return new OrphanFilterEvent();
+            case QUEUE:
+                return new QueueEvent();
+            case HAND_OVER:
+                return new HandOverEvent();
+            case SAVE_OFF:
+                return new SaveToggleEvent(true);
+            case SAVE_ON:
+                return new SaveToggleEvent(false);
+            default:
+                throw new IllegalArgumentException(phase.name());
+        }
+    }
+
+    // every event declares all of its own fields, dimension included
+    abstract static class PurgePhaseEvent extends Event {
+        abstract void set(int dimension, int chunks, int otherChunks);
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.Snapshot")
+    @Label("Snapshot")
+    @Description("Loaded chunks and anchors copied for a background purge analysis")
+    static class SnapshotEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Loaded Chunks")
+        int loadedChunks;
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            loadedChunks = chunks;
+        }
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.Anchors")
+    @Label("Anchor Resolution")
+    @Description("Players, chunk loader tickets or the spawn collected as purge anchors")
+    static class AnchorsEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Anchor Type")
+        String anchorType;
+        @Label("Anchors")
+        int anchors;
+
+        AnchorsEvent(String anchorType) {
+            this.anchorType = anchorType;
+        }
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            anchors = chunks;
+        }
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.OrphanFilter")
+    @Label("Orphan Filter")
+    @Description("Loaded chunks checked for a path to an anchor")
+    static class OrphanFilterEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Loaded Chunks")
+        int loadedChunks;
+        @Label("Orphaned Chunks")
+        @Description("-1 for a slice of a scan that carries on in a later tick")
+        int orphanedChunks;
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            loadedChunks = chunks;
+            orphanedChunks = otherChunks;
+        }
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.Queue")
+    @Label("Unload Queueing")
+    @Description("Orphaned chunks put in the unload queue")
+    static class QueueEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Queued Chunks")
+        int queuedChunks;
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            queuedChunks = chunks;
+        }
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.HandOver")
+    @Label("Unload Hand Over")
+    @Description("Queued chunks handed to the world to unload")
+    static class HandOverEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Handed Over Chunks")
+        int handedOverChunks;
+        @Label("Remaining Queued Chunks")
+        int remainingChunks;
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            handedOverChunks = chunks;
+            remainingChunks = otherChunks;
+        }
+    }
+
+    @Category("ChunkPurge")
+    @Name("org.richardcarter.chunkpurge.SaveToggle")
+    @Label("Save Toggle")
+    @Description("World saving switched off or back on")
+    static class SaveToggleEvent extends PurgePhaseEvent {
+        @Label("Dimension")
+        int dimension;
+        @Label("Saving Disabled")
+        boolean savingDisabled;
+        @Label("Pending Unloads")
+        int pendingChunks;
+
+        SaveToggleEvent(boolean savingDisabled) {
+            this.savingDisabled = savingDisabled;
+        }
+
+        @Override
+        void set(int dimension, int chunks, int otherChunks) {
+            this.dimension = dimension;
+            pendingChunks = chunks;
+        }
+    }
+}
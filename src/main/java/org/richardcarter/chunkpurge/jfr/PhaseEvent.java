@@ -0,0 +1,17 @@
+package org.richardcarter.chunkpurge.jfr;
+
+/*
+ * A purge phase being timed, started by PurgeEvents.begin.
+ */
+public interface PhaseEvent {
+    PhaseEvent NONE = (dimension, chunks, otherChunks) -> {};
+
+    /*
+     * The phase is done; record it if anything is recording. See PurgePhase for what the counts are.
+     */
+    void end(int dimension, int chunks, int otherChunks);
+
+    default void end(int dimension, int chunks) {
+        end(dimension, chunks, 0);
+    }
+}
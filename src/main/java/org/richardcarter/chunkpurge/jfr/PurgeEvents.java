@@ -0,0 +1,23 @@
+package org.richardcarter.chunkpurge.jfr;
+
+/*
+ * Times purge phases as Java Flight Recorder events, so ChunkPurge's work lines up with GC pauses and tick times in a
+ * recording. On a JVM without jdk.jfr (Java 8 before 8u262) none of the event classes are ever loaded, and until a
+ * recording starts, begin returns PhaseEvent.NONE without allocating anything.
+ */
+public class PurgeEvents {
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    public static PhaseEvent begin(PurgePhase phase) {
+        return AVAILABLE ? FlightRecorderEvents.begin(phase) : PhaseEvent.NONE;
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
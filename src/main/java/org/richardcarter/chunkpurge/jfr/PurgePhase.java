@@ -0,0 +1,24 @@
+package org.richardcarter.chunkpurge.jfr;
+
+/*
+ * The parts of a purge that are recorded as Java Flight Recorder events, and what the two counts passed to
+ * PhaseEvent.end mean for each.
+ */
+public enum PurgePhase {
+    // copying the loaded chunks and anchors for a background analysis: loaded chunks
+    SNAPSHOT,
+    // collecting the anchors of one type: anchors found
+    PLAYER_ANCHORS,
+    TICKET_ANCHORS,
+    SPAWN_ANCHORS,
+    // finding the loaded chunks no anchor reaches: loaded chunks, orphaned chunks (-1 while a budgeted scan is
+    // still unfinished)
+    ORPHAN_FILTER,
+    // replacing the unload queue with the orphans: chunks queued
+    QUEUE,
+    // handing chunks from the queue to the world: chunks handed over, chunks left in the queue
+    HAND_OVER,
+    // switching world saving off or on: chunks waiting for the world to unload them
+    SAVE_OFF,
+    SAVE_ON
+}
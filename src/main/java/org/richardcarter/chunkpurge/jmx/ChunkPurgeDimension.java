@@ -0,0 +1,189 @@
+package org.richardcarter.chunkpurge.jmx;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.common.config.Config.Type;
+import net.minecraftforge.common.config.ConfigManager;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.ChunkPurgeMod;
+import org.richardcarter.chunkpurge.metrics.DimensionMetrics;
+import org.richardcarter.chunkpurge.metrics.DimensionStatus;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/*
+ * The ChunkPurgeDimensionMXBean of one dimension. Attributes are read from the DimensionStatus the server thread
+ * publishes; settings and purge requests are handed to the server thread rather than applied on the JMX thread.
+ */
+public class ChunkPurgeDimension implements ChunkPurgeDimensionMXBean {
+    private final DimensionMetrics metrics;
+    private final Runnable requestPurge;
+
+    private ChunkPurgeDimension(DimensionMetrics metrics, Runnable requestPurge) {
+        this.metrics = metrics;
+        this.requestPurge = requestPurge;
+    }
+
+    /*
+     * Register the bean of a dimension, replacing any left over from an earlier world of the same dimension.
+     * requestPurge is called on a JMX thread, so should only set a flag.
+     */
+    public static void register(DimensionMetrics metrics, Runnable requestPurge) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = nameOf(metrics.getDimension());
+            ChunkPurgeDimension bean = new ChunkPurgeDimension(metrics, requestPurge);
+            try {
+                server.registerMBean(bean, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            ChunkPurgeMod.log.warn("Couldn't register the JMX bean of dim " + metrics.getDimension(), e);
+        }
+    }
+
+    public static void unregister(int dimension) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nameOf(dimension));
+        } catch (InstanceNotFoundException e) {
+            // never registered
+        } catch (JMException e) {
+            ChunkPurgeMod.log.warn("Couldn't unregister the JMX bean of dim " + dimension, e);
+        }
+    }
+
+    public static void unregisterAll() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName("org.richardcarter.chunkpurge:type=Dimension,*"), null)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            ChunkPurgeMod.log.warn("Couldn't unregister the JMX beans", e);
+        }
+    }
+
+    private static ObjectName nameOf(int dimension) throws JMException {
+        return new ObjectName("org.richardcarter.chunkpurge:type=Dimension,dimension=" + dimension);
+    }
+
+    private DimensionStatus status() {
+        return metrics.getStatus();
+    }
+
+    @Override
+    public int getDimension() {
+        return metrics.getDimension();
+    }
+
+    @Override
+    public int getLoadedChunks() {
+        return status().getLoadedChunks();
+    }
+
+    @Override
+    public int getAnchoredChunks() {
+        return status().getLastScanLoaded() - status().getLastScanOrphaned();
+    }
+
+    @Override
+    public int getOrphanedChunks() {
+        return status().getLastScanOrphaned();
+    }
+
+    @Override
+    public int getQueuedChunks() {
+        return status().getLastScanQueued();
+    }
+
+    @Override
+    public double getLastScanMillis() {
+        return status().getLastScanNanos() / 1e6;
+    }
+
+    @Override
+    public long getLastScanTime() {
+        return status().getLastScanTimeMillis();
+    }
+
+    @Override
+    public int getUnloadQueueDepth() {
+        return status().getUnloadQueue();
+    }
+
+    @Override
+    public int getPendingWorldUnloads() {
+        return status().getDroppedChunks();
+    }
+
+    @Override
+    public boolean isSavingDisabled() {
+        return status().isSavingDisabled();
+    }
+
+    @Override
+    public boolean isPurgeEnabled() {
+        return ChunkPurgeConfig.autoChunkPurgeEnabled;
+    }
+
+    @Override
+    public void setPurgeEnabled(boolean enabled) {
+        updateConfig(() -> ChunkPurgeConfig.autoChunkPurgeEnabled = enabled);
+    }
+
+    @Override
+    public int getPurgeIntervalTicks() {
+        return ChunkPurgeConfig.autoChunkPurgeInterval;
+    }
+
+    @Override
+    public void setPurgeIntervalTicks(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("The purge interval must be at least 1 tick");
+        }
+        updateConfig(() -> ChunkPurgeConfig.autoChunkPurgeInterval = ticks);
+    }
+
+    @Override
+    public int getUnloadsPerTick() {
+        return ChunkPurgeConfig.unloadsPerTick;
+    }
+
+    @Override
+    public void setUnloadsPerTick(int chunks) {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("At least 1 chunk must be unloaded per tick");
+        }
+        updateConfig(() -> ChunkPurgeConfig.unloadsPerTick = chunks);
+    }
+
+    @Override
+    public String purgeNow() {
+        if (!ChunkPurgeConfig.autoChunkPurgeEnabled) {
+            return "Purging is disabled";
+        }
+        requestPurge.run();
+        return "Purge of dim " + metrics.getDimension() + " requested";
+    }
+
+    /*
+     * Change the config on the server thread, and save it as the config subcommands do.
+     */
+    private static void updateConfig(Runnable change) {
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        if (server == null) {
+            throw new IllegalStateException("The server isn't running");
+        }
+        server.addScheduledTask(() -> {
+            change.run();
+            ConfigManager.sync(ChunkPurgeMod.MODID, Type.INSTANCE);
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package org.richardcarter.chunkpurge.jmx;
+
+/*
+ * What ChunkPurge exposes over JMX for each loaded dimension, as
+ * org.richardcarter.chunkpurge:type=Dimension,dimension=<id>. Counts are from the last status the server thread
+ * published (about once a second) and the last scan; they never walk the world.
+ *
+ * The purge settings are shared by every dimension, so setting them on one bean changes them for all.
+ */
+public interface ChunkPurgeDimensionMXBean {
+    int getDimension();
+
+    int getLoadedChunks();
+
+    // of the chunks loaded at the last scan, those reachable from an anchor and those that weren't
+    int getAnchoredChunks();
+
+    int getOrphanedChunks();
+
+    // of the orphaned chunks, those the last scan queued for unloading
+    int getQueuedChunks();
+
+    double getLastScanMillis();
+
+    // wall clock time the last scan finished, 0 if there hasn't been one
+    long getLastScanTime();
+
+    int getUnloadQueueDepth();
+
+    // chunks the world itself has waiting to unload (its droppedChunksSet)
+    int getPendingWorldUnloads();
+
+    boolean isSavingDisabled();
+
+    boolean isPurgeEnabled();
+
+    void setPurgeEnabled(boolean enabled);
+
+    int getPurgeIntervalTicks();
+
+    void setPurgeIntervalTicks(int ticks);
+
+    int getUnloadsPerTick();
+
+    void setUnloadsPerTick(int chunks);
+
+    /*
+     * Purge this dimension on the next tick instead of waiting for the interval.
+     */
+    String purgeNow();
+}
@@ -0,0 +1,167 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * What the purge has been doing in one dimension: how long its scans take, how many chunks it queues and unloads, and
+ * how the loaded chunks and the world's own unload backlog develop. Recording never allocates, so this is always on.
+ *
+ * Only touched from the server thread, apart from getStatus.
+ */
+public class DimensionMetrics {
+    // histograms cover the last 5 to 6 minutes
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int WINDOWS = 6;
+    // gauges are sampled once a second, for the last 5 minutes
+    public static final int SAMPLE_INTERVAL_TICKS = 20;
+    private static final int SAMPLES = 300;
+
+    private final int dimension;
+
+    // the whole scan: time spent on the server thread for a synchronous one, off it for a background one
+    private final RollingHistogram scanNanos = new RollingHistogram(WINDOW_NANOS, WINDOWS);
+    // what a scan cost the server thread; the same as scanNanos for synchronous scans
+    private final RollingHistogram serverThreadNanos = new RollingHistogram(WINDOW_NANOS, WINDOWS);
+
+    private final SampleSeries loadedChunks = new SampleSeries(SAMPLES);
+    private final SampleSeries unloadQueue = new SampleSeries(SAMPLES);
+    private final SampleSeries droppedChunks = new SampleSeries(SAMPLES);
+    private int ticksUntilSample;
+
+    private int lastScanLoaded;
+    private int lastScanOrphaned;
+    private int lastScanQueued;
+    private long lastScanNanos;
+    private long lastScanTimeMillis;
+    private volatile DimensionStatus status = DimensionStatus.EMPTY;
+
+    private long scans;
+    private long scansSkipped;
+    private long chunksQueued;
+    private long chunksHandedOver;
+    private long chunksUnloaded;
+    private long chunksReloaded;
+
+    DimensionMetrics(int dimension) {
+        this.dimension = dimension;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /*
+     * A scan of loaded chunks found orphaned of them orphaned, and queued queued of those for unloading.
+     */
+    public void scanFinished(long scanNanos, long serverThreadNanos, int loaded, int orphaned, int queued) {
+        long now = System.nanoTime();
+        this.scanNanos.record(scanNanos, now);
+        this.serverThreadNanos.record(serverThreadNanos, now);
+        scans++;
+        chunksQueued += queued;
+
+        lastScanLoaded = loaded;
+        lastScanOrphaned = orphaned;
+        lastScanQueued = queued;
+        lastScanNanos = scanNanos;
+        lastScanTimeMillis = System.currentTimeMillis();
+    }
+
+    /*
+     * Chunks queued for unloading outside of a scan, such as those a player left behind.
+     */
+    public void queued(int chunks) {
+        chunksQueued += chunks;
+    }
+
+    /*
+     * A scan was due but skipped, since nothing changed since the last one.
+     */
+    public void scanSkipped() {
+        scansSkipped++;
+    }
+
+    /*
+     * Chunks handed from the UnloadQueue to the world.
+     */
+    public void handedOver(int chunks) {
+        chunksHandedOver += chunks;
+    }
+
+    /*
+     * A chunk the world actually unloaded, whoever asked for it.
+     */
+    public void chunkUnloaded() {
+        chunksUnloaded++;
+    }
+
+    /*
+     * A chunk a purge handed over loaded again shortly after.
+     */
+    public void chunkReloaded() {
+        chunksReloaded++;
+    }
+
+    /*
+     * Called every tick; samples the gauges and publishes a new status every SAMPLE_INTERVAL_TICKS ticks.
+     */
+    public void tick(int loaded, int queued, int dropped, boolean savingDisabled) {
+        if (--ticksUntilSample > 0) {
+            return;
+        }
+        ticksUntilSample = SAMPLE_INTERVAL_TICKS;
+        loadedChunks.add(loaded);
+        unloadQueue.add(queued);
+        droppedChunks.add(dropped);
+        status = new DimensionStatus(loaded, queued, dropped, savingDisabled,
+                lastScanLoaded, lastScanOrphaned, lastScanQueued, lastScanNanos, lastScanTimeMillis);
+    }
+
+    public DimensionStatus getStatus() {
+        return status;
+    }
+
+    public RollingHistogram getScanNanos() {
+        return scanNanos;
+    }
+
+    public RollingHistogram getServerThreadNanos() {
+        return serverThreadNanos;
+    }
+
+    public SampleSeries getLoadedChunks() {
+        return loadedChunks;
+    }
+
+    public SampleSeries getUnloadQueue() {
+        return unloadQueue;
+    }
+
+    public SampleSeries getDroppedChunks() {
+        return droppedChunks;
+    }
+
+    public long getScans() {
+        return scans;
+    }
+
+    public long getChunksQueued() {
+        return chunksQueued;
+    }
+
+    public long getChunksHandedOver() {
+        return chunksHandedOver;
+    }
+
+    public long getChunksUnloaded() {
+        return chunksUnloaded;
+    }
+
+    public long getScansSkipped() {
+        return scansSkipped;
+    }
+
+    public long getChunksReloaded() {
+        return chunksReloaded;
+    }
+}
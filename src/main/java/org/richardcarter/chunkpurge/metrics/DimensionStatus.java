@@ -0,0 +1,25 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import lombok.Value;
+
+/*
+ * A dimension's state as of the last gauge sample, published by the server thread for other threads to read (see
+ * ChunkPurgeDimension). Chunk counts of the last scan are as it saw them, not as they are now.
+ */
+@Value
+public class DimensionStatus {
+    public static final DimensionStatus EMPTY = new DimensionStatus(0, 0, 0, false, 0, 0, 0, 0, 0);
+
+    int loadedChunks;
+    int unloadQueue;
+    int droppedChunks;
+    boolean savingDisabled;
+
+    int lastScanLoaded;
+    int lastScanOrphaned;
+    // of the orphans, those the scan queued for unloading rather than held back as too young
+    int lastScanQueued;
+    long lastScanNanos;
+    // wall clock time the last scan finished, 0 if there hasn't been one
+    long lastScanTimeMillis;
+}
@@ -0,0 +1,174 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import lombok.Value;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * What loads a dimension's chunks, from the call stacks of sampled chunk loads (see ChunkEventHandler): how many
+ * loads each source caused, and in which region files.
+ *
+ * A source is the first class on the stack that isn't part of loading a chunk itself, such as the tile entity, block
+ * or entity that asked for it, so a quarry or a pipe that loads a chunk while it ticks shows up as its own class,
+ * whether the chunk is read from disk or generated. Chunks the asynchronous chunk loader read and hands over in its
+ * own tick, which is how players load most of theirs, show up as that loader since it doesn't keep the stack of
+ * whoever asked.
+ *
+ * Memory stays bounded however many sources there are: only SOURCES of them are counted, and when a new one comes
+ * along the least counted one makes way for it and hands over its count (the Space-Saving algorithm). A source that
+ * really loads often is never dropped, and its count is off by at most its error. Regions are kept per source the
+ * same way.
+ */
+public class LoadCauses {
+    static final int SOURCES = 64;
+    static final int REGIONS = 8;
+
+    // the packages and classes that make up loading a chunk, skipped when looking for the source
+    private static final String[] PLUMBING_PACKAGES = {
+            "java.", "javax.", "sun.", "jdk.", "com.google.", "it.unimi.",
+            "org.richardcarter.chunkpurge.",
+            "net.minecraftforge.fml.common.eventhandler.", "net.minecraftforge.event.",
+            "net.minecraftforge.common.chunkio.",
+            "net.minecraft.world.chunk.", "net.minecraft.util.math.",
+            // event handler classes generated by Forge, in the default package
+            "ASMEventHandler_"
+    };
+    private static final String[] PLUMBING_CLASSES = {
+            "net.minecraft.world.World", "net.minecraft.world.WorldServer", "net.minecraft.world.ChunkCache",
+            "net.minecraft.world.gen.ChunkProviderServer", "net.minecraftforge.common.MinecraftForge",
+            "net.minecraftforge.common.ForgeChunkManager"
+    };
+    // the asynchronous chunk loader hands over what it read from here, with nothing of whoever asked on the stack
+    static final String ASYNC_LOADER = "net.minecraftforge.common.chunkio.ChunkIOExecutor";
+    private static final String ASYNC_LOADER_TICK = "tick";
+    static final String UNKNOWN = "unknown";
+
+    @Value
+    public static class Cause {
+        String source;
+        long loads;
+        // loads may be over by up to this many, which belonged to sources that made way for this one
+        long error;
+        // as ChunkKeys.region, the one this source loaded most in
+        long topRegion;
+        long topRegionLoads;
+    }
+
+    private static class Source {
+        long loads;
+        long error;
+        final LongIntHashMap regions = new LongIntHashMap(0);
+    }
+
+    private final Map<String, Source> sources = new HashMap<>();
+    private long sampled;
+
+    /*
+     * The class that caused a chunk to load, from the stack of the load: the first frame that isn't loading
+     * machinery, with nested classes and lambdas folded into the class they are in. A load that gets down to the
+     * asynchronous loader's tick that way is the loader's.
+     */
+    public static String sourceOf(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.equals(ASYNC_LOADER) && frame.getMethodName().equals(ASYNC_LOADER_TICK)) {
+                return ASYNC_LOADER;
+            }
+            if (!isPlumbing(className)) {
+                int nested = className.indexOf('$');
+                return nested < 0 ? className : className.substring(0, nested);
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean isPlumbing(String className) {
+        for (String prefix : PLUMBING_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String plumbing : PLUMBING_CLASSES) {
+            if (className.startsWith(plumbing)
+                    && (className.length() == plumbing.length() || className.charAt(plumbing.length()) == '$')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Count a sampled load by the source, in the region (as ChunkKeys.region).
+     */
+    public void record(String source, long region) {
+        sampled++;
+        Source counts = sources.get(source);
+        if (counts == null) {
+            counts = new Source();
+            if (sources.size() >= SOURCES) {
+                Map.Entry<String, Source> least = null;
+                for (Map.Entry<String, Source> entry : sources.entrySet()) {
+                    if (least == null || entry.getValue().loads < least.getValue().loads) {
+                        least = entry;
+                    }
+                }
+                sources.remove(least.getKey());
+                counts.loads = least.getValue().loads;
+                counts.error = least.getValue().loads;
+            }
+            sources.put(source, counts);
+        }
+        counts.loads++;
+
+        LongIntHashMap regions = counts.regions;
+        if (!regions.containsKey(region) && regions.size() >= REGIONS) {
+            long[] least = {0, Integer.MAX_VALUE};
+            regions.forEach((r, loads) -> {
+                if (loads < least[1]) {
+                    least[0] = r;
+                    least[1] = loads;
+                }
+            });
+            regions.remove(least[0]);
+            regions.put(region, (int) least[1]);
+        }
+        regions.addTo(region, 1);
+    }
+
+    /*
+     * Sampled loads counted so far.
+     */
+    public long getSampled() {
+        return sampled;
+    }
+
+    /*
+     * The max sources that caused the most sampled loads, most first.
+     */
+    public List<Cause> getTop(int max) {
+        List<Cause> causes = new ArrayList<>();
+        for (Map.Entry<String, Source> entry : sources.entrySet()) {
+            Source source = entry.getValue();
+            long[] top = {0, 0};
+            source.regions.forEach((region, loads) -> {
+                if (loads > top[1]) {
+                    top[0] = region;
+                    top[1] = loads;
+                }
+            });
+            causes.add(new Cause(entry.getKey(), source.loads, source.error, top[0], top[1]));
+        }
+        causes.sort(Comparator.comparingLong(Cause::getLoads).reversed());
+        return causes.subList(0, Math.min(max, causes.size()));
+    }
+
+    public void clear() {
+        sources.clear();
+        sampled = 0;
+    }
+}
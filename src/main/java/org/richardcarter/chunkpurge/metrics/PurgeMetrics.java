@@ -0,0 +1,55 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The DimensionMetrics of every dimension seen since the server started. They outlive the dimension's world, so a
+ * dimension that unloads and loads again carries on where it was.
+ */
+public class PurgeMetrics {
+    private static final Map<Integer, DimensionMetrics> dimensions = new ConcurrentHashMap<>();
+
+    // purges of every dimension triggered by heap pressure (see HeapPressureMonitor), and the chunks they got unloaded
+    private static volatile int emergencies;
+    private static volatile long emergencyChunks;
+
+    public static DimensionMetrics get(int dimension) {
+        return dimensions.computeIfAbsent(dimension, DimensionMetrics::new);
+    }
+
+    public static DimensionMetrics find(int dimension) {
+        return dimensions.get(dimension);
+    }
+
+    public static List<DimensionMetrics> all() {
+        List<DimensionMetrics> all = new ArrayList<>(dimensions.values());
+        all.sort(Comparator.comparingInt(DimensionMetrics::getDimension));
+        return all;
+    }
+
+    public static void emergencyTriggered() {
+        emergencies++;
+    }
+
+    public static void emergencyUnloaded() {
+        emergencyChunks++;
+    }
+
+    public static int getEmergencies() {
+        return emergencies;
+    }
+
+    public static long getEmergencyChunks() {
+        return emergencyChunks;
+    }
+
+    public static void clear() {
+        dimensions.clear();
+        emergencies = 0;
+        emergencyChunks = 0;
+    }
+}
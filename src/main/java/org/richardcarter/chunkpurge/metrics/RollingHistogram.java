@@ -0,0 +1,113 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import java.util.Arrays;
+
+/*
+ * A histogram of durations (or any other non-negative longs) over a rolling time span, recorded without allocating.
+ *
+ * Values go into log-linear buckets: 8 per power of two, so a percentile is off by at most an eighth of its value.
+ * The span is covered by a ring of windows that are cleared in turn as time moves on, so what gets reported is
+ * always the last windowCount to windowCount - 1 windows of recordings.
+ */
+public class RollingHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long windowNanos;
+    private final int[][] windows;
+    private final long[] windowMax;
+    private final int[] windowCounts;
+    private long currentWindow;
+
+    public RollingHistogram(long windowNanos, int windowCount) {
+        this.windowNanos = windowNanos;
+        windows = new int[windowCount][BUCKETS];
+        windowMax = new long[windowCount];
+        windowCounts = new int[windowCount];
+    }
+
+    public void record(long value, long nowNanos) {
+        int window = rollTo(nowNanos);
+        windows[window][bucketOf(Math.max(value, 0))]++;
+        windowCounts[window]++;
+        windowMax[window] = Math.max(windowMax[window], value);
+    }
+
+    public int getCount(long nowNanos) {
+        rollTo(nowNanos);
+        int count = 0;
+        for (int windowCount : windowCounts) {
+            count += windowCount;
+        }
+        return count;
+    }
+
+    public long getMax(long nowNanos) {
+        rollTo(nowNanos);
+        long max = 0;
+        for (long value : windowMax) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /*
+     * The value below which the given fraction of recordings lie, as the upper bound of its bucket but never more
+     * than the largest value recorded. 0 if nothing was recorded.
+     */
+    public long getPercentile(double fraction, long nowNanos) {
+        int count = getCount(nowNanos);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            for (int[] window : windows) {
+                seen += window[bucket];
+            }
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), getMax(nowNanos));
+            }
+        }
+        return getMax(nowNanos);
+    }
+
+    private int rollTo(long nowNanos) {
+        long window = Math.floorDiv(nowNanos, windowNanos);
+        if (window != currentWindow) {
+            // clear every window passed over since the last recording, but no more than the whole ring
+            long stale = Math.min(window - currentWindow, windows.length);
+            for (long i = 1; i <= stale; i++) {
+                clear((int) Math.floorMod(currentWindow + i, windows.length));
+            }
+            currentWindow = window;
+        }
+        return (int) Math.floorMod(window, windows.length);
+    }
+
+    private void clear(int window) {
+        Arrays.fill(windows[window], 0);
+        windowMax[window] = 0;
+        windowCounts[window] = 0;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
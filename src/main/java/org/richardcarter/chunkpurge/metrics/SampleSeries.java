@@ -0,0 +1,55 @@
+package org.richardcarter.chunkpurge.metrics;
+
+/*
+ * The last few samples of a gauge, such as the number of loaded chunks, in a ring buffer.
+ */
+public class SampleSeries {
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    public SampleSeries(int capacity) {
+        samples = new long[capacity];
+    }
+
+    public void add(long sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getLast() {
+        return size == 0 ? 0 : samples[(next - 1 + samples.length) % samples.length];
+    }
+
+    public long getMin() {
+        long min = size == 0 ? 0 : Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, samples[i]);
+        }
+        return min;
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    public double getAverage() {
+        if (size == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[i];
+        }
+        return (double) sum / size;
+    }
+}
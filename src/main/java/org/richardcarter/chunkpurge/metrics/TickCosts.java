@@ -0,0 +1,98 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import lombok.Value;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Where a dimension's tick time went during its last sample (see TickCostSampler): the nanoseconds per tick its tile
+ * entities and entities took to update, by the chunk they were in. Chunks nothing was timed in aren't kept.
+ *
+ * Filled in once, by add, and only read after that.
+ */
+public class TickCosts {
+    public static final TickCosts NONE = new TickCosts(1, -1);
+
+    @Value
+    public static class Region {
+        // as ChunkKeys.region
+        long region;
+        long nanosPerTick;
+        int chunks;
+    }
+
+    private final int ticks;
+    private final long sampledAt;
+    private final LongIntHashMap nanosPerTick = new LongIntHashMap(0);
+    private long totalNanosPerTick;
+
+    /*
+     * A sample over the given number of ticks, which ended at world time sampledAt.
+     */
+    public TickCosts(int ticks, long sampledAt) {
+        this.ticks = ticks;
+        this.sampledAt = sampledAt;
+    }
+
+    /*
+     * Count the nanoseconds something in the chunk took over the whole sample.
+     */
+    public void add(long chunk, long nanos) {
+        long perTick = nanos / ticks;
+        if (perTick <= 0) {
+            return;
+        }
+        nanosPerTick.put(chunk, (int) Math.min(Integer.MAX_VALUE, nanosPerTick.get(chunk) + perTick));
+        totalNanosPerTick += perTick;
+    }
+
+    public int getNanosPerTick(long chunk) {
+        return nanosPerTick.get(chunk);
+    }
+
+    public long getTotalNanosPerTick() {
+        return totalNanosPerTick;
+    }
+
+    public int getChunkCount() {
+        return nanosPerTick.size();
+    }
+
+    /*
+     * The world time the sample ended at, or -1 if there was none.
+     */
+    public long getSampledAt() {
+        return sampledAt;
+    }
+
+    /*
+     * The max region files whose chunks took the most time together, costliest first.
+     */
+    public List<Region> getCostliestRegions(int max) {
+        LongIntHashMap regionIndex = new LongIntHashMap(-1);
+        List<long[]> regions = new ArrayList<>();
+        nanosPerTick.forEach((chunk, nanos) -> {
+            long region = ChunkKeys.region(chunk);
+            int index = regionIndex.get(region);
+            if (index < 0) {
+                index = regions.size();
+                regionIndex.put(region, index);
+                // region, nanoseconds per tick, chunks
+                regions.add(new long[]{region, 0, 0});
+            }
+            regions.get(index)[1] += nanos;
+            regions.get(index)[2]++;
+        });
+        regions.sort(Comparator.comparingLong((long[] r) -> r[1]).reversed());
+
+        List<Region> costliest = new ArrayList<>();
+        for (long[] region : regions.subList(0, Math.min(max, regions.size()))) {
+            costliest.add(new Region(region[0], region[1], (int) region[2]));
+        }
+        return costliest;
+    }
+}
@@ -4,6 +4,7 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 
 public class ClientProxy implements IProxy {
     @Override
@@ -20,4 +21,9 @@ public class ClientProxy implements IProxy {
     public void serverStarting(FMLServerStartingEvent event) {
 
     }
+
+    @Override
+    public void serverStopping(FMLServerStoppingEvent event) {
+
+    }
 }
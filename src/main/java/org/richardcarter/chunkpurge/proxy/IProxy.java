@@ -4,9 +4,11 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 
 public interface IProxy {
     void preInit(FMLPreInitializationEvent event);
     void postInit(FMLPostInitializationEvent event);
     void serverStarting(FMLServerStartingEvent event);
+    void serverStopping(FMLServerStoppingEvent event);
 }
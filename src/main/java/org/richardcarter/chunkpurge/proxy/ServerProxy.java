@@ -9,11 +9,23 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
+import org.richardcarter.chunkpurge.ChunkEventHandler;
 import org.richardcarter.chunkpurge.ChunkPurgeMod;
+import org.richardcarter.chunkpurge.HeapPressureMonitor;
+import org.richardcarter.chunkpurge.PurgeCoordinator;
+import org.richardcarter.chunkpurge.TickCostSampler;
 import org.richardcarter.chunkpurge.WorldTickHandler;
 import org.richardcarter.chunkpurge.commands.ChunkPurgeCommand;
+import org.richardcarter.chunkpurge.jmx.ChunkPurgeDimension;
+import org.richardcarter.chunkpurge.metrics.PurgeMetrics;
+import org.richardcarter.chunkpurge.trace.TraceRecorder;
 
 public class ServerProxy implements IProxy {
+    private final TraceRecorder traceRecorder = new TraceRecorder();
+    private final HeapPressureMonitor heapPressureMonitor = new HeapPressureMonitor();
+    private final TickCostSampler tickCostSampler = new TickCostSampler();
+
     @Override
     public void preInit(FMLPreInitializationEvent event) {
         ChunkPurgeMod.log = event.getModLog();
@@ -23,10 +35,25 @@ public class ServerProxy implements IProxy {
     @Override
     public void postInit(FMLPostInitializationEvent event) {
         MinecraftForge.EVENT_BUS.register(new WorldTickHandler());
+        MinecraftForge.EVENT_BUS.register(new ChunkEventHandler());
+        MinecraftForge.EVENT_BUS.register(new PurgeCoordinator());
+        MinecraftForge.EVENT_BUS.register(traceRecorder);
+        MinecraftForge.EVENT_BUS.register(heapPressureMonitor);
+        MinecraftForge.EVENT_BUS.register(tickCostSampler);
     }
 
     @Override
     public void serverStarting(FMLServerStartingEvent event) {
         event.registerServerCommand(new ChunkPurgeCommand());
+        heapPressureMonitor.start();
+    }
+
+    @Override
+    public void serverStopping(FMLServerStoppingEvent event) {
+        traceRecorder.stop();
+        heapPressureMonitor.stop();
+        tickCostSampler.stop();
+        ChunkPurgeDimension.unregisterAll();
+        PurgeMetrics.clear();
     }
 }
@@ -0,0 +1,66 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.function.LongPredicate;
+
+/*
+ * What a player leaves behind in a dimension they left: the loaded chunks connected to the chunk they were in, if
+ * none of those holds an anchor. A chunk is only reachable through loaded chunks from an anchor's own chunk, so such
+ * an area is orphaned as a whole, whatever the radius limits.
+ *
+ * Only that one area is flooded, and the fill gives up as soon as it meets an anchor or grows past a limit, leaving
+ * the area to the next full purge. That keeps the cost down to the area the player kept loaded rather than the
+ * dimension.
+ */
+public final class AbandonedArea {
+    private static final long[] NONE = new long[0];
+
+    private AbandonedArea() {
+    }
+
+    /*
+     * The loaded chunks connected to start, or none if one of them is anchored, start isn't loaded or there are more
+     * than maxChunks of them.
+     */
+    public static long[] find(long start, LongPredicate loaded, LongPredicate anchored, int maxChunks) {
+        if (!loaded.test(start) || anchored.test(start)) {
+            return NONE;
+        }
+        LongHashSet area = new LongHashSet();
+        LongQueue queue = new LongQueue();
+        area.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            long chunk = queue.remove();
+            int x = ChunkKeys.x(chunk);
+            int z = ChunkKeys.z(chunk);
+            if (!visit(ChunkKeys.of(x + 1, z), loaded, anchored, area, queue)
+                    || !visit(ChunkKeys.of(x - 1, z), loaded, anchored, area, queue)
+                    || !visit(ChunkKeys.of(x, z + 1), loaded, anchored, area, queue)
+                    || !visit(ChunkKeys.of(x, z - 1), loaded, anchored, area, queue)
+                    || area.size() > maxChunks) {
+                return NONE;
+            }
+        }
+        return area.toArray();
+    }
+
+    /*
+     * Returns false if the chunk is a loaded anchor, which ends the fill.
+     */
+    private static boolean visit(long chunk, LongPredicate loaded, LongPredicate anchored, LongHashSet area,
+                                 LongQueue queue) {
+        if (!loaded.test(chunk) || area.contains(chunk)) {
+            return true;
+        }
+        if (anchored.test(chunk)) {
+            return false;
+        }
+        area.add(chunk);
+        queue.add(chunk);
+        return true;
+    }
+}
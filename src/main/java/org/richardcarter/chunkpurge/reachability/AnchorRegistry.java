@@ -0,0 +1,116 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/*
+ * The anchors of a dimension that come and go with events, kept current as the events arrive so a purge doesn't have
+ * to walk the player list or the forced chunks to find them: the chunk each real player is in, and the chunks held
+ * by chunk loader tickets.
+ *
+ * Every change bumps a generation counter, so anything that remembers the generation it collected anchors at can tell
+ * whether they may have changed since by comparing it with getGeneration().
+ *
+ * Forge fires ForceChunkEvent before the chunk is added to the world's persistent chunks, so tickets aren't tracked
+ * event by event: an event only marks them stale, and they are read again the next time they are asked for.
+ */
+public class AnchorRegistry {
+    // player entity id to the chunk the player is in
+    private final Map<Integer, Long> players = new HashMap<>();
+    // the chunks players were in when they left, for a purge of what they leave behind
+    private final LongQueue departures = new LongQueue();
+    // the chunks players entered since the last takeVisited, for the idle filter (see IdleTracker)
+    private final LongHashSet visited = new LongHashSet();
+    private long[] tickets = new long[0];
+    private boolean ticketsStale = true;
+    private int generation;
+
+    /*
+     * The player entered the chunk, or was first seen in it.
+     */
+    public void playerEntered(int player, long chunk) {
+        Long previous = players.put(player, chunk);
+        if (previous == null || previous != chunk) {
+            visited.add(chunk);
+            generation++;
+        }
+    }
+
+    public void playerLeft(int player) {
+        Long chunk = players.remove(player);
+        if (chunk != null) {
+            departures.add(chunk);
+            generation++;
+        }
+    }
+
+    public boolean hasDepartures() {
+        return !departures.isEmpty();
+    }
+
+    /*
+     * The chunk a player left from, oldest first.
+     */
+    public long nextDeparture() {
+        return departures.remove();
+    }
+
+    public void clearDepartures() {
+        departures.clear();
+    }
+
+    /*
+     * The chunks players entered since the last call, which are forgotten.
+     */
+    public long[] takeVisited() {
+        long[] chunks = visited.toArray();
+        visited.clear();
+        return chunks;
+    }
+
+    public void clearVisited() {
+        visited.clear();
+    }
+
+    public void forEachPlayer(LongConsumer action) {
+        for (long chunk : players.values()) {
+            action.accept(chunk);
+        }
+    }
+
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    public void ticketsChanged() {
+        ticketsStale = true;
+        generation++;
+    }
+
+    /*
+     * The chunks held by tickets, read from source if they changed since the last call.
+     */
+    public long[] getTickets(Supplier<long[]> source) {
+        if (ticketsStale) {
+            tickets = source.get();
+            ticketsStale = false;
+        }
+        return tickets;
+    }
+
+    /*
+     * Something else the anchors depend on changed, such as the pinned chunks or the radii.
+     */
+    public void changed() {
+        generation++;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,18 @@
+package org.richardcarter.chunkpurge.reachability;
+
+/*
+ * The kinds of chunk watchers that keep loaded chunks around them from being purged.
+ */
+public enum AnchorType {
+    PLAYER("p"),
+    TICKET("t"),
+    SPAWN("s"),
+    // chunks that kept reloading right after purges unloaded them, see ThrashDetector
+    PINNED("r");
+
+    public final String shortName;
+
+    AnchorType(String shortName) {
+        this.shortName = shortName;
+    }
+}
@@ -0,0 +1,316 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/*
+ * The seeds of a reachability scan: a chunk key, a radius limit and a type per anchor, stored in parallel arrays.
+ *
+ * A radius limit of 0 or less means the anchor keeps its whole connected group of loaded chunks. Otherwise the
+ * anchor covers the square of chunks within radius of it on both axes, the same limit groupedChunksFinder uses.
+ *
+ * Anchors can be removed again, which leaves a free slot that the next add reuses. Indices of the remaining
+ * anchors never change, so they are safe to keep around (see ReachabilityIndex).
+ */
+public class Anchors {
+    private long[] keys;
+    private int[] radii;
+    private AnchorType[] types;
+    private int size;
+    private int removedCount;
+
+    // spatial index for findCovering, built on first use. Anchors are bucketed into square cells as wide as the
+    // largest radius, so any anchor that covers a chunk sits in the chunk's cell or one of its 8 neighbours.
+    private LongIntHashMap cellHeads;
+    private int[] cellNext;
+    private int cellSize;
+    private boolean hasUnlimited;
+    // a second index for distancesTo, of every anchor whatever its radius, in cells sized so that the anchors span
+    // about as many cells as there are anchors, and the range of cells they span
+    private LongIntHashMap pointHeads;
+    private int[] pointNext;
+    private int pointCellSize;
+    private int minCellX;
+    private int maxCellX;
+    private int minCellZ;
+    private int maxCellZ;
+
+    public Anchors() {
+        this(16);
+    }
+
+    public Anchors(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        keys = new long[capacity];
+        radii = new int[capacity];
+        types = new AnchorType[capacity];
+    }
+
+    /*
+     * Returns the index of the new anchor.
+     */
+    public int add(long key, int radius, AnchorType type) {
+        cellHeads = null;
+        if (removedCount > 0) {
+            for (int i = 0; i < size; i++) {
+                if (types[i] == null) {
+                    keys[i] = key;
+                    radii[i] = radius;
+                    types[i] = type;
+                    removedCount--;
+                    return i;
+                }
+            }
+        }
+        if (size == keys.length) {
+            int capacity = size << 1;
+            keys = Arrays.copyOf(keys, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        keys[size] = key;
+        radii[size] = radius;
+        types[size] = type;
+        return size++;
+    }
+
+    public void remove(int anchor) {
+        if (types[anchor] != null) {
+            types[anchor] = null;
+            removedCount++;
+            cellHeads = null;
+        }
+    }
+
+    public boolean isRemoved(int anchor) {
+        return types[anchor] == null;
+    }
+
+    /*
+     * The number of anchor slots, including removed ones. Use isRemoved to skip those when iterating.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == removedCount;
+    }
+
+    public long getKey(int anchor) {
+        return keys[anchor];
+    }
+
+    public int getRadius(int anchor) {
+        return radii[anchor];
+    }
+
+    public AnchorType getType(int anchor) {
+        return types[anchor];
+    }
+
+    /*
+     * Whether the chunk lies within the radius limit of the given anchor.
+     */
+    public boolean inRange(int anchor, long chunk) {
+        int radius = radii[anchor];
+        return radius <= 0
+                || (Math.abs(ChunkKeys.x(chunk) - ChunkKeys.x(keys[anchor])) <= radius
+                    && Math.abs(ChunkKeys.z(chunk) - ChunkKeys.z(keys[anchor])) <= radius);
+    }
+
+    /*
+     * Returns the index of some anchor with a radius limit that includes the chunk, or -1 if there is none. Anchors
+     * without a limit are left out: they cover only the loaded chunks connected to them, which it takes a fill to
+     * find, not every chunk.
+     */
+    public int findCovering(long chunk) {
+        if (cellHeads == null) {
+            buildIndex();
+        }
+
+        int cellX = Math.floorDiv(ChunkKeys.x(chunk), cellSize);
+        int cellZ = Math.floorDiv(ChunkKeys.z(chunk), cellSize);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int anchor = cellHeads.get(ChunkKeys.of(cellX + dx, cellZ + dz)); anchor >= 0; anchor = cellNext[anchor]) {
+                    if (inRange(anchor, chunk)) {
+                        return anchor;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Whether any anchor has no radius limit.
+     */
+    public boolean hasUnlimited() {
+        if (cellHeads == null) {
+            buildIndex();
+        }
+        return hasUnlimited;
+    }
+
+    /*
+     * For each chunk, the distance (in chunks, on the further axis) to the nearest anchor, or Integer.MAX_VALUE if
+     * there are no anchors.
+     */
+    public int[] distancesTo(long[] chunks) {
+        int[] distances = new int[chunks.length];
+        if (isEmpty()) {
+            Arrays.fill(distances, Integer.MAX_VALUE);
+            return distances;
+        }
+        if (cellHeads == null) {
+            buildIndex();
+        }
+        for (int i = 0; i < chunks.length; i++) {
+            distances[i] = distanceTo(chunks[i]);
+        }
+        return distances;
+    }
+
+    /*
+     * Looks through the cells in rings around the chunk's own, starting with the first ring that has cells with
+     * anchors in them, until no anchor in a further ring could be nearer than the nearest one found.
+     */
+    private int distanceTo(long chunk) {
+        int x = ChunkKeys.x(chunk);
+        int z = ChunkKeys.z(chunk);
+        int cellX = Math.floorDiv(x, pointCellSize);
+        int cellZ = Math.floorDiv(z, pointCellSize);
+        int firstRing = Math.max(Math.max(minCellX - cellX, cellX - maxCellX),
+                Math.max(Math.max(minCellZ - cellZ, cellZ - maxCellZ), 0));
+        int lastRing = Math.max(Math.max(cellX - minCellX, maxCellX - cellX),
+                Math.max(cellZ - minCellZ, maxCellZ - cellZ));
+
+        int nearest = Integer.MAX_VALUE;
+        for (int ring = firstRing; ring <= lastRing; ring++) {
+            // every anchor in this ring is further than this
+            if ((long) (ring - 1) * pointCellSize >= nearest) {
+                break;
+            }
+            int fromX = Math.max(cellX - ring, minCellX);
+            int toX = Math.min(cellX + ring, maxCellX);
+            int fromZ = Math.max(cellZ - ring, minCellZ);
+            int toZ = Math.min(cellZ + ring, maxCellZ);
+            for (int z2 = fromZ; z2 <= toZ; z2++) {
+                if (z2 == cellZ - ring || z2 == cellZ + ring) {
+                    for (int x2 = fromX; x2 <= toX; x2++) {
+                        nearest = nearestInCell(x2, z2, x, z, nearest);
+                    }
+                } else {
+                    if (cellX - ring >= minCellX) {
+                        nearest = nearestInCell(cellX - ring, z2, x, z, nearest);
+                    }
+                    if (cellX + ring <= maxCellX) {
+                        nearest = nearestInCell(cellX + ring, z2, x, z, nearest);
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int nearestInCell(int cellX, int cellZ, int x, int z, int nearest) {
+        for (int anchor = pointHeads.get(ChunkKeys.of(cellX, cellZ)); anchor >= 0; anchor = pointNext[anchor]) {
+            int distance = Math.max(Math.abs(x - ChunkKeys.x(keys[anchor])), Math.abs(z - ChunkKeys.z(keys[anchor])));
+            if (distance < nearest) {
+                nearest = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /*
+     * Returns the anchors in this set that could reach chunks the previous set couldn't: those previous has no anchor
+     * of the same type in the same chunk for, or only one with a smaller radius limit.
+     */
+    public Anchors addedSince(Anchors previous) {
+        LongIntHashMap[] previousByType = new LongIntHashMap[AnchorType.values().length];
+        for (int i = 0; i < previousByType.length; i++) {
+            previousByType[i] = new LongIntHashMap(Integer.MIN_VALUE);
+        }
+        for (int i = 0; i < previous.size; i++) {
+            if (previous.types[i] == null) {
+                continue;
+            }
+            LongIntHashMap radii = previousByType[previous.types[i].ordinal()];
+            int existing = radii.get(previous.keys[i]);
+            if (existing == Integer.MIN_VALUE || (existing > 0 && (previous.radii[i] <= 0 || previous.radii[i] > existing))) {
+                radii.put(previous.keys[i], previous.radii[i]);
+            }
+        }
+
+        Anchors added = new Anchors();
+        for (int i = 0; i < size; i++) {
+            if (types[i] == null) {
+                continue;
+            }
+            int before = previousByType[types[i].ordinal()].get(keys[i]);
+            boolean covered = before != Integer.MIN_VALUE && (before <= 0 || (radii[i] > 0 && radii[i] <= before));
+            if (!covered) {
+                added.add(keys[i], radii[i], types[i]);
+            }
+        }
+        return added;
+    }
+
+    private void buildIndex() {
+        int maxRadius = 1;
+        hasUnlimited = false;
+        int count = 0;
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == null) {
+                continue;
+            }
+            if (radii[i] <= 0) {
+                hasUnlimited = true;
+            }
+            maxRadius = Math.max(maxRadius, radii[i]);
+            count++;
+            minX = Math.min(minX, ChunkKeys.x(keys[i]));
+            maxX = Math.max(maxX, ChunkKeys.x(keys[i]));
+            minZ = Math.min(minZ, ChunkKeys.z(keys[i]));
+            maxZ = Math.max(maxZ, ChunkKeys.z(keys[i]));
+        }
+
+        cellSize = maxRadius;
+        cellHeads = new LongIntHashMap(size, -1);
+        cellNext = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (types[i] == null || radii[i] <= 0) {
+                continue;
+            }
+            long cell = ChunkKeys.of(Math.floorDiv(ChunkKeys.x(keys[i]), cellSize), Math.floorDiv(ChunkKeys.z(keys[i]), cellSize));
+            cellNext[i] = cellHeads.put(cell, i);
+        }
+
+        pointHeads = new LongIntHashMap(size, -1);
+        pointNext = new int[size];
+        if (count == 0) {
+            return;
+        }
+        long span = Math.max((long) maxX - minX, (long) maxZ - minZ) + 1;
+        pointCellSize = (int) Math.max(1, span / Math.max(1, (int) Math.sqrt(count)));
+        minCellX = Math.floorDiv(minX, pointCellSize);
+        maxCellX = Math.floorDiv(maxX, pointCellSize);
+        minCellZ = Math.floorDiv(minZ, pointCellSize);
+        maxCellZ = Math.floorDiv(maxZ, pointCellSize);
+        for (int i = 0; i < size; i++) {
+            if (types[i] != null) {
+                long cell = ChunkKeys.of(Math.floorDiv(ChunkKeys.x(keys[i]), pointCellSize),
+                        Math.floorDiv(ChunkKeys.z(keys[i]), pointCellSize));
+                pointNext[i] = pointHeads.put(cell, i);
+            }
+        }
+    }
+}
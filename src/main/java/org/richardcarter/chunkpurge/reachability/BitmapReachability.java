@@ -0,0 +1,332 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/*
+ * Reachability worked out on bitmaps rather than one chunk at a time: the loaded chunks are kept as one tile of
+ * long[16] per 32x32 region, row z of a tile in bits 32 * (z & 1) to 32 * (z & 1) + 31 of word z / 2, and the fill
+ * dilates whole words at once, masked by the chunks it may enter. That handles 64 chunks per operation where
+ * MultiSourceFloodFill makes a hash lookup per neighbour.
+ *
+ * The chunks a fill may enter are those that are loaded and within the radius limit of at least one anchor, built
+ * up from a mask per anchor and tile row, plus the loaded chunks connected to an anchor without a limit, found by a
+ * first fill through everything loaded from those anchors alone. A chunk is reached when it is connected to an anchor through those chunks,
+ * which is the same rule MultiSourceFloodFill follows, so both find the same chunks. Counts by type differ slightly:
+ * here each connected area counts towards the first anchor type (in AnchorType order) that has an anchor in it,
+ * rather than chunk by chunk towards whichever anchor got there first.
+ */
+public class BitmapReachability implements ReachedChunks {
+    private static final int WORDS = 16;
+    // x = 0 and x = 31 of both rows in a word, and everything else
+    private static final long NOT_FIRST_COLUMN = 0xFFFFFFFE_FFFFFFFEL;
+    private static final long NOT_LAST_COLUMN = 0x7FFFFFFF_7FFFFFFFL;
+    private static final long FIRST_COLUMN = ~NOT_FIRST_COLUMN;
+    private static final long LAST_COLUMN = ~NOT_LAST_COLUMN;
+
+    // region key to tile, and each tile's region key
+    private final LongIntHashMap tileOf;
+    private final long[] regions;
+    private final int tiles;
+    // WORDS words per tile
+    private final long[] loaded;
+    private final long[] allowed;
+    private final long[] reached;
+    // what the fill running now may enter: allowed, or loaded while finding what unlimited anchors allow
+    private long[] gate;
+
+    private final int[] countsByType = new int[AnchorType.values().length];
+    private int reachedCount;
+    private final int loadedCount;
+
+    // tiles with bits set in reached that haven't been spread from yet
+    private final int[] pending;
+    private final boolean[] isPending;
+    private int pendingCount;
+
+    private BitmapReachability(long[] loadedChunks) {
+        tileOf = new LongIntHashMap(Math.max(16, loadedChunks.length / 64), -1);
+        long[] regions = new long[16];
+        long[] loaded = new long[16 * WORDS];
+        int tiles = 0;
+        int count = 0;
+        // loaded chunks mostly come in runs within a region, so remember the last one
+        long lastRegion = 0;
+        int lastTile = -1;
+        for (long chunk : loadedChunks) {
+            long region = ChunkKeys.region(chunk);
+            int tile = region == lastRegion ? lastTile : tileOf.get(region);
+            if (tile < 0) {
+                if (tiles == regions.length) {
+                    regions = Arrays.copyOf(regions, tiles * 2);
+                    loaded = Arrays.copyOf(loaded, tiles * 2 * WORDS);
+                }
+                tile = tiles++;
+                tileOf.put(region, tile);
+                regions[tile] = region;
+            }
+            lastRegion = region;
+            lastTile = tile;
+
+            int word = word(tile, chunk);
+            long bit = bit(chunk);
+            if ((loaded[word] & bit) == 0) {
+                loaded[word] |= bit;
+                count++;
+            }
+        }
+        this.regions = regions;
+        this.tiles = tiles;
+        this.loaded = loaded;
+        loadedCount = count;
+        allowed = new long[loaded.length];
+        reached = new long[loaded.length];
+        gate = allowed;
+
+        pending = new int[tiles];
+        isPending = new boolean[tiles];
+    }
+
+    /*
+     * Safe to call from any thread, as long as neither the array nor the anchors change while it runs.
+     */
+    public static BitmapReachability find(long[] loadedChunks, Anchors anchors) {
+        BitmapReachability result = new BitmapReachability(loadedChunks);
+        result.mask(anchors);
+        if (anchors.hasUnlimited()) {
+            result.allowUnlimited(anchors);
+        }
+        for (AnchorType type : AnchorType.values()) {
+            result.fill(anchors, type);
+        }
+        return result;
+    }
+
+    private static int word(int tile, long chunk) {
+        return tile * WORDS + ((ChunkKeys.z(chunk) & 31) >> 1);
+    }
+
+    private static long bit(long chunk) {
+        return 1L << ((ChunkKeys.x(chunk) & 31) + ((ChunkKeys.z(chunk) & 1) << 5));
+    }
+
+    /*
+     * Fill in allowed: the loaded chunks within the radius limit of any anchor that has one.
+     */
+    private void mask(Anchors anchors) {
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (anchors.isRemoved(anchor)) {
+                continue;
+            }
+            int radius = anchors.getRadius(anchor);
+            if (radius <= 0) {
+                // no limit, see allowUnlimited
+                continue;
+            }
+            long key = anchors.getKey(anchor);
+            int minX = ChunkKeys.x(key) - radius;
+            int maxX = ChunkKeys.x(key) + radius;
+            int minZ = ChunkKeys.z(key) - radius;
+            int maxZ = ChunkKeys.z(key) + radius;
+            long squareRegions = (long) ((maxX >> 5) - (minX >> 5) + 1) * ((maxZ >> 5) - (minZ >> 5) + 1);
+            if (squareRegions > tiles) {
+                // a huge radius: cheaper to go through the tiles there are than the regions it covers
+                for (int tile = 0; tile < tiles; tile++) {
+                    int regionX = ChunkKeys.x(regions[tile]);
+                    int regionZ = ChunkKeys.z(regions[tile]);
+                    if (regionX >= minX >> 5 && regionX <= maxX >> 5 && regionZ >= minZ >> 5 && regionZ <= maxZ >> 5) {
+                        maskTile(tile, regionX << 5, regionZ << 5, minX, maxX, minZ, maxZ);
+                    }
+                }
+                continue;
+            }
+            for (int regionZ = minZ >> 5; regionZ <= maxZ >> 5; regionZ++) {
+                for (int regionX = minX >> 5; regionX <= maxX >> 5; regionX++) {
+                    int tile = tileOf.get(ChunkKeys.of(regionX, regionZ));
+                    if (tile >= 0) {
+                        maskTile(tile, regionX << 5, regionZ << 5, minX, maxX, minZ, maxZ);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < allowed.length; i++) {
+            allowed[i] &= loaded[i];
+        }
+    }
+
+    private void maskTile(int tile, int tileX, int tileZ, int minX, int maxX, int minZ, int maxZ) {
+        int fromX = Math.max(minX, tileX) - tileX;
+        int toX = Math.min(maxX, tileX + 31) - tileX;
+        long row = (toX - fromX == 31 ? 0xFFFFFFFFL : (1L << (toX - fromX + 1)) - 1) << fromX;
+        int fromZ = Math.max(minZ, tileZ) - tileZ;
+        int toZ = Math.min(maxZ, tileZ + 31) - tileZ;
+        for (int z = fromZ; z <= toZ; z++) {
+            allowed[tile * WORDS + (z >> 1)] |= row << ((z & 1) << 5);
+        }
+    }
+
+    /*
+     * Add to allowed every loaded chunk connected to an anchor without a radius limit, by filling through all loaded
+     * chunks from those anchors, then start reached over for the fills by type.
+     */
+    private void allowUnlimited(Anchors anchors) {
+        gate = loaded;
+        spreadFrom(anchors, anchor -> anchors.getRadius(anchor) <= 0);
+        for (int i = 0; i < allowed.length; i++) {
+            allowed[i] |= reached[i];
+        }
+        Arrays.fill(reached, 0);
+        reachedCount = 0;
+        gate = allowed;
+    }
+
+    /*
+     * Reach everything connected to an anchor of the given type that isn't reached yet, and count it for the type.
+     */
+    private void fill(Anchors anchors, AnchorType type) {
+        int before = reachedCount;
+        spreadFrom(anchors, anchor -> anchors.getType(anchor) == type);
+        countsByType[type.ordinal()] = reachedCount - before;
+    }
+
+    /*
+     * Reach everything within the gate connected to one of the anchors that isn't reached yet.
+     */
+    private void spreadFrom(Anchors anchors, IntPredicate which) {
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (anchors.isRemoved(anchor) || !which.test(anchor)) {
+                continue;
+            }
+            long key = anchors.getKey(anchor);
+            int tile = tileOf.get(ChunkKeys.region(key));
+            if (tile < 0) {
+                continue;
+            }
+            int word = word(tile, key);
+            long bit = bit(key);
+            if ((gate[word] & bit) != 0 && (reached[word] & bit) == 0) {
+                reached[word] |= bit;
+                reachedCount++;
+                addPending(tile);
+            }
+        }
+
+        while (pendingCount > 0) {
+            int tile = pending[--pendingCount];
+            isPending[tile] = false;
+            spread(tile);
+        }
+    }
+
+    private void addPending(int tile) {
+        if (!isPending[tile]) {
+            isPending[tile] = true;
+            pending[pendingCount++] = tile;
+        }
+    }
+
+    /*
+     * Dilate reached within the tile until nothing changes, then carry it over the edges into the neighbouring tiles.
+     */
+    private void spread(int tile) {
+        int base = tile * WORDS;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // a pass down the tile and one back up, so both directions spread in one round
+            for (int w = 0; w < WORDS; w++) {
+                changed |= dilate(base, w);
+            }
+            for (int w = WORDS - 1; w >= 0; w--) {
+                changed |= dilate(base, w);
+            }
+        }
+
+        long region = regions[tile];
+        int regionX = ChunkKeys.x(region);
+        int regionZ = ChunkKeys.z(region);
+        int west = tileOf.get(ChunkKeys.of(regionX - 1, regionZ));
+        if (west >= 0) {
+            for (int w = 0; w < WORDS; w++) {
+                carry(west, w, (reached[base + w] & FIRST_COLUMN) << 31);
+            }
+        }
+        int east = tileOf.get(ChunkKeys.of(regionX + 1, regionZ));
+        if (east >= 0) {
+            for (int w = 0; w < WORDS; w++) {
+                carry(east, w, (reached[base + w] & LAST_COLUMN) >>> 31);
+            }
+        }
+        int north = tileOf.get(ChunkKeys.of(regionX, regionZ - 1));
+        if (north >= 0) {
+            carry(north, WORDS - 1, reached[base] << 32);
+        }
+        int south = tileOf.get(ChunkKeys.of(regionX, regionZ + 1));
+        if (south >= 0) {
+            carry(south, 0, reached[base + WORDS - 1] >>> 32);
+        }
+    }
+
+    private boolean dilate(int base, int w) {
+        int i = base + w;
+        long bits = reached[i];
+        long grown = bits
+                | ((bits << 1) & NOT_FIRST_COLUMN)
+                | ((bits >>> 1) & NOT_LAST_COLUMN)
+                | (bits << 32)
+                | (bits >>> 32);
+        if (w > 0) {
+            grown |= reached[i - 1] >>> 32;
+        }
+        if (w < WORDS - 1) {
+            grown |= reached[i + 1] << 32;
+        }
+        grown &= gate[i];
+        if (grown == bits) {
+            return false;
+        }
+        reached[i] = grown;
+        reachedCount += Long.bitCount(grown ^ bits);
+        return true;
+    }
+
+    private void carry(int tile, int w, long bits) {
+        int i = tile * WORDS + w;
+        long added = bits & gate[i] & ~reached[i];
+        if (added != 0) {
+            reached[i] |= added;
+            reachedCount += Long.bitCount(added);
+            addPending(tile);
+        }
+    }
+
+    @Override
+    public boolean isLoaded(long chunk) {
+        int tile = tileOf.get(ChunkKeys.region(chunk));
+        return tile >= 0 && (loaded[word(tile, chunk)] & bit(chunk)) != 0;
+    }
+
+    @Override
+    public boolean isReached(long chunk) {
+        int tile = tileOf.get(ChunkKeys.region(chunk));
+        return tile >= 0 && (reached[word(tile, chunk)] & bit(chunk)) != 0;
+    }
+
+    @Override
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    @Override
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    @Override
+    public int getCount(AnchorType type) {
+        return countsByType[type.ordinal()];
+    }
+}
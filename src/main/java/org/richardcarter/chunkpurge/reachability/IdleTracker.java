@@ -0,0 +1,120 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+/*
+ * How long the orphans of a dimension have gone without an anchor, and which chunks keep coming back soon after a
+ * purge unloaded them, so that purges can leave chunks a player only just walked away from alone and go easy on the
+ * ones that get reloaded anyway. Loading a chunk back from disk costs far more than keeping it a little longer.
+ *
+ * Times are in world ticks; differences are taken with int arithmetic, so they stay right across an overflow.
+ */
+public class IdleTracker {
+    private static final int NEVER = Integer.MIN_VALUE;
+    // a chunk that loads again within this many ticks of a purge handing it over counts as reloaded
+    public static final int RELOAD_WINDOW_TICKS = 6000;
+    // and counts as repeatedly reloaded after this many reloads, until it hasn't been reloaded for RELOAD_MEMORY_TICKS
+    public static final int REPEATED_RELOADS = 2;
+    public static final int RELOAD_MEMORY_TICKS = 72000;
+
+    // every orphan of the last purge, and the tick it was last known to be anchored at
+    private LongIntHashMap lastAnchored = new LongIntHashMap(NEVER);
+
+    private final LongIntHashMap handedOverAt = new LongIntHashMap(NEVER);
+    private final LongIntHashMap reloads = new LongIntHashMap(0);
+    private final LongIntHashMap lastReloaded = new LongIntHashMap(NEVER);
+    private final LongQueue stale = new LongQueue();
+
+    /*
+     * A purge at tick now found these orphans. Chunks it didn't find were anchored or unloaded, so are forgotten;
+     * the rest keep the time they were first found.
+     */
+    public void update(OrphanGroups orphans, int now) {
+        update(orphans, new long[0], 0, now);
+    }
+
+    /*
+     * As update(orphans, now), where players entered the visited chunks since the last update. A player may have
+     * anchored any orphan within radius of one of them in between, so those start over as well.
+     */
+    public void update(OrphanGroups orphans, long[] visited, int radius, int now) {
+        Anchors visits = new Anchors();
+        for (long chunk : visited) {
+            visits.add(chunk, radius, AnchorType.PLAYER);
+        }
+        long[] chunks = orphans.getChunks();
+        LongIntHashMap previous = lastAnchored;
+        lastAnchored = new LongIntHashMap(chunks.length, NEVER);
+        for (long chunk : chunks) {
+            int since = previous.get(chunk);
+            if (since == NEVER || (visited.length > 0 && visits.findCovering(chunk) >= 0)) {
+                since = now;
+            }
+            lastAnchored.put(chunk, since);
+        }
+        forget(now);
+    }
+
+    /*
+     * Whether the chunk has been orphaned for at least minIdleTicks as of the last update.
+     */
+    public boolean isIdle(long chunk, int now, int minIdleTicks) {
+        int since = lastAnchored.get(chunk);
+        return since != NEVER && now - since >= minIdleTicks;
+    }
+
+    public void handedOver(long chunk, int now) {
+        handedOverAt.put(chunk, now);
+    }
+
+    /*
+     * Returns true if the chunk has just been reloaded, having been handed over by a purge shortly before.
+     */
+    public boolean chunkLoaded(long chunk, int now) {
+        int at = handedOverAt.remove(chunk);
+        if (at == NEVER || now - at > RELOAD_WINDOW_TICKS) {
+            return false;
+        }
+        reloads.addTo(chunk, 1);
+        lastReloaded.put(chunk, now);
+        return true;
+    }
+
+    public boolean isRepeatedlyReloaded(long chunk) {
+        return reloads.get(chunk) >= REPEATED_RELOADS;
+    }
+
+    public int getReloads(long chunk) {
+        return reloads.get(chunk);
+    }
+
+    private void forget(int now) {
+        handedOverAt.forEach((chunk, at) -> {
+            if (now - at > RELOAD_WINDOW_TICKS) {
+                stale.add(chunk);
+            }
+        });
+        while (!stale.isEmpty()) {
+            handedOverAt.remove(stale.remove());
+        }
+
+        lastReloaded.forEach((chunk, at) -> {
+            if (now - at > RELOAD_MEMORY_TICKS) {
+                stale.add(chunk);
+            }
+        });
+        while (!stale.isEmpty()) {
+            long chunk = stale.remove();
+            lastReloaded.remove(chunk);
+            reloads.remove(chunk);
+        }
+    }
+
+    public void clear() {
+        lastAnchored = new LongIntHashMap(NEVER);
+        handedOverAt.clear();
+        reloads.clear();
+        lastReloaded.clear();
+    }
+}
@@ -0,0 +1,195 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.function.LongConsumer;
+
+/*
+ * A breadth first flood fill seeded from every anchor at once, so each loaded chunk is visited at most once per scan
+ * no matter how many anchors overlap it.
+ *
+ * A chunk is reached when it is loaded, lies within the radius limit of at least one anchor, and is connected to an
+ * anchor through chunks that are themselves reached. For a single anchor that is exactly what groupedChunksFinder
+ * returns. With several anchors it can be slightly more: a path may pass from one anchor's square into an overlapping
+ * square of another, which the old one-fill-per-anchor approach would have cut off. That only ever keeps more chunks
+ * loaded, never fewer.
+ *
+ * An anchor with no radius limit reaches every loaded chunk connected to it, and nothing beyond. Its fill carries on
+ * through chunks that other anchors got to first, taking them over, since a limited anchor's fill stops at the edge of
+ * its square and the chunks beyond may still be connected to the unlimited one.
+ *
+ * Because the fill advances in layers from all anchors together, each chunk is attributed to whichever anchor's
+ * fill got to it first, which is normally the nearest one, unless an unlimited anchor's fill takes it over later.
+ *
+ * Since the reached set doesn't depend on the order chunks are visited in, the fill can also be continued from an
+ * existing result: seed it with new anchors or newly loaded chunks and run it again. For the same reason it can be
+ * stopped part way and resumed later.
+ */
+public class MultiSourceFloodFill {
+    private final LongHashSet loadedChunks;
+    private final Anchors anchors;
+    private final LongIntHashMap owners;
+    private final int[] countsByType;
+    private final LongConsumer onReached;
+    private final LongQueue queue = new LongQueue();
+
+    /*
+     * owners and countsByType hold the result and are updated in place. onReached, if not null, is told about
+     * every chunk as it gets reached.
+     */
+    public MultiSourceFloodFill(LongHashSet loadedChunks, Anchors anchors, LongIntHashMap owners, int[] countsByType,
+                                LongConsumer onReached) {
+        this.loadedChunks = loadedChunks;
+        this.anchors = anchors;
+        this.owners = owners;
+        this.countsByType = countsByType;
+        this.onReached = onReached;
+    }
+
+    public static Reachability find(LongHashSet loadedChunks, Anchors anchors) {
+        LongIntHashMap owners = new LongIntHashMap(Math.min(loadedChunks.size(), anchors.size() * 64), -1);
+        int[] countsByType = new int[AnchorType.values().length];
+        MultiSourceFloodFill fill = new MultiSourceFloodFill(loadedChunks, anchors, owners, countsByType, null);
+        fill.seedAllAnchors();
+        fill.run();
+        return new Reachability(owners, anchors, countsByType);
+    }
+
+    public void seedAllAnchors() {
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (!anchors.isRemoved(anchor)) {
+                seedAnchor(anchor);
+            }
+        }
+    }
+
+    public void seedAnchor(int anchor) {
+        long key = anchors.getKey(anchor);
+        if (!loadedChunks.contains(key)) {
+            return;
+        }
+        int current = owners.get(key);
+        if (current < 0) {
+            reach(key, anchor);
+        } else if (isUnlimited(anchor) && !isUnlimited(current)) {
+            takeOver(key, current, anchor);
+        }
+    }
+
+    /*
+     * Try to attach a chunk that isn't reached yet to a reached neighbour, continuing the fill from there on the
+     * next run.
+     */
+    public void seedFrom(long chunk) {
+        if (owners.containsKey(chunk) || !loadedChunks.contains(chunk)) {
+            return;
+        }
+        int x = ChunkKeys.x(chunk);
+        int z = ChunkKeys.z(chunk);
+        // an unlimited neighbour's fill goes on from here whatever the radius limits, so it comes first
+        int owner = -1;
+        owner = betterOwner(owner, owners.get(ChunkKeys.of(x + 1, z)));
+        owner = betterOwner(owner, owners.get(ChunkKeys.of(x - 1, z)));
+        owner = betterOwner(owner, owners.get(ChunkKeys.of(x, z + 1)));
+        owner = betterOwner(owner, owners.get(ChunkKeys.of(x, z - 1)));
+        if (owner >= 0) {
+            visit(chunk, owner);
+        }
+    }
+
+    private int betterOwner(int owner, int candidate) {
+        if (owner < 0 || (candidate >= 0 && isUnlimited(candidate) && !isUnlimited(owner))) {
+            return candidate;
+        }
+        return owner;
+    }
+
+    private boolean isUnlimited(int anchor) {
+        return anchors.getRadius(anchor) <= 0;
+    }
+
+    /*
+     * Drop any work still queued, for when the result it was building is being thrown away.
+     */
+    public void cancel() {
+        queue.clear();
+    }
+
+    public void run() {
+        while (!queue.isEmpty()) {
+            step();
+        }
+    }
+
+    /*
+     * Run until the fill is complete or System.nanoTime() passes the deadline, whichever is first. Returns true if
+     * the fill is complete; otherwise calling run again carries on from where it stopped.
+     */
+    public boolean run(long deadlineNanos) {
+        int steps = 0;
+        while (!queue.isEmpty()) {
+            step();
+            // checking the clock costs more than a step, so only do it every so often
+            if ((++steps & 255) == 0 && System.nanoTime() - deadlineNanos >= 0) {
+                return queue.isEmpty();
+            }
+        }
+        return true;
+    }
+
+    private void step() {
+        long chunk = queue.remove();
+        int owner = owners.get(chunk);
+        if (owner < 0) {
+            // cleared by the ReachabilityIndex while it was waiting in the queue
+            return;
+        }
+        int x = ChunkKeys.x(chunk);
+        int z = ChunkKeys.z(chunk);
+
+        visit(ChunkKeys.of(x + 1, z), owner);
+        visit(ChunkKeys.of(x - 1, z), owner);
+        visit(ChunkKeys.of(x, z + 1), owner);
+        visit(ChunkKeys.of(x, z - 1), owner);
+    }
+
+    private void visit(long neighbour, int owner) {
+        if (!loadedChunks.contains(neighbour)) {
+            return;
+        }
+        int current = owners.get(neighbour);
+        if (current >= 0) {
+            if (isUnlimited(owner) && !isUnlimited(current)) {
+                takeOver(neighbour, current, owner);
+            }
+            return;
+        }
+        // the anchor that reached this chunk almost always covers its neighbours too, so try it before the index
+        int newOwner = anchors.inRange(owner, neighbour) ? owner : anchors.findCovering(neighbour);
+        if (newOwner >= 0) {
+            reach(neighbour, newOwner);
+        }
+    }
+
+    /*
+     * Hand a reached chunk over to an unlimited anchor and carry its fill on from there.
+     */
+    private void takeOver(long chunk, int previous, int owner) {
+        owners.put(chunk, owner);
+        countsByType[anchors.getType(previous).ordinal()]--;
+        countsByType[anchors.getType(owner).ordinal()]++;
+        queue.add(chunk);
+    }
+
+    private void reach(long chunk, int owner) {
+        owners.put(chunk, owner);
+        countsByType[anchors.getType(owner).ordinal()]++;
+        queue.add(chunk);
+        if (onReached != null) {
+            onReached.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import lombok.Value;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.function.LongPredicate;
+
+/*
+ * Orphaned chunks split into groups of chunks connected to each other. A group can only become reachable as a
+ * whole: through a chunk loading next to (or inside) it, or an anchor's radius limit coming to cover part of it.
+ * That makes the groups the unit to throw away when a result goes stale, rather than the whole result.
+ */
+@Value
+public class OrphanGroups {
+    public static final OrphanGroups EMPTY = new OrphanGroups(new long[0], new int[0], new LongIntHashMap(-1), 0);
+
+    long[] chunks;
+    // the group of each chunk, parallel to chunks
+    int[] groups;
+    LongIntHashMap groupOf;
+    int groupCount;
+
+    /*
+     * Group the orphans among the given chunks. isOrphan must hold for every chunk the groups may spread to.
+     */
+    public static OrphanGroups find(long[] candidates, int orphanCount, LongPredicate isOrphan) {
+        long[] chunks = new long[orphanCount];
+        int[] groups = new int[orphanCount];
+        LongIntHashMap groupOf = new LongIntHashMap(orphanCount, -1);
+        LongQueue queue = new LongQueue();
+        int groupCount = 0;
+        int count = 0;
+
+        for (long start : candidates) {
+            if (!isOrphan.test(start) || groupOf.containsKey(start)) {
+                continue;
+            }
+            int group = groupCount++;
+            groupOf.put(start, group);
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                long chunk = queue.remove();
+                chunks[count] = chunk;
+                groups[count] = group;
+                count++;
+
+                int x = ChunkKeys.x(chunk);
+                int z = ChunkKeys.z(chunk);
+                label(ChunkKeys.of(x + 1, z), group, isOrphan, groupOf, queue);
+                label(ChunkKeys.of(x - 1, z), group, isOrphan, groupOf, queue);
+                label(ChunkKeys.of(x, z + 1), group, isOrphan, groupOf, queue);
+                label(ChunkKeys.of(x, z - 1), group, isOrphan, groupOf, queue);
+            }
+        }
+        return new OrphanGroups(chunks, groups, groupOf, groupCount);
+    }
+
+    private static void label(long chunk, int group, LongPredicate isOrphan, LongIntHashMap groupOf, LongQueue queue) {
+        if (isOrphan.test(chunk) && !groupOf.containsKey(chunk)) {
+            groupOf.put(chunk, group);
+            queue.add(chunk);
+        }
+    }
+}
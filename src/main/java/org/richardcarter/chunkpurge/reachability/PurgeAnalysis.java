@@ -0,0 +1,50 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import lombok.Value;
+
+/*
+ * The result of analysing a PurgeSnapshot: the orphaned chunks in their groups (see OrphanGroups), and how far each
+ * is from the nearest anchor, ready to go into an UnloadQueue.
+ *
+ * By the time the result gets back to the server thread the world has moved on. The groups let the UnloadQueue
+ * drop just the orphans that may not be orphaned any more, without scanning again.
+ */
+@Value
+public class PurgeAnalysis {
+    PurgeSnapshot snapshot;
+    OrphanGroups orphans;
+    // parallel to orphans.getChunks()
+    int[] distances;
+    int[] countsByType;
+    long analysisNanos;
+
+    public int getCount(AnchorType type) {
+        return countsByType[type.ordinal()];
+    }
+
+    public static PurgeAnalysis analyse(PurgeSnapshot snapshot) {
+        return analyse(snapshot, ReachabilityEngine.FLOOD_FILL);
+    }
+
+    /*
+     * Safe to call from any thread.
+     */
+    public static PurgeAnalysis analyse(PurgeSnapshot snapshot, ReachabilityEngine engine) {
+        long startTime = System.nanoTime();
+
+        long[] loadedChunks = snapshot.getLoadedChunks();
+        ReachedChunks reachability = engine.find(loadedChunks, snapshot.getAnchors());
+
+        OrphanGroups orphans = OrphanGroups.find(loadedChunks,
+                reachability.getLoadedCount() - reachability.getReachedCount(),
+                chunk -> reachability.isLoaded(chunk) && !reachability.isReached(chunk));
+        int[] distances = snapshot.getAnchors().distancesTo(orphans.getChunks());
+
+        int[] countsByType = new int[AnchorType.values().length];
+        for (AnchorType type : AnchorType.values()) {
+            countsByType[type.ordinal()] = reachability.getCount(type);
+        }
+
+        return new PurgeAnalysis(snapshot, orphans, distances, countsByType, System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,14 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import lombok.Value;
+
+/*
+ * Everything the reachability analysis of one dimension needs, copied off the world on the server thread so the
+ * analysis itself can run anywhere. Neither the array nor the anchors may be changed after the snapshot is taken.
+ */
+@Value
+public class PurgeSnapshot {
+    int dimension;
+    long[] loadedChunks;
+    Anchors anchors;
+}
@@ -0,0 +1,52 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+/*
+ * The result of a reachability scan: every loaded chunk that links back to an anchor, mapped to the index (in the
+ * scanned Anchors) of the anchor it was attributed to.
+ */
+public class Reachability {
+    public static final Reachability EMPTY = new Reachability(new LongIntHashMap(-1), new Anchors(), new int[AnchorType.values().length]);
+
+    private final LongIntHashMap owners;
+    private final Anchors anchors;
+    private final int[] countsByType;
+
+    public Reachability(LongIntHashMap owners, Anchors anchors, int[] countsByType) {
+        this.owners = owners;
+        this.anchors = anchors;
+        this.countsByType = countsByType;
+    }
+
+    public boolean isReached(long chunk) {
+        return owners.containsKey(chunk);
+    }
+
+    /*
+     * Returns the anchor index the chunk was attributed to, or -1 if it isn't reached.
+     */
+    public int getOwner(long chunk) {
+        return owners.get(chunk);
+    }
+
+    public Anchors getAnchors() {
+        return anchors;
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    /*
+     * Number of reached chunks attributed to anchors of the given type. Each chunk is counted once, for the
+     * anchor that reached it first.
+     */
+    public int getCount(AnchorType type) {
+        return countsByType[type.ordinal()];
+    }
+
+    public void forEachReached(LongIntHashMap.LongIntConsumer action) {
+        owners.forEach(action);
+    }
+}
@@ -0,0 +1,62 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.function.BiFunction;
+
+/*
+ * The ways a PurgeAnalysis can work out which loaded chunks link back to an anchor. They find the same chunks, so
+ * which one to use is only a matter of speed.
+ */
+public enum ReachabilityEngine {
+    // MultiSourceFloodFill over a LongHashSet of the loaded chunks
+    FLOOD_FILL(ReachabilityEngine::floodFill),
+    // BitmapReachability, on a bitmap tile per region
+    BITMAP(BitmapReachability::find),
+    // UnionFindReachability, labelling connected components of loaded chunks
+    UNION_FIND(UnionFindReachability::find);
+
+    private final BiFunction<long[], Anchors, ReachedChunks> finder;
+
+    ReachabilityEngine(BiFunction<long[], Anchors, ReachedChunks> finder) {
+        this.finder = finder;
+    }
+
+    /*
+     * Safe to call from any thread, as long as neither the array nor the anchors change while it runs.
+     */
+    public ReachedChunks find(long[] loadedChunks, Anchors anchors) {
+        return finder.apply(loadedChunks, anchors);
+    }
+
+    private static ReachedChunks floodFill(long[] loadedChunks, Anchors anchors) {
+        LongHashSet loaded = new LongHashSet(loadedChunks);
+        Reachability reachability = MultiSourceFloodFill.find(loaded, anchors);
+        return new ReachedChunks() {
+            @Override
+            public boolean isLoaded(long chunk) {
+                return loaded.contains(chunk);
+            }
+
+            @Override
+            public boolean isReached(long chunk) {
+                return reachability.isReached(chunk);
+            }
+
+            @Override
+            public int getLoadedCount() {
+                return loaded.size();
+            }
+
+            @Override
+            public int getReachedCount() {
+                return reachability.size();
+            }
+
+            @Override
+            public int getCount(AnchorType type) {
+                return reachability.getCount(type);
+            }
+        };
+    }
+}
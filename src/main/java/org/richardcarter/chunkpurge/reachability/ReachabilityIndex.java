@@ -0,0 +1,338 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/*
+ * Keeps the result of a MultiSourceFloodFill up to date as chunks load and unload and anchors come and go, so that a
+ * purge only has to look at what changed since the last one instead of flooding the whole dimension again.
+ *
+ * Changes are recorded as they happen and applied together in update():
+ * - A newly loaded chunk is attached to a reached neighbour (or seeded, if it holds an anchor) and the fill continues
+ *   from there, which also picks up any orphans it connects to.
+ * - Losing a reached chunk or an anchor can disconnect other chunks. The group of reached chunks connected to what
+ *   was lost is cleared and filled again from the anchors inside it. Chunks that are already orphaned never need
+ *   revisiting.
+ * Anchors with no radius limit have no bounded area to invalidate, so removing one falls back to a full rebuild.
+ *
+ * The set of orphaned (loaded but not reached) chunks is kept alongside, so a purge doesn't have to walk every
+ * loaded chunk to find them. It is only meaningful once update has finished; while an update is part way through,
+ * chunks that are still to be reached show up as orphans too.
+ */
+public class ReachabilityIndex {
+    private final LongHashSet loadedChunks = new LongHashSet();
+    private final LongHashSet orphans = new LongHashSet();
+    private final Anchors anchors = new Anchors();
+    // per anchor type, the chunk key of each anchor to its index in anchors
+    private final LongIntHashMap[] anchorsByType = new LongIntHashMap[AnchorType.values().length];
+    private final LongIntHashMap owners = new LongIntHashMap(-1);
+    private final int[] countsByType = new int[AnchorType.values().length];
+    private final MultiSourceFloodFill fill = new MultiSourceFloodFill(loadedChunks, anchors, owners, countsByType, orphans::remove);
+
+    private final LongHashSet pendingLoads = new LongHashSet();
+    private final LongHashSet pendingInvalidations = new LongHashSet();
+    private final LongHashSet pendingAnchors = new LongHashSet();
+    private final List<Integer> addedAnchors = new ArrayList<>();
+    private final LongQueue invalidationQueue = new LongQueue();
+    private boolean needsRebuild = true;
+    // bumped whenever a chunk loads or unloads
+    private int loadedGeneration;
+
+    private final Reachability reachability = new Reachability(owners, anchors, countsByType);
+
+    public ReachabilityIndex() {
+        for (int i = 0; i < anchorsByType.length; i++) {
+            anchorsByType[i] = new LongIntHashMap(-1);
+        }
+    }
+
+    public void chunkLoaded(long chunk) {
+        if (loadedChunks.add(chunk)) {
+            loadedGeneration++;
+            orphans.add(chunk);
+            pendingLoads.add(chunk);
+        }
+    }
+
+    public void chunkUnloaded(long chunk) {
+        if (!loadedChunks.remove(chunk)) {
+            return;
+        }
+        loadedGeneration++;
+        orphans.remove(chunk);
+        pendingLoads.remove(chunk);
+        if (owners.containsKey(chunk)) {
+            // stays in owners until update() so the group it belonged to can still be found from it
+            pendingInvalidations.add(chunk);
+        }
+    }
+
+    /*
+     * Replace the anchors with the given ones. Anchors that are unchanged keep their results; only added, moved and
+     * removed anchors cause any work. Of several anchors of the same type in the same chunk, only the one with the
+     * largest radius limit matters.
+     */
+    public void setAnchors(Anchors desired) {
+        LongIntHashMap[] desiredByType = new LongIntHashMap[anchorsByType.length];
+        for (int i = 0; i < desiredByType.length; i++) {
+            desiredByType[i] = new LongIntHashMap(Integer.MIN_VALUE);
+        }
+        for (int i = 0; i < desired.size(); i++) {
+            if (desired.isRemoved(i)) {
+                continue;
+            }
+            LongIntHashMap radii = desiredByType[desired.getType(i).ordinal()];
+            long key = desired.getKey(i);
+            int radius = desired.getRadius(i);
+            int existing = radii.get(key);
+            if (existing == Integer.MIN_VALUE || (existing > 0 && (radius <= 0 || radius > existing))) {
+                radii.put(key, radius);
+            }
+        }
+
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (anchors.isRemoved(anchor)) {
+                continue;
+            }
+            LongIntHashMap radii = desiredByType[anchors.getType(anchor).ordinal()];
+            long key = anchors.getKey(anchor);
+            if (radii.get(key) == anchors.getRadius(anchor)) {
+                radii.remove(key);
+            } else {
+                removeAnchor(anchor);
+            }
+        }
+
+        for (AnchorType type : AnchorType.values()) {
+            desiredByType[type.ordinal()].forEach((key, radius) -> {
+                int anchor = anchors.add(key, radius, type);
+                anchorsByType[type.ordinal()].put(key, anchor);
+                pendingAnchors.add(key);
+                addedAnchors.add(anchor);
+                if (radius <= 0) {
+                    needsRebuild = true;
+                }
+            });
+        }
+    }
+
+    private void removeAnchor(int anchor) {
+        long key = anchors.getKey(anchor);
+        int radius = anchors.getRadius(anchor);
+        if (radius <= 0) {
+            needsRebuild = true;
+        } else if (!needsRebuild) {
+            // every chunk attributed to this anchor lies within its radius limit
+            int x = ChunkKeys.x(key);
+            int z = ChunkKeys.z(key);
+            for (int dx = -radius; dx <= radius; dx++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    long chunk = ChunkKeys.of(x + dx, z + dz);
+                    if (owners.get(chunk) == anchor) {
+                        invalidateFrom(chunk);
+                    }
+                }
+            }
+        }
+        anchorsByType[anchors.getType(anchor).ordinal()].remove(key);
+        anchors.remove(anchor);
+    }
+
+    /*
+     * Clear the group of reached chunks connected to the given one, remembering any anchors inside it so they can be
+     * filled from again.
+     */
+    private void invalidateFrom(long start) {
+        if (!owners.containsKey(start)) {
+            return;
+        }
+        clearOwner(start);
+        invalidationQueue.add(start);
+        while (!invalidationQueue.isEmpty()) {
+            long chunk = invalidationQueue.remove();
+            int x = ChunkKeys.x(chunk);
+            int z = ChunkKeys.z(chunk);
+            invalidateNeighbour(ChunkKeys.of(x + 1, z));
+            invalidateNeighbour(ChunkKeys.of(x - 1, z));
+            invalidateNeighbour(ChunkKeys.of(x, z + 1));
+            invalidateNeighbour(ChunkKeys.of(x, z - 1));
+        }
+    }
+
+    private void invalidateNeighbour(long chunk) {
+        if (owners.containsKey(chunk)) {
+            clearOwner(chunk);
+            invalidationQueue.add(chunk);
+        }
+    }
+
+    private void clearOwner(long chunk) {
+        int owner = owners.remove(chunk);
+        countsByType[anchors.getType(owner).ordinal()]--;
+        if (loadedChunks.contains(chunk)) {
+            orphans.add(chunk);
+        }
+        for (LongIntHashMap anchorsAtChunk : anchorsByType) {
+            if (anchorsAtChunk.containsKey(chunk)) {
+                pendingAnchors.add(chunk);
+            }
+        }
+    }
+
+    /*
+     * Apply every change recorded since the last update and return the current result. The returned Reachability
+     * is a live view that stays valid until the next change to this index.
+     */
+    public Reachability update() {
+        update(0);
+        return reachability;
+    }
+
+    /*
+     * Like update(), but gives up once budgetNanos have passed (0 or less for no limit) and returns false. The next
+     * call carries on from where this one stopped. Changes recorded in between are picked up too, so by the time
+     * this returns true every change so far has been applied and the orphan set is consistent.
+     */
+    public boolean update(long budgetNanos) {
+        final long deadline = System.nanoTime() + budgetNanos;
+        while (true) {
+            if (needsRebuild) {
+                startRebuild();
+            } else {
+                applyPending();
+            }
+
+            if (budgetNanos > 0) {
+                if (!fill.run(deadline)) {
+                    return false;
+                }
+            } else {
+                fill.run();
+            }
+
+            if (!hasPendingChanges()) {
+                return true;
+            }
+        }
+    }
+
+    public Reachability getReachability() {
+        return reachability;
+    }
+
+    private boolean hasPendingChanges() {
+        return needsRebuild || !pendingInvalidations.isEmpty() || !pendingAnchors.isEmpty() || !pendingLoads.isEmpty()
+                || !addedAnchors.isEmpty();
+    }
+
+    private void applyPending() {
+        pendingInvalidations.forEach(this::invalidateFrom);
+        pendingInvalidations.clear();
+
+        pendingAnchors.forEach(this::seedAnchorsAt);
+        pendingAnchors.clear();
+
+        // a new chunk may hold an anchor, or join a reached neighbour. If that neighbour is only reached later on,
+        // the fill gets to the new chunk from there instead.
+        pendingLoads.forEach(this::seedAnchorsAt);
+        pendingLoads.forEach(fill::seedFrom);
+        pendingLoads.clear();
+
+        // a new anchor's radius limit may cover orphans that already sit next to reached chunks
+        for (int anchor : addedAnchors) {
+            if (!anchors.isRemoved(anchor)) {
+                seedOrphansInRange(anchor);
+            }
+        }
+        addedAnchors.clear();
+    }
+
+    private void seedOrphansInRange(int anchor) {
+        long key = anchors.getKey(anchor);
+        int radius = anchors.getRadius(anchor);
+        int x = ChunkKeys.x(key);
+        int z = ChunkKeys.z(key);
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                long chunk = ChunkKeys.of(x + dx, z + dz);
+                if (orphans.contains(chunk)) {
+                    fill.seedFrom(chunk);
+                }
+            }
+        }
+    }
+
+    private void seedAnchorsAt(long chunk) {
+        for (LongIntHashMap anchorsAtChunk : anchorsByType) {
+            int anchor = anchorsAtChunk.get(chunk);
+            if (anchor >= 0) {
+                fill.seedAnchor(anchor);
+            }
+        }
+    }
+
+    private void startRebuild() {
+        fill.cancel();
+        owners.clear();
+        for (int i = 0; i < countsByType.length; i++) {
+            countsByType[i] = 0;
+        }
+        orphans.clear();
+        orphans.addAll(loadedChunks);
+        pendingInvalidations.clear();
+        pendingAnchors.clear();
+        pendingLoads.clear();
+        addedAnchors.clear();
+
+        fill.seedAllAnchors();
+        needsRebuild = false;
+    }
+
+    /*
+     * Forget everything and rebuild from scratch on the next update.
+     */
+    public void invalidateAll() {
+        needsRebuild = true;
+    }
+
+    public boolean isLoaded(long chunk) {
+        return loadedChunks.contains(chunk);
+    }
+
+    public long[] getLoadedChunks() {
+        return loadedChunks.toArray();
+    }
+
+    public int getLoadedCount() {
+        return loadedChunks.size();
+    }
+
+    /*
+     * Changes whenever the loaded chunks do, so a purge can tell whether any loaded or unloaded since an earlier one.
+     */
+    public int getLoadedGeneration() {
+        return loadedGeneration;
+    }
+
+    public int getOrphanCount() {
+        return orphans.size();
+    }
+
+    public boolean isOrphan(long chunk) {
+        return orphans.contains(chunk);
+    }
+
+    public void forEachOrphan(LongConsumer action) {
+        orphans.forEach(action);
+    }
+
+    public long[] getOrphans() {
+        return orphans.toArray();
+    }
+}
@@ -0,0 +1,19 @@
+package org.richardcarter.chunkpurge.reachability;
+
+/*
+ * Which of the loaded chunks a ReachabilityEngine found linked back to an anchor.
+ */
+public interface ReachedChunks {
+    boolean isLoaded(long chunk);
+
+    boolean isReached(long chunk);
+
+    int getLoadedCount();
+
+    int getReachedCount();
+
+    /*
+     * Number of reached chunks attributed to anchors of the given type, each chunk counted once.
+     */
+    int getCount(AnchorType type);
+}
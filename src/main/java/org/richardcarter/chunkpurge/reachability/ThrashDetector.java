@@ -0,0 +1,160 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import lombok.Value;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+import org.richardcarter.chunkpurge.util.LongQueue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Counts, per chunk, how often it loaded again soon after a purge unloaded it (see IdleTracker) over a sliding
+ * window, and pins the chunks that keep doing so as temporary anchors. Something, typically a machine reaching into
+ * unanchored chunks or a farm at the edge of view distance, keeps loading those back, so unloading them only costs a
+ * save and a reload every time.
+ *
+ * Times are in world ticks, as for IdleTracker.
+ */
+public class ThrashDetector {
+    // only the worst offenders are pinned
+    public static final int MAX_PINS = 64;
+
+    @Value
+    public static class Offender {
+        long chunk;
+        // reloads within the window
+        int reloads;
+        // ticks until the pin expires, 0 if not pinned
+        int pinnedFor;
+    }
+
+    // every reload within the window, oldest first, and how many of them each chunk has
+    private final LongQueue reloadChunks = new LongQueue();
+    private final LongQueue reloadTicks = new LongQueue();
+    private final LongIntHashMap reloads = new LongIntHashMap(0);
+
+    // pinned chunks, to the tick their pin expires
+    private final LongIntHashMap pinnedUntil = new LongIntHashMap(0);
+    private final LongQueue expired = new LongQueue();
+
+    /*
+     * The chunk reloaded at tick now. Pins it until now + pinTicks if that makes pinReloads reloads within the last
+     * windowTicks ticks, and returns whether the pins changed.
+     */
+    public boolean reloaded(long chunk, int now, int pinReloads, int windowTicks, int pinTicks) {
+        slide(now, windowTicks);
+        reloadChunks.add(chunk);
+        reloadTicks.add(now);
+        int count = reloads.addTo(chunk, 1);
+        if (count < pinReloads) {
+            return false;
+        }
+        if (pinnedUntil.containsKey(chunk)) {
+            pinnedUntil.put(chunk, now + pinTicks);
+            return false;
+        }
+        if (pinnedUntil.size() >= MAX_PINS && !unpinLeastReloaded(count)) {
+            return false;
+        }
+        pinnedUntil.put(chunk, now + pinTicks);
+        return true;
+    }
+
+    /*
+     * Make room for a chunk with the given reloads by unpinning one with fewer, if there is one.
+     */
+    private boolean unpinLeastReloaded(int than) {
+        long[] least = {0};
+        int[] leastReloads = {than};
+        pinnedUntil.forEach((chunk, until) -> {
+            int count = reloads.get(chunk);
+            if (count < leastReloads[0]) {
+                least[0] = chunk;
+                leastReloads[0] = count;
+            }
+        });
+        if (leastReloads[0] >= than) {
+            return false;
+        }
+        pinnedUntil.remove(least[0]);
+        return true;
+    }
+
+    /*
+     * Forget reloads that fell out of the window and unpin chunks whose pin expired. Returns whether the pins changed.
+     */
+    public boolean expire(int now, int windowTicks) {
+        slide(now, windowTicks);
+        if (pinnedUntil.isEmpty()) {
+            return false;
+        }
+        pinnedUntil.forEach((chunk, until) -> {
+            if (now - until >= 0) {
+                expired.add(chunk);
+            }
+        });
+        if (expired.isEmpty()) {
+            return false;
+        }
+        while (!expired.isEmpty()) {
+            pinnedUntil.remove(expired.remove());
+        }
+        return true;
+    }
+
+    private void slide(int now, int windowTicks) {
+        while (!reloadTicks.isEmpty() && now - (int) reloadTicks.peek() >= windowTicks) {
+            reloadTicks.remove();
+            long chunk = reloadChunks.remove();
+            if (reloads.addTo(chunk, -1) <= 0) {
+                reloads.remove(chunk);
+            }
+        }
+    }
+
+    public void forEachPin(LongIntHashMap.LongIntConsumer action) {
+        pinnedUntil.forEach(action);
+    }
+
+    public boolean isPinned(long chunk) {
+        return pinnedUntil.containsKey(chunk);
+    }
+
+    public int getPinCount() {
+        return pinnedUntil.size();
+    }
+
+    /*
+     * Reloads within the window, as of the last call to reloaded or expire.
+     */
+    public int getReloads(long chunk) {
+        return reloads.get(chunk);
+    }
+
+    /*
+     * Pinned chunks, then the chunks reloaded most within the window, up to max of them.
+     */
+    public List<Offender> getWorst(int max, int now) {
+        List<Offender> offenders = new ArrayList<>();
+        pinnedUntil.forEach((chunk, until) -> offenders.add(new Offender(chunk, reloads.get(chunk), until - now)));
+        reloads.forEach((chunk, count) -> {
+            if (!pinnedUntil.containsKey(chunk)) {
+                offenders.add(new Offender(chunk, count, 0));
+            }
+        });
+        offenders.sort(Comparator.comparing((Offender o) -> o.getPinnedFor() > 0)
+                .thenComparingInt(Offender::getReloads)
+                .reversed());
+        return offenders.size() > max ? new ArrayList<>(offenders.subList(0, max)) : offenders;
+    }
+
+    /*
+     * Unpin everything, returning whether anything was pinned.
+     */
+    public boolean unpinAll() {
+        boolean any = !pinnedUntil.isEmpty();
+        pinnedUntil.clear();
+        return any;
+    }
+}
@@ -0,0 +1,245 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/*
+ * Reachability worked out by labelling connected components rather than filling from each anchor: one union-find
+ * pass over all loaded chunks joins every chunk with its loaded neighbours, and a component with no anchor in it is
+ * orphaned as a whole. Only the chunks of the components that are kept get a second pass, which drops the ones
+ * outside every anchor's radius limit and labels what is left again. A component with an unlimited anchor in it is
+ * kept whole and skips the radius check. The loaded chunks are sorted once so that neighbours are found by walking
+ * the array rather than by hash lookups; after that, both passes look at each chunk and two of its neighbours once,
+ * so the time grows with the loaded chunks and hardly at all with the number of anchors.
+ *
+ * A chunk is reached when it is connected to an anchor through loaded chunks within the radius limit of some
+ * anchor, the same rule MultiSourceFloodFill follows. Counts by type are per connected area, towards the first
+ * anchor type (in AnchorType order) with an anchor in it, as for BitmapReachability.
+ */
+public class UnionFindReachability implements ReachedChunks {
+    // what the second pass found out about each chunk
+    private static final byte ORPHANED = 0;
+    private static final byte OUT_OF_RANGE = 1;
+    private static final byte IN_RANGE = 2;
+    private static final byte REACHED = 3;
+
+    // the loaded chunks, sorted by z and then x with the sign bit of x flipped (see sortKey), so that the chunk at
+    // x + 1 directly follows a chunk and the one at z + 1 is found by walking a second index along behind it
+    private final long[] sorted;
+    private final int count;
+    // index of the loaded neighbour at x + 1 and at z + 1, or -1
+    private final int[] east;
+    private final int[] south;
+
+    private final int[] parent;
+    private final byte[] rank;
+    // per root, the lowest AnchorType ordinal with an anchor in its component, or -1, and whether any of those
+    // anchors has no radius limit
+    private final byte[] rootType;
+    private final boolean[] rootUnlimited;
+    private final byte[] state;
+
+    private final int[] countsByType = new int[AnchorType.values().length];
+    private int reachedCount;
+
+    private UnionFindReachability(long[] loadedChunks) {
+        long[] sorted = new long[loadedChunks.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = sortKey(loadedChunks[i]);
+        }
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (count == 0 || sorted[i] != sorted[count - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        this.sorted = sorted;
+        this.count = count;
+
+        east = new int[count];
+        south = new int[count];
+        int below = 0;
+        for (int i = 0; i < count; i++) {
+            east[i] = i + 1 < count && sorted[i + 1] == sorted[i] + 1 ? i + 1 : -1;
+            long next = sorted[i] + (1L << 32);
+            while (below < count && sorted[below] < next) {
+                below++;
+            }
+            south[i] = below < count && sorted[below] == next ? below : -1;
+        }
+
+        parent = new int[count];
+        rank = new byte[count];
+        rootType = new byte[count];
+        rootUnlimited = new boolean[count];
+        state = new byte[count];
+    }
+
+    /*
+     * Flipping the sign bit of x makes negative x sort before positive x within a row. It undoes itself, so it also
+     * turns a sorted key back into a chunk key.
+     */
+    private static long sortKey(long chunk) {
+        return chunk ^ 0x80000000L;
+    }
+
+    private int indexOf(long chunk) {
+        int i = Arrays.binarySearch(sorted, 0, count, sortKey(chunk));
+        return i < 0 ? -1 : i;
+    }
+
+    /*
+     * Safe to call from any thread, as long as neither the array nor the anchors change while it runs.
+     */
+    public static UnionFindReachability find(long[] loadedChunks, Anchors anchors) {
+        UnionFindReachability result = new UnionFindReachability(loadedChunks);
+        result.label(i -> true);
+        result.markAnchored(anchors);
+        if (result.keep(anchors)) {
+            // label again, now leaving out the chunks outside every radius limit
+            result.label(i -> result.state[i] == IN_RANGE);
+            result.markAnchored(anchors);
+        }
+        result.reach();
+        return result;
+    }
+
+    /*
+     * Join every chunk the filter accepts with its neighbours at +x and +z that it also accepts.
+     */
+    private void label(IntPredicate filter) {
+        for (int i = 0; i < count; i++) {
+            if (filter.test(i)) {
+                parent[i] = i;
+                rank[i] = 0;
+                rootType[i] = -1;
+                rootUnlimited[i] = false;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (!filter.test(i)) {
+                continue;
+            }
+            if (east[i] >= 0 && filter.test(east[i])) {
+                union(i, east[i]);
+            }
+            if (south[i] >= 0 && filter.test(south[i])) {
+                union(i, south[i]);
+            }
+        }
+    }
+
+    private int root(int i) {
+        while (parent[i] != i) {
+            // path halving
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        a = root(a);
+        b = root(b);
+        if (a == b) {
+            return;
+        }
+        if (rank[a] < rank[b]) {
+            parent[a] = b;
+        } else {
+            parent[b] = a;
+            if (rank[a] == rank[b]) {
+                rank[a]++;
+            }
+        }
+    }
+
+    /*
+     * Record the anchor types of each component that has an anchor chunk in it, and whether one of them has no radius
+     * limit. An anchor on a chunk that isn't loaded, or that the last labelling left out, reaches nothing.
+     */
+    private void markAnchored(Anchors anchors) {
+        for (int anchor = 0; anchor < anchors.size(); anchor++) {
+            if (anchors.isRemoved(anchor)) {
+                continue;
+            }
+            int i = indexOf(anchors.getKey(anchor));
+            if (i < 0 || state[i] == OUT_OF_RANGE) {
+                continue;
+            }
+            int root = root(i);
+            byte type = (byte) anchors.getType(anchor).ordinal();
+            if (rootType[root] < 0 || type < rootType[root]) {
+                rootType[root] = type;
+            }
+            if (anchors.getRadius(anchor) <= 0) {
+                rootUnlimited[root] = true;
+            }
+        }
+    }
+
+    /*
+     * The cheaper pass over the kept components: which of their chunks are within the radius limit of an anchor.
+     * Every chunk of a component with an unlimited anchor in it is. Returns whether any chunk of a kept component
+     * isn't, so the components need labelling again.
+     */
+    private boolean keep(Anchors anchors) {
+        boolean outOfRange = false;
+        for (int i = 0; i < count; i++) {
+            int root = root(i);
+            if (rootType[root] < 0) {
+                state[i] = ORPHANED;
+            } else if (rootUnlimited[root] || anchors.findCovering(sortKey(sorted[i])) >= 0) {
+                state[i] = IN_RANGE;
+            } else {
+                state[i] = OUT_OF_RANGE;
+                outOfRange = true;
+            }
+        }
+        return outOfRange;
+    }
+
+    /*
+     * Reach the chunks within range whose component has an anchor in it, and count them.
+     */
+    private void reach() {
+        for (int i = 0; i < count; i++) {
+            if (state[i] != IN_RANGE) {
+                continue;
+            }
+            byte type = rootType[root(i)];
+            if (type >= 0) {
+                state[i] = REACHED;
+                reachedCount++;
+                countsByType[type]++;
+            }
+        }
+    }
+
+    @Override
+    public boolean isLoaded(long chunk) {
+        return indexOf(chunk) >= 0;
+    }
+
+    @Override
+    public boolean isReached(long chunk) {
+        int i = indexOf(chunk);
+        return i >= 0 && state[i] == REACHED;
+    }
+
+    @Override
+    public int getLoadedCount() {
+        return count;
+    }
+
+    @Override
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    @Override
+    public int getCount(AnchorType type) {
+        return countsByType[type.ordinal()];
+    }
+}
@@ -0,0 +1,410 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/*
+ * The orphans found by the last purge of a dimension, waiting to be handed to the world a few at a time, one region
+ * file after the other so that their saves don't jump between files. Regions whose farthest orphan is farthest from
+ * any anchor go first, and the chunks of a region go in the order of its file's header. Given what each chunk costs
+ * to keep ticking, the regions whose orphans cost most together go first instead, and distance only settles ties.
+ *
+ * Entries stay valid while they wait: the queue is told about every chunk that loads and checked against the
+ * current anchors before it is drained, and drops the whole group (see OrphanGroups) of any orphan that may have
+ * become reachable since. As with the result of a purge, chunks unloading and anchors going away can only orphan
+ * more, so they never need looking at. Orphans that retain takes off the queue are still watched for anchors, since
+ * they stay loaded and so still connect the rest of their group.
+ */
+public class UnloadQueue {
+    // a binary max-heap on order: the priority of the chunk's region in the high 32 bits (see priority), then an
+    // index of the region, then 1023 less the chunk's place in the region
+    private long[] chunks = new long[0];
+    private long[] order = new long[0];
+    private int[] groups = new int[0];
+    private int size;
+    // the orphans retain took off the queue, and their groups
+    private long[] heldBack = new long[0];
+    private int[] heldBackGroups = new int[0];
+    private int heldBackCount;
+
+    private LongIntHashMap groupOf = new LongIntHashMap(-1);
+    // groupOf comes from the purge result until add first changes it
+    private boolean ownsGroupOf = true;
+    private int groupCount;
+    private int regionCount;
+    private final BitSet dropped = new BitSet();
+    // the anchors the entries are known to be orphaned from
+    private Anchors anchors = new Anchors();
+
+    // with costs, the priority is the summed cost of a region's orphans over the distance of its farthest one
+    private static final int DISTANCE_BITS = 11;
+    private static final int MAX_DISTANCE = (1 << DISTANCE_BITS) - 1;
+    private static final long MAX_COST = (1 << (31 - DISTANCE_BITS)) - 1;
+
+    /*
+     * Replace everything queued with a new purge result, found with the given anchors. distances is parallel to
+     * orphans.getChunks().
+     */
+    public void replace(OrphanGroups orphans, int[] distances, Anchors anchors) {
+        replace(orphans, distances, null, anchors);
+    }
+
+    /*
+     * As replace(orphans, distances, anchors), weighing regions by the costs of their orphans (see ChunkCost), which
+     * are parallel to orphans.getChunks() too. Null costs leave only the distances.
+     */
+    public void replace(OrphanGroups orphans, int[] distances, @Nullable int[] costs, Anchors anchors) {
+        long[] orphanChunks = orphans.getChunks();
+        regionCount = 0;
+        this.chunks = orphanChunks.clone();
+        this.order = order(orphanChunks, distances, costs);
+        this.groups = orphans.getGroups().clone();
+        this.size = orphanChunks.length;
+        this.groupOf = orphans.getGroupOf();
+        ownsGroupOf = false;
+        groupCount = orphans.getGroupCount();
+        this.anchors = anchors;
+        heldBackCount = 0;
+        dropped.clear();
+
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /*
+     * Queue one more group of chunks, orphaned from the anchors last given to anchorsChanged, next to what is queued
+     * already. Chunks queued already, in a group that hasn't been dropped, are left where they are. distances is
+     * parallel to chunks.
+     */
+    public void add(long[] chunks, int[] distances) {
+        add(chunks, distances, null);
+    }
+
+    /*
+     * As add(chunks, distances), weighing regions by the costs of the chunks, unless they are null.
+     */
+    public void add(long[] chunks, int[] distances, @Nullable int[] costs) {
+        if (!ownsGroupOf) {
+            LongIntHashMap copy = new LongIntHashMap(-1);
+            groupOf.forEach(copy::put);
+            groupOf = copy;
+            ownsGroupOf = true;
+        }
+        int count = 0;
+        long[] added = new long[chunks.length];
+        int[] addedDistances = new int[chunks.length];
+        int[] addedCosts = costs == null ? null : new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            int group = groupOf.get(chunks[i]);
+            if (group < 0 || dropped.get(group)) {
+                added[count] = chunks[i];
+                addedDistances[count] = distances[i];
+                if (costs != null) {
+                    addedCosts[count] = costs[i];
+                }
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        if (count < chunks.length) {
+            added = Arrays.copyOf(added, count);
+            addedDistances = Arrays.copyOf(addedDistances, count);
+            addedCosts = costs == null ? null : Arrays.copyOf(addedCosts, count);
+        }
+
+        int group = groupCount++;
+        long[] addedOrder = order(added, addedDistances, addedCosts);
+        if (size + count > this.chunks.length) {
+            int capacity = Math.max(size + count, this.chunks.length * 2);
+            this.chunks = Arrays.copyOf(this.chunks, capacity);
+            order = Arrays.copyOf(order, capacity);
+            groups = Arrays.copyOf(groups, capacity);
+        }
+        for (int i = 0; i < count; i++) {
+            groupOf.put(added[i], group);
+            siftUp(size++, added[i], addedOrder[i], group);
+        }
+    }
+
+    /*
+     * Heap keys for the chunks, numbering their regions on from the regions already queued.
+     */
+    private long[] order(long[] chunks, int[] distances, @Nullable int[] costs) {
+        LongIntHashMap regionOf = new LongIntHashMap(-1);
+        int[] farthest = new int[chunks.length];
+        long[] regionCosts = new long[chunks.length];
+        int regions = 0;
+        int[] chunkRegions = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            long region = ChunkKeys.region(chunks[i]);
+            int index = regionOf.get(region);
+            if (index < 0) {
+                index = regions++;
+                regionOf.put(region, index);
+            }
+            chunkRegions[i] = index;
+            farthest[index] = Math.max(farthest[index], distances[i]);
+            if (costs != null) {
+                regionCosts[index] += costs[i];
+            }
+        }
+
+        long[] order = new long[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            int region = chunkRegions[i];
+            int priority = costs == null ? farthest[region] : priority(regionCosts[region], farthest[region]);
+            order[i] = (long) priority << 32 | (long) (regionCount + region) << 10
+                    | 1023 - ChunkKeys.regionIndex(chunks[i]);
+        }
+        regionCount += regions;
+        return order;
+    }
+
+    private static int priority(long cost, int distance) {
+        return (int) Math.min(cost, MAX_COST) << DISTANCE_BITS | Math.min(distance, MAX_DISTANCE);
+    }
+
+    public void clear() {
+        size = 0;
+        groupOf = new LongIntHashMap(-1);
+        ownsGroupOf = true;
+        groupCount = 0;
+        regionCount = 0;
+        heldBackCount = 0;
+        dropped.clear();
+    }
+
+    /*
+     * Drop the group of the chunk and of each of its neighbours, since the chunk may connect them to an anchor.
+     */
+    public void chunkLoaded(long chunk) {
+        if (size == 0) {
+            return;
+        }
+        int x = ChunkKeys.x(chunk);
+        int z = ChunkKeys.z(chunk);
+        dropGroupOf(chunk);
+        dropGroupOf(ChunkKeys.of(x + 1, z));
+        dropGroupOf(ChunkKeys.of(x - 1, z));
+        dropGroupOf(ChunkKeys.of(x, z + 1));
+        dropGroupOf(ChunkKeys.of(x, z - 1));
+    }
+
+    /*
+     * Drop the group of every entry that an anchor added or grown since the last call now covers. An added anchor
+     * without a radius limit may reach any of them, so that drops them all.
+     */
+    public void anchorsChanged(Anchors current) {
+        if (current == anchors) {
+            return;
+        }
+        if (size == 0) {
+            anchors = current;
+            return;
+        }
+        Anchors added = current.addedSince(anchors);
+        anchors = current;
+        if (added.isEmpty()) {
+            return;
+        }
+        boolean unlimited = added.hasUnlimited();
+        for (int i = 0; i < size; i++) {
+            if (!dropped.get(groups[i]) && (unlimited || added.findCovering(chunks[i]) >= 0)) {
+                dropped.set(groups[i]);
+            }
+        }
+        for (int i = 0; i < heldBackCount; i++) {
+            if (!dropped.get(heldBackGroups[i]) && (unlimited || added.findCovering(heldBack[i]) >= 0)) {
+                dropped.set(heldBackGroups[i]);
+            }
+        }
+    }
+
+    /*
+     * Take every entry eligible rejects off the queue, along with the entries of dropped groups. The rest of their
+     * group stays queued: unloading part of a group only orphans more.
+     */
+    public void retain(LongPredicate eligible) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (dropped.get(groups[i])) {
+                continue;
+            }
+            if (eligible.test(chunks[i])) {
+                move(i, kept++);
+            } else {
+                holdBack(chunks[i], groups[i]);
+            }
+        }
+        size = kept;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void holdBack(long chunk, int group) {
+        if (heldBackCount == heldBack.length) {
+            int capacity = Math.max(16, heldBackCount * 2);
+            heldBack = Arrays.copyOf(heldBack, capacity);
+            heldBackGroups = Arrays.copyOf(heldBackGroups, capacity);
+        }
+        heldBack[heldBackCount] = chunk;
+        heldBackGroups[heldBackCount] = group;
+        heldBackCount++;
+    }
+
+    private void dropGroupOf(long chunk) {
+        int group = groupOf.get(chunk);
+        if (group >= 0) {
+            dropped.set(group);
+        }
+    }
+
+    /*
+     * Take entries off the queue, farthest first, and offer each still valid one to unload until it has accepted
+     * max of them or the queue runs out. unload returns false for chunks it couldn't unload after all. Returns the
+     * number accepted.
+     */
+    public int drain(int max, LongPredicate unload) {
+        return drain(max, 0, max, chunk -> false, unload);
+    }
+
+    /*
+     * As drain(max, unload), but stop at the end of the maxRegions-th region file drained (0 or less for no limit),
+     * and of the chunks limited says so, offer at most maxLimited. The rest of those stay queued for a later drain, in
+     * their place; looking for other chunks stops once max of them have been put back.
+     */
+    public int drain(int max, int maxRegions, int maxLimited, LongPredicate limited, LongPredicate unload) {
+        int accepted = 0;
+        int acceptedLimited = 0;
+        int held = 0;
+        long[] heldChunks = null;
+        long[] heldOrder = null;
+        int[] heldGroups = null;
+        int finishedRegions = 0;
+        long region = 0;
+        boolean started = false;
+        while (accepted < max && held < max && size > 0) {
+            long chunk = chunks[0];
+            long chunkOrder = order[0];
+            int group = groups[0];
+            long chunkRegion = ChunkKeys.region(chunk);
+            if (started && chunkRegion != region && maxRegions > 0 && ++finishedRegions >= maxRegions) {
+                break;
+            }
+            region = chunkRegion;
+            started = true;
+            removeTop();
+            if (dropped.get(group)) {
+                continue;
+            }
+            boolean isLimited = limited.test(chunk);
+            if (isLimited && acceptedLimited >= maxLimited) {
+                if (heldChunks == null) {
+                    heldChunks = new long[max];
+                    heldOrder = new long[max];
+                    heldGroups = new int[max];
+                }
+                heldChunks[held] = chunk;
+                heldOrder[held] = chunkOrder;
+                heldGroups[held] = group;
+                held++;
+            } else if (unload.test(chunk)) {
+                accepted++;
+                if (isLimited) {
+                    acceptedLimited++;
+                }
+            }
+        }
+        // each held entry came off the heap, so there is room for it again
+        for (int i = 0; i < held; i++) {
+            siftUp(size++, heldChunks[i], heldOrder[i], heldGroups[i]);
+        }
+        if (size == 0) {
+            clear();
+        }
+        return accepted;
+    }
+
+    /*
+     * Every entry still waiting that hasn't been dropped, in no particular order.
+     */
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i < size; i++) {
+            if (!dropped.get(groups[i])) {
+                action.accept(chunks[i]);
+            }
+        }
+    }
+
+    /*
+     * Entries still waiting, including ones that have been dropped but not yet taken off the queue.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void removeTop() {
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+    }
+
+    private void siftDown(int i) {
+        long chunk = chunks[i];
+        long key = order[i];
+        int group = groups[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && order[child + 1] > order[child]) {
+                child++;
+            }
+            if (order[child] <= key) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        chunks[i] = chunk;
+        order[i] = key;
+        groups[i] = group;
+    }
+
+    private void siftUp(int i, long chunk, long key, int group) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (order[parent] >= key) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        chunks[i] = chunk;
+        order[i] = key;
+        groups[i] = group;
+    }
+
+    private void move(int from, int to) {
+        chunks[to] = chunks[from];
+        order[to] = order[from];
+        groups[to] = groups[from];
+    }
+}
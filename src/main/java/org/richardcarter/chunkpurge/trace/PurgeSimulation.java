@@ -0,0 +1,288 @@
+package org.richardcarter.chunkpurge.trace;
+
+import lombok.Value;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.PurgeScheduler;
+import org.richardcarter.chunkpurge.Protos.PlayerPosition;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.reachability.AnchorType;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.IdleTracker;
+import org.richardcarter.chunkpurge.reachability.OrphanGroups;
+import org.richardcarter.chunkpurge.reachability.ReachabilityIndex;
+import org.richardcarter.chunkpurge.reachability.ThrashDetector;
+import org.richardcarter.chunkpurge.reachability.UnloadQueue;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+/*
+ * Plays a recorded trace of one dimension (see TraceRecorder) through the purge logic, without a server: the same
+ * ReachabilityIndex and UnloadQueue a live server uses, run when a PurgeScheduler says so from the anchors the trace
+ * describes, with the chunks a ThrashDetector pins among them. The trace doesn't say how busy the server was, so the
+ * scheduler never holds back for that.
+ *
+ * Chunks the trace loads are loaded and chunks it unloads are unloaded, as the server did. On top of that the
+ * simulated purge unloads chunks itself. The trace can't say when such a chunk would have been needed again, except
+ * by loading it after the real server unloaded it too: those loads are counted as reloads, and as thrash when they
+ * come within IdleTracker.RELOAD_WINDOW_TICKS of the simulated unload, as a live server counts them.
+ */
+public class PurgeSimulation {
+    // ChunkProviderServer keeps chunks this close to the spawn point loaded whatever the purge says
+    private static final int SPAWN_AREA_RADIUS = 8;
+
+    @Value
+    public static class Settings {
+        // the longest interval between purges, and the shortest one when adaptive
+        int interval;
+        int minInterval;
+        boolean adaptive;
+        int playerRadius;
+        int ticketRadius;
+        int spawnRadius;
+        int unloadsPerTick;
+        int unloadRegionsPerTick;
+        int minIdleTicks;
+        int reloadedUnloadsPerTick;
+        // reloads within pinWindow ticks that pin a chunk, 0 for no pins
+        int pinReloads;
+        int pinWindow;
+        int pinRadius;
+        int pinTicks;
+
+        public static Settings fromConfig() {
+            return new Settings(ChunkPurgeConfig.autoChunkPurgeInterval, ChunkPurgeConfig.autoChunkPurgeMinInterval,
+                    ChunkPurgeConfig.adaptivePurgeInterval, ChunkPurgeConfig.ignoreRadiusPlayer,
+                    ChunkPurgeConfig.ignoreRadiusTicket, ChunkPurgeConfig.ignoreRadiusSpawn,
+                    ChunkPurgeConfig.unloadsPerTick, ChunkPurgeConfig.unloadRegionsPerTick, ChunkPurgeConfig.minIdleTicks,
+                    ChunkPurgeConfig.reloadedUnloadsPerTick, ChunkPurgeConfig.thrashPinReloads,
+                    ChunkPurgeConfig.thrashWindowTicks, ChunkPurgeConfig.thrashPinRadius, ChunkPurgeConfig.thrashPinTicks);
+        }
+    }
+
+    @Value
+    public static class Report {
+        long ticks;
+        long events;
+        int peakLoaded;
+        double averageLoaded;
+        long purgeUnloads;
+        long traceUnloads;
+        long reloads;
+        long thrash;
+        long pins;
+        int scans;
+        long averageScanNanos;
+        long maxScanNanos;
+    }
+
+    private final Settings settings;
+    private final TraceState trace = new TraceState();
+    private final ReachabilityIndex index = new ReachabilityIndex();
+    private final UnloadQueue unloadQueue = new UnloadQueue();
+    private final IdleTracker idle = new IdleTracker();
+    private final ThrashDetector thrashDetector = new ThrashDetector();
+    private final PurgeScheduler scheduler;
+    // the chunks players entered since the last purge
+    private final LongHashSet visited = new LongHashSet();
+    // chunks the simulated purge unloaded, to the tick it did so
+    private final LongIntHashMap purgedAt = new LongIntHashMap(-1);
+    private Anchors anchors = new Anchors();
+    private boolean anchorsDirty = true;
+    private boolean started;
+
+    private long startTick;
+    private long currentTick;
+
+    private long events;
+    private int peakLoaded;
+    private long loadedTickSum;
+    private long purgeUnloads;
+    private long traceUnloads;
+    private long reloads;
+    private long thrash;
+    private long pins;
+    private int scans;
+    private long scanNanosSum;
+    private long maxScanNanos;
+
+    public PurgeSimulation(Settings settings) {
+        this.settings = settings;
+        scheduler = new PurgeScheduler(settings.isAdaptive(), settings.getMinInterval(), settings.getInterval());
+    }
+
+    public void accept(TraceEvent event) {
+        if (!started) {
+            started = true;
+            startTick = currentTick = event.getWorldTime();
+        }
+        while (currentTick < event.getWorldTime()) {
+            endTick();
+            currentTick++;
+        }
+        events++;
+
+        trace.apply(event);
+        switch (event.getEventCase()) {
+            case HEADER:
+                resync();
+                anchorsDirty = true;
+                break;
+            case CHUNK_LOAD:
+                chunkLoaded(TraceState.key(event.getChunkLoad().getChunk()));
+                break;
+            case CHUNK_UNLOAD:
+                long chunk = TraceState.key(event.getChunkUnload().getChunk());
+                if (index.isLoaded(chunk)) {
+                    index.chunkUnloaded(chunk);
+                    traceUnloads++;
+                }
+                // the server unloaded it as well, so loading it later is no longer down to the purge
+                purgedAt.remove(chunk);
+                break;
+            case PLAYER_LOGIN:
+                visited.add(TraceState.key(event.getPlayerLogin().getPosition().getChunk()));
+                anchorsDirty = true;
+                break;
+            case TICK:
+                for (PlayerPosition moved : event.getTick().getMovedList()) {
+                    visited.add(TraceState.key(moved.getChunk()));
+                }
+                anchorsDirty |= event.getTick().getMovedCount() > 0;
+                break;
+            default:
+                anchorsDirty = true;
+                break;
+        }
+    }
+
+    private void chunkLoaded(long chunk) {
+        if (index.isLoaded(chunk)) {
+            return;
+        }
+        index.chunkLoaded(chunk);
+        unloadQueue.chunkLoaded(chunk);
+        idle.chunkLoaded(chunk, tick());
+        int purgedTick = purgedAt.remove(chunk);
+        if (purgedTick >= 0) {
+            reloads++;
+            if (tick() - purgedTick <= IdleTracker.RELOAD_WINDOW_TICKS) {
+                thrash++;
+                if (settings.pinReloads > 0 && thrashDetector.reloaded(chunk, tick(), settings.pinReloads,
+                        settings.pinWindow, settings.pinTicks)) {
+                    pins++;
+                    anchorsDirty = true;
+                }
+            }
+        }
+    }
+
+    /*
+     * Bring the simulated loaded chunks in line with a header. Chunks the simulated purge unloaded stay unloaded,
+     * since that's the difference being measured.
+     */
+    private void resync() {
+        LongHashSet traceLoaded = trace.getLoadedChunks();
+        for (long chunk : index.getLoadedChunks()) {
+            if (!traceLoaded.contains(chunk)) {
+                index.chunkUnloaded(chunk);
+            }
+        }
+        traceLoaded.forEach(chunk -> {
+            if (!purgedAt.containsKey(chunk)) {
+                index.chunkLoaded(chunk);
+                unloadQueue.chunkLoaded(chunk);
+            }
+        });
+    }
+
+    private void endTick() {
+        int loaded = index.getLoadedCount();
+        peakLoaded = Math.max(peakLoaded, loaded);
+        loadedTickSum += loaded;
+
+        // like the server, only purge with someone online
+        if (scheduler.tick(loaded, 0) && !trace.getPlayers().isEmpty()) {
+            scan();
+        }
+        drain();
+        if (settings.pinReloads > 0 && thrashDetector.expire(tick(), settings.pinWindow)) {
+            anchorsDirty = true;
+        }
+    }
+
+    private void scan() {
+        long startTime = System.nanoTime();
+        refreshAnchors();
+        index.update();
+        OrphanGroups orphans = OrphanGroups.find(index.getOrphans(), index.getOrphanCount(), index::isOrphan);
+        unloadQueue.replace(orphans, anchors.distancesTo(orphans.getChunks()), anchors);
+        int now = tick();
+        scheduler.scanFinished(index.getLoadedCount(), orphans.getChunks().length);
+        idle.update(orphans, visited.toArray(), trace.getViewDistance() + settings.playerRadius, now);
+        visited.clear();
+        if (settings.minIdleTicks > 0) {
+            unloadQueue.retain(chunk -> idle.isIdle(chunk, now, settings.minIdleTicks));
+        }
+        long scanNanos = System.nanoTime() - startTime;
+
+        scans++;
+        scanNanosSum += scanNanos;
+        maxScanNanos = Math.max(maxScanNanos, scanNanos);
+    }
+
+    private void drain() {
+        if (unloadQueue.isEmpty()) {
+            return;
+        }
+        refreshAnchors();
+        unloadQueue.anchorsChanged(anchors);
+        unloadQueue.drain(settings.unloadsPerTick, settings.unloadRegionsPerTick, settings.reloadedUnloadsPerTick,
+                idle::isRepeatedlyReloaded, chunk -> {
+            if (!index.isLoaded(chunk) || isSpawnArea(chunk)) {
+                return false;
+            }
+            index.chunkUnloaded(chunk);
+            purgedAt.put(chunk, tick());
+            idle.handedOver(chunk, tick());
+            purgeUnloads++;
+            return true;
+        });
+    }
+
+    private void refreshAnchors() {
+        if (!anchorsDirty) {
+            return;
+        }
+        anchors = new Anchors();
+        int playerRadius = trace.getViewDistance() + settings.playerRadius;
+        for (long chunk : trace.getPlayers().values()) {
+            anchors.add(chunk, playerRadius, AnchorType.PLAYER);
+        }
+        trace.getTicketChunks().forEach(chunk -> anchors.add(chunk, settings.ticketRadius, AnchorType.TICKET));
+        if (trace.keepsSpawnLoaded()) {
+            anchors.add(trace.getSpawnChunk(), settings.spawnRadius, AnchorType.SPAWN);
+        }
+        thrashDetector.forEachPin((chunk, until) -> anchors.add(chunk, settings.pinRadius, AnchorType.PINNED));
+        index.setAnchors(anchors);
+        anchorsDirty = false;
+    }
+
+    private boolean isSpawnArea(long chunk) {
+        long spawn = trace.getSpawnChunk();
+        return trace.keepsSpawnLoaded()
+                && Math.abs(ChunkKeys.x(chunk) - ChunkKeys.x(spawn)) <= SPAWN_AREA_RADIUS
+                && Math.abs(ChunkKeys.z(chunk) - ChunkKeys.z(spawn)) <= SPAWN_AREA_RADIUS;
+    }
+
+    private int tick() {
+        return (int) (currentTick - startTick);
+    }
+
+    public Report getReport() {
+        long ticks = currentTick - startTick;
+        return new Report(ticks, events, peakLoaded, ticks > 0 ? (double) loadedTickSum / ticks : 0,
+                purgeUnloads, traceUnloads, reloads, thrash, pins,
+                scans, scans > 0 ? scanNanosSum / scans : 0, maxScanNanos);
+    }
+}
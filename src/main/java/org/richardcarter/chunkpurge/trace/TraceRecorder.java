@@ -0,0 +1,293 @@
+package org.richardcarter.chunkpurge.trace;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.common.ForgeChunkManager;
+import net.minecraftforge.common.ForgeChunkManager.ForceChunkEvent;
+import net.minecraftforge.common.ForgeChunkManager.UnforceChunkEvent;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import org.richardcarter.chunkpurge.ChunkPurgeConfig;
+import org.richardcarter.chunkpurge.ChunkPurgeMod;
+import org.richardcarter.chunkpurge.Protos.ChunkLoad;
+import org.richardcarter.chunkpurge.Protos.ChunkUnload;
+import org.richardcarter.chunkpurge.Protos.ForceChunk;
+import org.richardcarter.chunkpurge.Protos.LoadCause;
+import org.richardcarter.chunkpurge.Protos.PlayerLogin;
+import org.richardcarter.chunkpurge.Protos.PlayerLogout;
+import org.richardcarter.chunkpurge.Protos.PlayerPosition;
+import org.richardcarter.chunkpurge.Protos.Ticket;
+import org.richardcarter.chunkpurge.Protos.Tick;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.Protos.TraceHeader;
+import org.richardcarter.chunkpurge.Protos.UnforceChunk;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.SpscRingBuffer;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Records chunk activity (see addressbook.proto) while ChunkPurgeConfig.traceEnabled is on, so real workloads can be
+ * replayed offline.
+ *
+ * Everything here runs on the server thread and does no more than build each event and put it in a ring buffer;
+ * a TraceWriter thread does the writing. If the buffer is ever full the event is dropped, and the dimension starts
+ * over with a fresh header as soon as there is room, so a reader never sees a state with events missing from it.
+ */
+public class TraceRecorder {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // a Tick is written at least this often, so a replay can tell time passing without any other events
+    private static final int TICK_INTERVAL = 20;
+
+    private SpscRingBuffer<TraceWriter.Entry> buffer;
+    private TraceWriter writer;
+    private Thread writerThread;
+    private boolean recording;
+    private long dropped;
+
+    private final Set<Integer> started = new HashSet<>();
+    private final Set<Integer> needsHeader = new HashSet<>();
+    // per dimension, the chunk last recorded for each player in it
+    private final Map<Integer, Map<String, Long>> playerChunks = new HashMap<>();
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != Phase.START || ChunkPurgeConfig.traceEnabled == recording) {
+            return;
+        }
+        if (ChunkPurgeConfig.traceEnabled) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    private void start() {
+        File directory = new File(ChunkPurgeConfig.traceDirectory);
+        buffer = new SpscRingBuffer<>(BUFFER_SIZE);
+        writer = new TraceWriter(buffer, directory, ChunkPurgeConfig.traceMaxFileMb * 1024L * 1024L,
+                ChunkPurgeConfig.traceMaxFiles);
+        writerThread = new Thread(writer, "ChunkPurge trace writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        started.clear();
+        needsHeader.clear();
+        playerChunks.clear();
+        dropped = 0;
+        recording = true;
+        ChunkPurgeMod.log.info("Recording chunk traces to " + directory.getAbsolutePath());
+    }
+
+    /*
+     * Stop recording and wait for everything recorded so far to be written.
+     */
+    public void stop() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        writer.stop();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ChunkPurgeMod.log.info("Stopped recording chunk traces" + (dropped > 0 ? "; " + dropped + " events were dropped" : ""));
+        buffer = null;
+        writer = null;
+        writerThread = null;
+    }
+
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (!recording || event.phase != Phase.END || !(event.world instanceof WorldServer)) {
+            return;
+        }
+        WorldServer world = (WorldServer) event.world;
+        Map<String, Long> known = getPlayerChunks(world);
+
+        Tick.Builder tick = Tick.newBuilder().setTimeMillis(System.currentTimeMillis());
+        for (EntityPlayer player : world.playerEntities) {
+            if (player instanceof FakePlayer) {
+                continue;
+            }
+            long chunk = ChunkPos.asLong(player.chunkCoordX, player.chunkCoordZ);
+            Long previous = known.put(player.getUniqueID().toString(), chunk);
+            if (previous == null || previous != chunk) {
+                tick.addMoved(position(player));
+            }
+        }
+        if (tick.getMovedCount() > 0 || world.getTotalWorldTime() % TICK_INTERVAL == 0) {
+            record(world, TraceEvent.newBuilder().setTick(tick));
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        if (!recording || !(event.getWorld() instanceof WorldServer)) {
+            return;
+        }
+        WorldServer world = (WorldServer) event.getWorld();
+        Chunk chunk = event.getChunk();
+        record(world, TraceEvent.newBuilder().setChunkLoad(ChunkLoad.newBuilder()
+                .setChunk(TraceState.coord(chunk.x, chunk.z))
+                .setCause(getLoadCause(world, chunk.x, chunk.z))));
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (!recording || !(event.getWorld() instanceof WorldServer)) {
+            return;
+        }
+        Chunk chunk = event.getChunk();
+        record((WorldServer) event.getWorld(), TraceEvent.newBuilder().setChunkUnload(ChunkUnload.newBuilder()
+                .setChunk(TraceState.coord(chunk.x, chunk.z))));
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerLoggedInEvent event) {
+        recordLogin(event.player, event.player.world);
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerLoggedOutEvent event) {
+        recordLogout(event.player, event.player.world);
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerChangedDimensionEvent event) {
+        recordLogout(event.player, DimensionManager.getWorld(event.fromDim));
+        recordLogin(event.player, event.player.world);
+    }
+
+    @SubscribeEvent
+    public void onForceChunk(ForceChunkEvent event) {
+        if (recording && event.getTicket().world instanceof WorldServer) {
+            record((WorldServer) event.getTicket().world, TraceEvent.newBuilder().setForceChunk(ForceChunk.newBuilder()
+                    .setTicket(ticket(event.getTicket(), event.getLocation()))));
+        }
+    }
+
+    @SubscribeEvent
+    public void onUnforceChunk(UnforceChunkEvent event) {
+        if (recording && event.getTicket().world instanceof WorldServer) {
+            record((WorldServer) event.getTicket().world, TraceEvent.newBuilder().setUnforceChunk(UnforceChunk.newBuilder()
+                    .setTicket(ticket(event.getTicket(), event.getLocation()))));
+        }
+    }
+
+    private void recordLogin(EntityPlayer player, World world) {
+        if (!recording || !(world instanceof WorldServer) || player instanceof FakePlayer) {
+            return;
+        }
+        getPlayerChunks((WorldServer) world).put(player.getUniqueID().toString(),
+                ChunkPos.asLong(player.chunkCoordX, player.chunkCoordZ));
+        record((WorldServer) world, TraceEvent.newBuilder().setPlayerLogin(PlayerLogin.newBuilder()
+                .setPosition(position(player))));
+    }
+
+    private void recordLogout(EntityPlayer player, World world) {
+        if (!recording || !(world instanceof WorldServer) || player instanceof FakePlayer) {
+            return;
+        }
+        getPlayerChunks((WorldServer) world).remove(player.getUniqueID().toString());
+        record((WorldServer) world, TraceEvent.newBuilder().setPlayerLogout(PlayerLogout.newBuilder()
+                .setPlayer(player.getUniqueID().toString())));
+    }
+
+    private void record(WorldServer world, TraceEvent.Builder event) {
+        int dimension = world.provider.getDimension();
+        long worldTime = world.getTotalWorldTime();
+
+        if (!started.contains(dimension) || needsHeader.contains(dimension)) {
+            TraceEvent header = TraceEvent.newBuilder().setWorldTime(worldTime).setHeader(header(world)).build();
+            if (!buffer.offer(new TraceWriter.Entry(dimension, header))) {
+                dropped++;
+                needsHeader.add(dimension);
+                return;
+            }
+            started.add(dimension);
+            needsHeader.remove(dimension);
+        }
+
+        if (!buffer.offer(new TraceWriter.Entry(dimension, event.setWorldTime(worldTime).build()))) {
+            dropped++;
+            needsHeader.add(dimension);
+        }
+    }
+
+    private TraceHeader header(WorldServer world) {
+        TraceHeader.Builder header = TraceHeader.newBuilder()
+                .setDimension(world.provider.getDimension())
+                .setWorldName(world.getWorldInfo().getWorldName())
+                .setStartTimeMillis(System.currentTimeMillis())
+                .setSpawnChunk(TraceState.coord(ChunkKeys.ofBlock(world.getSpawnPoint().getX(), world.getSpawnPoint().getZ())))
+                .setKeepsSpawnLoaded(world.provider.canRespawnHere() && world.provider.getDimensionType().shouldLoadSpawn())
+                .setViewDistance(FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getViewDistance());
+        for (Chunk chunk : world.getChunkProvider().getLoadedChunks()) {
+            header.addLoadedChunks(TraceState.coord(chunk.x, chunk.z));
+        }
+        world.getPersistentChunks().forEach((chunk, ticket) -> header.addTickets(ticket(ticket, chunk)));
+        Map<String, Long> known = getPlayerChunks(world);
+        known.clear();
+        for (EntityPlayer player : world.playerEntities) {
+            if (!(player instanceof FakePlayer)) {
+                header.addPlayers(position(player));
+                known.put(player.getUniqueID().toString(), ChunkPos.asLong(player.chunkCoordX, player.chunkCoordZ));
+            }
+        }
+        return header.build();
+    }
+
+    private Map<String, Long> getPlayerChunks(WorldServer world) {
+        return playerChunks.computeIfAbsent(world.provider.getDimension(), d -> new HashMap<>());
+    }
+
+    /*
+     * A best guess at why a chunk loaded, from what would keep it loaded now.
+     */
+    private static LoadCause getLoadCause(WorldServer world, int x, int z) {
+        if (world.getPersistentChunks().containsKey(new ChunkPos(x, z))) {
+            return LoadCause.LOAD_CAUSE_TICKET;
+        }
+        int viewDistance = FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getViewDistance();
+        for (EntityPlayer player : world.playerEntities) {
+            if (Math.abs(player.chunkCoordX - x) <= viewDistance && Math.abs(player.chunkCoordZ - z) <= viewDistance) {
+                return LoadCause.LOAD_CAUSE_PLAYER;
+            }
+        }
+        if (world.isSpawnChunk(x, z) && world.provider.getDimensionType().shouldLoadSpawn()) {
+            return LoadCause.LOAD_CAUSE_SPAWN;
+        }
+        return LoadCause.LOAD_CAUSE_UNKNOWN;
+    }
+
+    private static PlayerPosition position(EntityPlayer player) {
+        return PlayerPosition.newBuilder()
+                .setPlayer(player.getUniqueID().toString())
+                .setChunk(TraceState.coord(player.chunkCoordX, player.chunkCoordZ))
+                .build();
+    }
+
+    private static Ticket ticket(ForgeChunkManager.Ticket ticket, ChunkPos chunk) {
+        return Ticket.newBuilder()
+                .setChunk(TraceState.coord(chunk.x, chunk.z))
+                .setModId(ticket.getModId())
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package org.richardcarter.chunkpurge.trace;
+
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.reachability.IdleTracker;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Replays recorded chunk traces through PurgeSimulation and prints what the purge would have done with them, to try
+ * out purge settings against real traffic without a server. Runs from the command line (see the replayTrace gradle
+ * task); the settings default to the ones in ChunkPurgeConfig.
+ *
+ * Takes the trace files of a single dimension, or its DIM directory, and replays them in name order.
+ */
+public class TraceReplay {
+    private static final String USAGE = "Usage: TraceReplay [--interval ticks] [--min-interval ticks]"
+            + " [--adaptive 0|1] [--player-radius chunks] [--ticket-radius chunks] [--spawn-radius chunks]"
+            + " [--unloads-per-tick chunks] [--unload-regions-per-tick regions] [--min-idle ticks]"
+            + " [--reloaded-unloads-per-tick chunks] [--pin-reloads reloads] [--pin-window ticks]"
+            + " [--pin-radius chunks] [--pin-ticks ticks] <trace file or DIM directory>...";
+
+    public static void main(String[] args) throws IOException {
+        PurgeSimulation.Settings defaults = PurgeSimulation.Settings.fromConfig();
+        int interval = defaults.getInterval();
+        int minInterval = defaults.getMinInterval();
+        boolean adaptive = defaults.isAdaptive();
+        int playerRadius = defaults.getPlayerRadius();
+        int ticketRadius = defaults.getTicketRadius();
+        int spawnRadius = defaults.getSpawnRadius();
+        int unloadsPerTick = defaults.getUnloadsPerTick();
+        int unloadRegionsPerTick = defaults.getUnloadRegionsPerTick();
+        int minIdleTicks = defaults.getMinIdleTicks();
+        int reloadedUnloadsPerTick = defaults.getReloadedUnloadsPerTick();
+        int pinReloads = defaults.getPinReloads();
+        int pinWindow = defaults.getPinWindow();
+        int pinRadius = defaults.getPinRadius();
+        int pinTicks = defaults.getPinTicks();
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    exitWithUsage();
+                }
+                int value = Integer.parseInt(args[++i]);
+                switch (arg) {
+                    case "--interval": interval = value; break;
+                    case "--min-interval": minInterval = value; break;
+                    case "--adaptive": adaptive = value != 0; break;
+                    case "--player-radius": playerRadius = value; break;
+                    case "--ticket-radius": ticketRadius = value; break;
+                    case "--spawn-radius": spawnRadius = value; break;
+                    case "--unloads-per-tick": unloadsPerTick = value; break;
+                    case "--unload-regions-per-tick": unloadRegionsPerTick = value; break;
+                    case "--min-idle": minIdleTicks = value; break;
+                    case "--reloaded-unloads-per-tick": reloadedUnloadsPerTick = value; break;
+                    case "--pin-reloads": pinReloads = value; break;
+                    case "--pin-window": pinWindow = value; break;
+                    case "--pin-radius": pinRadius = value; break;
+                    case "--pin-ticks": pinTicks = value; break;
+                    default: exitWithUsage();
+                }
+            } else {
+                addTraceFiles(new File(arg), files);
+            }
+        }
+        if (files.isEmpty()) {
+            exitWithUsage();
+        }
+
+        PurgeSimulation simulation = new PurgeSimulation(new PurgeSimulation.Settings(interval, minInterval, adaptive,
+                playerRadius, ticketRadius, spawnRadius, unloadsPerTick, unloadRegionsPerTick, minIdleTicks,
+                reloadedUnloadsPerTick, pinReloads, pinWindow, pinRadius, pinTicks));
+        for (File file : files) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                TraceEvent event;
+                while ((event = TraceEvent.parseDelimitedFrom(in)) != null) {
+                    simulation.accept(event);
+                }
+            }
+        }
+
+        PurgeSimulation.Report report = simulation.getReport();
+        System.out.println("Replayed " + report.getTicks() + " ticks (" + report.getEvents() + " events) from "
+                + files.size() + " file(s)");
+        System.out.println("Loaded chunks: peak " + report.getPeakLoaded()
+                + ", average " + String.format("%.1f", report.getAverageLoaded()));
+        System.out.println("Unloads: " + report.getPurgeUnloads() + " by the purge, "
+                + report.getTraceUnloads() + " by the server");
+        System.out.println("Reloaded after a purge unload: " + report.getReloads()
+                 + ", of which within " + IdleTracker.RELOAD_WINDOW_TICKS + " ticks (thrash): " + report.getThrash());
+        System.out.println("Chunks pinned for thrashing: " + report.getPins());
+        System.out.println("Scans" + (adaptive ? " (adaptive interval)" : "") + ": " + report.getScans()
+                + ", average " + TimeUnit.NANOSECONDS.toMicros(report.getAverageScanNanos()) / 1000.0 + " ms"
+                + ", max " + TimeUnit.NANOSECONDS.toMicros(report.getMaxScanNanos()) / 1000.0 + " ms");
+    }
+
+    private static void addTraceFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] traces = file.listFiles((dir, name) -> name.endsWith(".trace"));
+            if (traces != null) {
+                Arrays.sort(traces);
+                files.addAll(Arrays.asList(traces));
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    private static void exitWithUsage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,154 @@
+package org.richardcarter.chunkpurge.trace;
+
+import org.richardcarter.chunkpurge.Protos.ChunkCoord;
+import org.richardcarter.chunkpurge.Protos.PlayerPosition;
+import org.richardcarter.chunkpurge.Protos.Ticket;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.Protos.TraceHeader;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * The state of one dimension as described by a trace: a header, with every event since applied to it. The recorder
+ * keeps one to start each new file with a header, and a replay keeps one to know what's loaded.
+ */
+public class TraceState {
+    private int dimension;
+    private String worldName = "";
+    private ChunkCoord spawnChunk = ChunkCoord.getDefaultInstance();
+    private boolean keepsSpawnLoaded;
+    private int viewDistance;
+    private final LongHashSet loadedChunks = new LongHashSet();
+    // a mod can hold several tickets on the same chunk
+    private final Map<Ticket, Integer> tickets = new LinkedHashMap<>();
+    // player UUID to chunk key
+    private final Map<String, Long> players = new LinkedHashMap<>();
+
+    public void apply(TraceEvent event) {
+        switch (event.getEventCase()) {
+            case HEADER:
+                reset(event.getHeader());
+                break;
+            case PLAYER_LOGIN:
+                PlayerPosition position = event.getPlayerLogin().getPosition();
+                players.put(position.getPlayer(), key(position.getChunk()));
+                break;
+            case PLAYER_LOGOUT:
+                players.remove(event.getPlayerLogout().getPlayer());
+                break;
+            case CHUNK_LOAD:
+                loadedChunks.add(key(event.getChunkLoad().getChunk()));
+                break;
+            case CHUNK_UNLOAD:
+                loadedChunks.remove(key(event.getChunkUnload().getChunk()));
+                break;
+            case FORCE_CHUNK:
+                tickets.merge(event.getForceChunk().getTicket(), 1, Integer::sum);
+                break;
+            case UNFORCE_CHUNK:
+                tickets.computeIfPresent(event.getUnforceChunk().getTicket(), (ticket, count) -> count > 1 ? count - 1 : null);
+                break;
+            case TICK:
+                for (PlayerPosition moved : event.getTick().getMovedList()) {
+                    players.put(moved.getPlayer(), key(moved.getChunk()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void reset(TraceHeader header) {
+        dimension = header.getDimension();
+        worldName = header.getWorldName();
+        spawnChunk = header.getSpawnChunk();
+        keepsSpawnLoaded = header.getKeepsSpawnLoaded();
+        viewDistance = header.getViewDistance();
+
+        loadedChunks.clear();
+        for (ChunkCoord chunk : header.getLoadedChunksList()) {
+            loadedChunks.add(key(chunk));
+        }
+        tickets.clear();
+        for (Ticket ticket : header.getTicketsList()) {
+            tickets.merge(ticket, 1, Integer::sum);
+        }
+        players.clear();
+        for (PlayerPosition player : header.getPlayersList()) {
+            players.put(player.getPlayer(), key(player.getChunk()));
+        }
+    }
+
+    /*
+     * A header that brings a reader to this same state.
+     */
+    public TraceHeader toHeader(long startTimeMillis) {
+        TraceHeader.Builder header = TraceHeader.newBuilder()
+                .setDimension(dimension)
+                .setWorldName(worldName)
+                .setStartTimeMillis(startTimeMillis)
+                .setSpawnChunk(spawnChunk)
+                .setKeepsSpawnLoaded(keepsSpawnLoaded)
+                .setViewDistance(viewDistance);
+        loadedChunks.forEach(chunk -> header.addLoadedChunks(coord(chunk)));
+        tickets.forEach((ticket, count) -> {
+            for (int i = 0; i < count; i++) {
+                header.addTickets(ticket);
+            }
+        });
+        players.forEach((player, chunk) -> header.addPlayers(PlayerPosition.newBuilder()
+                .setPlayer(player)
+                .setChunk(coord(chunk))));
+        return header.build();
+    }
+
+    public static long key(ChunkCoord chunk) {
+        return ChunkKeys.of(chunk.getX(), chunk.getZ());
+    }
+
+    public static ChunkCoord coord(long chunk) {
+        return ChunkCoord.newBuilder().setX(ChunkKeys.x(chunk)).setZ(ChunkKeys.z(chunk)).build();
+    }
+
+    public static ChunkCoord coord(int x, int z) {
+        return ChunkCoord.newBuilder().setX(x).setZ(z).build();
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public long getSpawnChunk() {
+        return key(spawnChunk);
+    }
+
+    public boolean keepsSpawnLoaded() {
+        return keepsSpawnLoaded;
+    }
+
+    public int getViewDistance() {
+        return viewDistance;
+    }
+
+    public LongHashSet getLoadedChunks() {
+        return loadedChunks;
+    }
+
+    /*
+     * Each chunk with at least one ticket on it, as a chunk key.
+     */
+    public LongHashSet getTicketChunks() {
+        LongHashSet chunks = new LongHashSet();
+        for (Ticket ticket : tickets.keySet()) {
+            chunks.add(key(ticket.getChunk()));
+        }
+        return chunks;
+    }
+
+    public Map<String, Long> getPlayers() {
+        return players;
+    }
+}
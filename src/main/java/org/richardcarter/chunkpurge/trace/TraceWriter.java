@@ -0,0 +1,178 @@
+package org.richardcarter.chunkpurge.trace;
+
+import com.google.common.io.CountingOutputStream;
+import org.richardcarter.chunkpurge.ChunkPurgeMod;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.util.SpscRingBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Takes recorded events off the TraceRecorder's buffer and writes them out on its own thread, one file per
+ * dimension at a time. Once a file reaches maxFileBytes the next event starts a new one, beginning with a header
+ * built from the events written so far, and only the newest maxFiles files of each dimension are kept.
+ */
+class TraceWriter implements Runnable {
+    static final class Entry {
+        final int dimension;
+        final TraceEvent event;
+
+        Entry(int dimension, TraceEvent event) {
+            this.dimension = dimension;
+            this.event = event;
+        }
+    }
+
+    private static class DimensionFile {
+        final TraceState state = new TraceState();
+        CountingOutputStream out;
+        boolean failed;
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final SpscRingBuffer<Entry> buffer;
+    private final File directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final Map<Integer, DimensionFile> files = new HashMap<>();
+    private volatile boolean running = true;
+
+    TraceWriter(SpscRingBuffer<Entry> buffer, File directory, long maxFileBytes, int maxFiles) {
+        this.buffer = buffer;
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /*
+     * Write out whatever is still buffered, then finish.
+     */
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        boolean unflushed = false;
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry != null) {
+                write(entry);
+                unflushed = true;
+            } else if (!running) {
+                break;
+            } else {
+                if (unflushed) {
+                    flushAll();
+                    unflushed = false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeAll();
+    }
+
+    private void write(Entry entry) {
+        DimensionFile file = files.computeIfAbsent(entry.dimension, d -> new DimensionFile());
+        if (file.failed) {
+            return;
+        }
+        boolean header = entry.event.getEventCase() == TraceEvent.EventCase.HEADER;
+        try {
+            boolean full = file.out == null || file.out.getCount() >= maxFileBytes;
+            if (full && !header) {
+                // the new file's header is the state before the event, which follows it
+                rotate(entry.dimension, file, entry.event.getWorldTime());
+            }
+            file.state.apply(entry.event);
+            if (full && header) {
+                // the new file's header says the same
+                rotate(entry.dimension, file, entry.event.getWorldTime());
+                return;
+            }
+            entry.event.writeDelimitedTo(file.out);
+        } catch (IOException e) {
+            ChunkPurgeMod.log.warn("Could not write chunk trace of dim " + entry.dimension + ", not recording it any more", e);
+            file.failed = true;
+            close(file);
+        }
+    }
+
+    private void rotate(int dimension, DimensionFile file, long worldTime) throws IOException {
+        close(file);
+        File dimensionDirectory = new File(directory, "DIM" + dimension);
+        if (!dimensionDirectory.isDirectory() && !dimensionDirectory.mkdirs()) {
+            throw new IOException("Could not create " + dimensionDirectory);
+        }
+        long now = System.currentTimeMillis();
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(now)) + ".trace";
+        file.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dimensionDirectory, name))));
+
+        TraceEvent header = TraceEvent.newBuilder()
+                .setWorldTime(worldTime)
+                .setHeader(file.state.toHeader(now))
+                .build();
+        header.writeDelimitedTo(file.out);
+
+        deleteOldFiles(dimensionDirectory);
+    }
+
+    private void deleteOldFiles(File dimensionDirectory) {
+        File[] traces = dimensionDirectory.listFiles((dir, name) -> name.endsWith(".trace"));
+        if (traces == null || traces.length <= maxFiles) {
+            return;
+        }
+        // the names sort by the time they were started
+        Arrays.sort(traces);
+        for (int i = 0; i < traces.length - maxFiles; i++) {
+            if (!traces[i].delete()) {
+                ChunkPurgeMod.log.warn("Could not delete old chunk trace " + traces[i]);
+            }
+        }
+    }
+
+    private void flushAll() {
+        for (Map.Entry<Integer, DimensionFile> entry : files.entrySet()) {
+            DimensionFile file = entry.getValue();
+            if (file.out == null) {
+                continue;
+            }
+            try {
+                file.out.flush();
+            } catch (IOException e) {
+                ChunkPurgeMod.log.warn("Could not write chunk trace of dim " + entry.getKey() + ", not recording it any more", e);
+                file.failed = true;
+                close(file);
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (DimensionFile file : files.values()) {
+            close(file);
+        }
+    }
+
+    private void close(DimensionFile file) {
+        if (file.out == null) {
+            return;
+        }
+        try {
+            file.out.close();
+        } catch (IOException e) {
+            ChunkPurgeMod.log.warn("Could not close chunk trace", e);
+        }
+        file.out = null;
+    }
+}
@@ -0,0 +1,49 @@
+package org.richardcarter.chunkpurge.util;
+
+/*
+ * Helpers for chunk coordinates packed into a single long, using the same encoding as ChunkPos.asLong:
+ * the low 32 bits hold x and the high 32 bits hold z.
+ *
+ * Kept free of Minecraft classes so the reachability code can run outside of a server.
+ */
+public final class ChunkKeys {
+    private ChunkKeys() {
+    }
+
+    public static long of(int x, int z) {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
+
+    /*
+     * The chunk holding the block at blockX, blockZ.
+     */
+    public static long ofBlock(int blockX, int blockZ) {
+        return of(blockX >> 4, blockZ >> 4);
+    }
+
+    public static int x(long key) {
+        return (int) key;
+    }
+
+    public static int z(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /*
+     * The region file (r.<x>.<z>.mca, 32 by 32 chunks) the chunk is saved to, as a key of region coordinates.
+     */
+    public static long region(long key) {
+        return of(x(key) >> 5, z(key) >> 5);
+    }
+
+    /*
+     * The chunk's entry in the header of its region file, 0 to 1023.
+     */
+    public static int regionIndex(long key) {
+        return (x(key) & 31) + (z(key) & 31) * 32;
+    }
+
+    public static String toString(long key) {
+        return "[" + x(key) + ", " + z(key) + "]";
+    }
+}
@@ -0,0 +1,196 @@
+package org.richardcarter.chunkpurge.util;
+
+import java.util.Arrays;
+
+/*
+ * An open addressing (linear probing) map from primitive long to primitive int, the map counterpart of
+ * LongHashSet. get() returns the configured missing value for absent keys rather than boxing a null.
+ */
+public class LongIntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    private final int missingValue;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private boolean containsZero;
+    private int zeroValue;
+
+    public LongIntHashMap(int missingValue) {
+        this(DEFAULT_CAPACITY, missingValue);
+    }
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        long needed = (long) Math.ceil(Math.max(expectedSize, DEFAULT_CAPACITY) / LOAD_FACTOR);
+        int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+        allocate(capacity < needed ? capacity << 1 : capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        for (int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0 || k == key) {
+                return i;
+            }
+        }
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        return keys[slot(key)] != 0;
+    }
+
+    public int get(long key) {
+        if (key == 0) {
+            return containsZero ? zeroValue : missingValue;
+        }
+        int i = slot(key);
+        return keys[i] != 0 ? values[i] : missingValue;
+    }
+
+    /*
+     * Returns the previous value, or the missing value if there was none.
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            int previous = containsZero ? zeroValue : missingValue;
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] != 0) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /*
+     * Adds delta to the value for key (treating an absent key as 0) and returns the new value.
+     */
+    public int addTo(long key, int delta) {
+        int value = (containsKey(key) ? get(key) : 0) + delta;
+        put(key, value);
+        return value;
+    }
+
+    /*
+     * Returns the removed value, or the missing value if there was none.
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return missingValue;
+            }
+            containsZero = false;
+            size--;
+            return zeroValue;
+        }
+        int i = slot(key);
+        if (keys[i] == 0) {
+            return missingValue;
+        }
+        int previous = values[i];
+        shiftKeys(i);
+        size--;
+        return previous;
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        for (; ; ) {
+            pos = ((last = pos) + 1) & mask;
+            long k;
+            for (; ; ) {
+                if ((k = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int slot = LongHashSet.hash(k) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = LongHashSet.hash(k) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    public void forEach(LongIntConsumer action) {
+        if (containsZero) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+}
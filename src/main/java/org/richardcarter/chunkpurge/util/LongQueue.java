@@ -0,0 +1,69 @@
+package org.richardcarter.chunkpurge.util;
+
+import java.util.NoSuchElementException;
+
+/*
+ * A growable FIFO ring buffer of primitive longs.
+ */
+public class LongQueue {
+    private long[] elements;
+    private int head;
+    private int tail;
+    private int size;
+
+    public LongQueue() {
+        this(64);
+    }
+
+    public LongQueue(int initialCapacity) {
+        elements = new long[Math.max(Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1, 2)];
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[tail] = value;
+        tail = (tail + 1) & (elements.length - 1);
+        size++;
+    }
+
+    public long remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public long peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return elements[head];
+    }
+
+    private void grow() {
+        long[] newElements = new long[elements.length << 1];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, newElements, 0, firstPart);
+        System.arraycopy(elements, 0, newElements, firstPart, head);
+        head = 0;
+        tail = elements.length;
+        elements = newElements;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = tail = size = 0;
+    }
+}
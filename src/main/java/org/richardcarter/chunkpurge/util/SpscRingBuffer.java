@@ -0,0 +1,63 @@
+package org.richardcarter.chunkpurge.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A bounded, lock-free queue for exactly one producer thread and one consumer thread. offer never blocks or
+ * allocates: when the buffer is full it just returns false, and it's up to the producer what to do about that.
+ */
+public class SpscRingBuffer<T> {
+    private final Object[] buffer;
+    private final int mask;
+    // the next slot to read, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // the next slot to write, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    /*
+     * capacity is rounded up to a power of two.
+     */
+    public SpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    /*
+     * Producer thread only. Returns false, leaving the buffer as it was, if it is full.
+     */
+    public boolean offer(T value) {
+        long t = tail.get();
+        if (t - head.get() == buffer.length) {
+            return false;
+        }
+        buffer[(int) t & mask] = value;
+        // lazySet publishes the slot written above before the new tail, without a full fence
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /*
+     * Consumer thread only. Returns null if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int i = (int) h & mask;
+        T value = (T) buffer[i];
+        buffer[i] = null;
+        head.lazySet(h + 1);
+        return value;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,90 @@
+package org.richardcarter.chunkpurge;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PurgeSchedulerTest {
+    private boolean adaptive;
+    private int minInterval;
+    private int maxInterval;
+
+    @Before
+    public void setUp() {
+        adaptive = ChunkPurgeConfig.adaptivePurgeInterval;
+        minInterval = ChunkPurgeConfig.autoChunkPurgeMinInterval;
+        maxInterval = ChunkPurgeConfig.autoChunkPurgeInterval;
+        ChunkPurgeConfig.adaptivePurgeInterval = true;
+        ChunkPurgeConfig.autoChunkPurgeMinInterval = 100;
+        ChunkPurgeConfig.autoChunkPurgeInterval = 800;
+    }
+
+    @After
+    public void tearDown() {
+        ChunkPurgeConfig.adaptivePurgeInterval = adaptive;
+        ChunkPurgeConfig.autoChunkPurgeMinInterval = minInterval;
+        ChunkPurgeConfig.autoChunkPurgeInterval = maxInterval;
+    }
+
+    @Test
+    public void fixedIntervalWhenNotAdaptive() {
+        ChunkPurgeConfig.adaptivePurgeInterval = false;
+        PurgeScheduler scheduler = new PurgeScheduler();
+        assertEquals(800, ticksUntilDue(scheduler, 1000, 0));
+        scheduler.scanFinished(1000, 900);
+        // neither orphans nor growth change anything
+        assertEquals(800, ticksUntilDue(scheduler, 100_000, 0));
+    }
+
+    @Test
+    public void speedsUpWhileFindingOrphansAndBacksOffWhenNot() {
+        PurgeScheduler scheduler = new PurgeScheduler();
+        assertEquals(800, ticksUntilDue(scheduler, 1000, 0));
+
+        scheduler.scanFinished(1000, 500);
+        assertEquals(400, ticksUntilDue(scheduler, 500, 0));
+        scheduler.scanFinished(1000, 500);
+        scheduler.scanFinished(1000, 500);
+        scheduler.scanFinished(1000, 500);
+        assertEquals(100, scheduler.getInterval());
+
+        // a few orphans keep the pace
+        scheduler.scanFinished(1000, 10);
+        assertEquals(100, scheduler.getInterval());
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.scanFinished(1000, 0);
+        }
+        assertEquals(800, scheduler.getInterval());
+    }
+
+    @Test
+    public void growthBringsPurgeForward() {
+        PurgeScheduler scheduler = new PurgeScheduler();
+        ticksUntilDue(scheduler, 1000, 0);
+        scheduler.scanFinished(1000, 0);
+        // not before the shortest interval, however fast chunks pile up
+        assertEquals(100, ticksUntilDue(scheduler, 5000, 0));
+        // 5000 loaded now; 1000 more is less than a quarter
+        assertEquals(800, ticksUntilDue(scheduler, 6000, 0));
+    }
+
+    @Test
+    public void busyServerWaitsForLongestInterval() {
+        PurgeScheduler scheduler = new PurgeScheduler();
+        ticksUntilDue(scheduler, 1000, 0);
+        scheduler.scanFinished(1000, 1000);
+        assertEquals(800, ticksUntilDue(scheduler, 50_000, PurgeScheduler.BUSY_TICK_MILLIS));
+    }
+
+    private static int ticksUntilDue(PurgeScheduler scheduler, int loaded, double meanTickMillis) {
+        for (int ticks = 1; ticks <= 10_000; ticks++) {
+            if (scheduler.tick(loaded, meanTickMillis)) {
+                return ticks;
+            }
+        }
+        return -1;
+    }
+}
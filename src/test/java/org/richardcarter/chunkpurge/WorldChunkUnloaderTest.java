@@ -12,6 +12,13 @@ import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 import net.minecraft.util.math.ChunkPos;
 import org.junit.Test;
+import org.richardcarter.chunkpurge.reachability.AnchorType;
+import org.richardcarter.chunkpurge.reachability.Anchors;
+import org.richardcarter.chunkpurge.reachability.MultiSourceFloodFill;
+import org.richardcarter.chunkpurge.reachability.Reachability;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongQueue;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -20,6 +27,7 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -88,6 +96,197 @@ public class WorldChunkUnloaderTest {
         testWithStrings(loaded, new ChunkPos(3, 3), 10, expected);
     }
 
+    @Test
+    public void multiSourceFloodFill_singleAnchorMatchesGroupedChunksFinder() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            LongHashSet loadedChunks = makeRandomChunks(random, 24, 0.6);
+            long seed = ChunkKeys.of(random.nextInt(24), random.nextInt(24));
+            int radius = random.nextInt(8);
+
+            Anchors anchors = new Anchors();
+            anchors.add(seed, radius, AnchorType.TICKET);
+            Reachability reachability = MultiSourceFloodFill.find(loadedChunks, anchors);
+
+            LongHashSet grouped = WorldChunkUnloader.groupedChunksFinder(loadedChunks, seed, radius, new LongHashSet(), new LongQueue());
+            assertEquals(grouped.size(), reachability.size());
+            grouped.forEach(k -> assertTrue(reachability.isReached(k)));
+            assertEquals(grouped.size(), reachability.getCount(AnchorType.TICKET));
+        }
+    }
+
+    @Test
+    public void multiSourceFloodFill_coversEveryAnchor() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            LongHashSet loadedChunks = makeRandomChunks(random, 32, 0.6);
+            Anchors anchors = new Anchors();
+            for (int a = random.nextInt(10); a >= 0; a--) {
+                anchors.add(ChunkKeys.of(random.nextInt(32), random.nextInt(32)), random.nextInt(6),
+                        AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+            }
+            Reachability reachability = MultiSourceFloodFill.find(loadedChunks, anchors);
+
+            // everything a single anchor would keep is still kept
+            for (int a = 0; a < anchors.size(); a++) {
+                WorldChunkUnloader.groupedChunksFinder(loadedChunks, anchors.getKey(a), anchors.getRadius(a), new LongHashSet(), new LongQueue())
+                        .forEach(k -> assertTrue(reachability.isReached(k)));
+            }
+
+            // and nothing outside of the anchors' radius limits is
+            reachability.forEachReached((k, owner) -> {
+                assertTrue(loadedChunks.contains(k));
+                assertTrue(anchors.inRange(owner, k));
+            });
+
+            int total = 0;
+            for (AnchorType type : AnchorType.values()) {
+                total += reachability.getCount(type);
+            }
+            assertEquals(reachability.size(), total);
+        }
+    }
+
+    @Test
+    public void multiSourceFloodFill_pathThroughAnotherAnchorsSquare() {
+        // the ticket at (4, 0) isn't loaded itself, but its square still lets the fill from (0, 0) walk around
+        // the corner and back into the first ticket's square
+        String loaded = newlines(
+                "xxxx",
+                "   x",
+                "  xx"
+        );
+        Set<ChunkPos> loadedChunks = makeSetFromString(loaded, 0, 0);
+        LongHashSet loadedKeys = new LongHashSet();
+        loadedChunks.forEach(c -> loadedKeys.add(ChunkPos.asLong(c.x, c.z)));
+
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(0, 0), 2, AnchorType.TICKET);
+        anchors.add(ChunkKeys.of(4, 0), 2, AnchorType.TICKET);
+        Reachability reachability = MultiSourceFloodFill.find(loadedKeys, anchors);
+        assertEquals(loadedChunks.size(), reachability.size());
+        assertEquals(loadedChunks.size(), reachability.getCount(AnchorType.TICKET));
+
+        // one fill per anchor stops at the edge of the first square
+        Set<ChunkPos> grouped = WorldChunkUnloader.groupedChunksFinder(loadedChunks, new ChunkPos(0, 0), 2);
+        assertChunkSetsEqual(makeSetFromString("xxx", 0, 0), grouped, 0, 0);
+    }
+
+    @Test
+    public void multiSourceFloodFill_unlimitedAnchorOnlyKeepsItsOwnArea() {
+        LongHashSet loadedKeys = new LongHashSet();
+        for (int x = 0; x < 10; x++) {
+            for (int z = 0; z < 10; z++) {
+                loadedKeys.add(ChunkKeys.of(x, z));
+            }
+        }
+        // a separate area, not connected to the first
+        for (int x = 20; x < 23; x++) {
+            loadedKeys.add(ChunkKeys.of(x, 0));
+        }
+
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(5, 5), 1, AnchorType.PLAYER);
+        anchors.add(ChunkKeys.of(20, 0), 0, AnchorType.SPAWN);
+        Reachability reachability = MultiSourceFloodFill.find(loadedKeys, anchors);
+        assertEquals(12, reachability.size());
+        assertEquals(9, reachability.getCount(AnchorType.PLAYER));
+        assertEquals(3, reachability.getCount(AnchorType.SPAWN));
+    }
+
+    @Test
+    public void multiSourceFloodFill_unlimitedAnchorReachesPastALimitedOne() {
+        // the limited anchor's fill gets to the chunks next to the unlimited one first
+        LongHashSet loadedKeys = new LongHashSet();
+        for (int x = 0; x <= 20; x++) {
+            loadedKeys.add(ChunkKeys.of(x, 0));
+        }
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(1, 0), 2, AnchorType.PLAYER);
+        anchors.add(ChunkKeys.of(0, 0), 0, AnchorType.TICKET);
+        anchors.add(ChunkKeys.of(1, 0), 0, AnchorType.SPAWN);
+
+        Reachability reachability = MultiSourceFloodFill.find(loadedKeys, anchors);
+        assertEquals(21, reachability.size());
+        assertEquals(21, reachability.getCount(AnchorType.PLAYER) + reachability.getCount(AnchorType.TICKET)
+                + reachability.getCount(AnchorType.SPAWN));
+    }
+
+    @Test
+    public void multiSourceFloodFill_matchesReference() {
+        Random random = new Random(31);
+        for (int i = 0; i < 300; i++) {
+            LongHashSet loadedChunks = makeRandomChunks(random, 32, 0.55);
+            Anchors anchors = new Anchors();
+            for (int a = random.nextInt(6); a >= 0; a--) {
+                anchors.add(ChunkKeys.of(random.nextInt(32), random.nextInt(32)), random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(6),
+                        AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+            }
+            Reachability reachability = MultiSourceFloodFill.find(loadedChunks, anchors);
+            LongHashSet expected = referenceReached(loadedChunks, anchors);
+
+            assertEquals("round " + i, expected.size(), reachability.size());
+            expected.forEach(k -> assertTrue(reachability.isReached(k)));
+        }
+    }
+
+    /*
+     * The chunks connected to an anchor through chunks that are either within a limited anchor's square or connected
+     * to an unlimited anchor at all, worked out the slow way.
+     */
+    private LongHashSet referenceReached(LongHashSet loadedChunks, Anchors anchors) {
+        LongHashSet allowed = new LongHashSet();
+        loadedChunks.forEach(k -> {
+            for (int a = 0; a < anchors.size(); a++) {
+                if (anchors.getRadius(a) > 0 && anchors.inRange(a, k)) {
+                    allowed.add(k);
+                }
+            }
+        });
+        for (int a = 0; a < anchors.size(); a++) {
+            if (anchors.getRadius(a) <= 0 && loadedChunks.contains(anchors.getKey(a))) {
+                flood(anchors.getKey(a), loadedChunks).forEach(allowed::add);
+            }
+        }
+        LongHashSet reached = new LongHashSet();
+        for (int a = 0; a < anchors.size(); a++) {
+            if (allowed.contains(anchors.getKey(a))) {
+                flood(anchors.getKey(a), allowed).forEach(reached::add);
+            }
+        }
+        return reached;
+    }
+
+    private LongHashSet flood(long start, LongHashSet within) {
+        LongHashSet seen = new LongHashSet();
+        LongQueue queue = new LongQueue();
+        seen.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            long k = queue.remove();
+            int x = ChunkKeys.x(k);
+            int z = ChunkKeys.z(k);
+            for (long n : new long[]{ChunkKeys.of(x + 1, z), ChunkKeys.of(x - 1, z), ChunkKeys.of(x, z + 1), ChunkKeys.of(x, z - 1)}) {
+                if (within.contains(n) && seen.add(n)) {
+                    queue.add(n);
+                }
+            }
+        }
+        return seen;
+    }
+
+    private LongHashSet makeRandomChunks(Random random, int size, double density) {
+        LongHashSet chunks = new LongHashSet();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                if (random.nextDouble() < density) {
+                    chunks.add(ChunkKeys.of(x, z));
+                }
+            }
+        }
+        return chunks;
+    }
+
     private String newlines(String... lines) {
         return Joiner.on('\n').join(lines);
     }
@@ -0,0 +1,49 @@
+package org.richardcarter.chunkpurge.jmx;
+
+import org.junit.After;
+import org.junit.Test;
+import org.richardcarter.chunkpurge.metrics.DimensionMetrics;
+import org.richardcarter.chunkpurge.metrics.PurgeMetrics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkPurgeDimensionTest {
+
+    @After
+    public void cleanUp() {
+        ChunkPurgeDimension.unregisterAll();
+        PurgeMetrics.clear();
+    }
+
+    @Test
+    public void attributesComeFromPublishedStatus() throws Exception {
+        DimensionMetrics metrics = PurgeMetrics.get(-1);
+        AtomicBoolean requested = new AtomicBoolean();
+        ChunkPurgeDimension.register(metrics, () -> requested.set(true));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.richardcarter.chunkpurge:type=Dimension,dimension=-1");
+
+        metrics.scanFinished(2_000_000, 500_000, 100, 30, 20);
+        // nothing is visible until the next sample publishes it
+        assertEquals(0, server.getAttribute(name, "OrphanedChunks"));
+
+        metrics.tick(120, 25, 7, true);
+        assertEquals(120, server.getAttribute(name, "LoadedChunks"));
+        assertEquals(70, server.getAttribute(name, "AnchoredChunks"));
+        assertEquals(30, server.getAttribute(name, "OrphanedChunks"));
+        assertEquals(20, server.getAttribute(name, "QueuedChunks"));
+        assertEquals(2.0, server.getAttribute(name, "LastScanMillis"));
+        assertEquals(25, server.getAttribute(name, "UnloadQueueDepth"));
+        assertEquals(7, server.getAttribute(name, "PendingWorldUnloads"));
+        assertEquals(true, server.getAttribute(name, "SavingDisabled"));
+
+        server.invoke(name, "purgeNow", new Object[0], new String[0]);
+        assertTrue(requested.get());
+    }
+}
@@ -0,0 +1,95 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadCausesTest {
+
+    private static StackTraceElement frame(String className) {
+        return frame(className, "method");
+    }
+
+    private static StackTraceElement frame(String className, String methodName) {
+        return new StackTraceElement(className, methodName, null, -1);
+    }
+
+    @Test
+    public void sourceSkipsLoadingMachinery() {
+        StackTraceElement[] stack = {
+                frame("java.lang.Thread"),
+                frame("org.richardcarter.chunkpurge.ChunkEventHandler"),
+                frame("ASMEventHandler_4_ChunkEventHandler_onChunkLoad_Load"),
+                frame("net.minecraftforge.fml.common.eventhandler.EventBus"),
+                frame("net.minecraft.world.chunk.Chunk"),
+                frame("net.minecraft.world.gen.ChunkProviderServer"),
+                frame("net.minecraft.world.World"),
+                frame("com.example.quarry.TileQuarry$Miner"),
+                frame("net.minecraft.world.WorldServer"),
+        };
+        assertEquals("com.example.quarry.TileQuarry", LoadCauses.sourceOf(stack));
+        assertEquals(LoadCauses.UNKNOWN, LoadCauses.sourceOf(new StackTraceElement[]{frame("java.lang.Thread")}));
+    }
+
+    @Test
+    public void sourceOfALoadFromDiskIsWhoAskedForIt() {
+        // how Forge reads a chunk that is on disk when asked for it right away
+        StackTraceElement[] stack = {
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("org.richardcarter.chunkpurge.ChunkEventHandler", "onChunkLoad"),
+                frame("ASMEventHandler_4_ChunkEventHandler_onChunkLoad_Load", "invoke"),
+                frame("net.minecraftforge.fml.common.eventhandler.EventBus", "post"),
+                frame("net.minecraft.world.chunk.Chunk", "onLoad"),
+                frame("net.minecraftforge.common.chunkio.ChunkIOProvider", "syncCallback"),
+                frame("net.minecraftforge.common.chunkio.ChunkIOExecutor", "syncChunkLoad"),
+                frame("net.minecraft.world.gen.ChunkProviderServer", "loadChunk"),
+                frame("net.minecraft.world.gen.ChunkProviderServer", "provideChunk"),
+                frame("net.minecraft.world.World", "getChunk"),
+                frame("com.example.quarry.TileQuarry", "update"),
+                frame("net.minecraft.world.World", "updateEntities"),
+                frame("net.minecraft.world.WorldServer", "updateEntities"),
+                frame("net.minecraft.server.MinecraftServer", "updateTimeLightAndEntities"),
+        };
+        assertEquals("com.example.quarry.TileQuarry", LoadCauses.sourceOf(stack));
+    }
+
+    @Test
+    public void sourceOfAnAsyncLoadIsTheLoader() {
+        StackTraceElement[] stack = {
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("org.richardcarter.chunkpurge.ChunkEventHandler", "onChunkLoad"),
+                frame("net.minecraftforge.fml.common.eventhandler.EventBus", "post"),
+                frame("net.minecraft.world.chunk.Chunk", "onLoad"),
+                frame("net.minecraftforge.common.chunkio.ChunkIOProvider", "syncCallback"),
+                frame("net.minecraftforge.common.chunkio.ChunkIOExecutor", "tick"),
+                frame("net.minecraft.server.MinecraftServer", "updateTimeLightAndEntities"),
+                frame("net.minecraft.server.MinecraftServer", "tick"),
+                frame("net.minecraft.server.MinecraftServer", "run"),
+                frame("java.lang.Thread", "run"),
+        };
+        assertEquals(LoadCauses.ASYNC_LOADER, LoadCauses.sourceOf(stack));
+    }
+
+    @Test
+    public void heavySourcesSurviveManyRareOnes() {
+        LoadCauses causes = new LoadCauses();
+        long quarryRegion = ChunkKeys.of(3, -2);
+        for (int i = 0; i < 10 * LoadCauses.SOURCES; i++) {
+            causes.record("quarry", i % 3 == 0 ? ChunkKeys.of(i, i) : quarryRegion);
+            causes.record("rare" + i, ChunkKeys.of(0, 0));
+        }
+
+        List<LoadCauses.Cause> top = causes.getTop(3);
+        assertEquals("quarry", top.get(0).getSource());
+        assertEquals(10 * LoadCauses.SOURCES, top.get(0).getLoads());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(quarryRegion, top.get(0).getTopRegion());
+        assertTrue(top.get(1).getLoads() <= top.get(0).getLoads());
+        assertEquals(20 * LoadCauses.SOURCES, causes.getSampled());
+        assertEquals(LoadCauses.SOURCES, causes.getTop(Integer.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,55 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollingHistogramTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        long previousBound = -1;
+        for (int bucket = 0; bucket < 400; bucket++) {
+            long bound = RollingHistogram.upperBoundOf(bucket);
+            assertEquals(bucket, RollingHistogram.bucketOf(previousBound + 1));
+            assertEquals(bucket, RollingHistogram.bucketOf(bound));
+            previousBound = bound;
+        }
+    }
+
+    @Test
+    public void percentilesWithinAnEighth() {
+        RollingHistogram histogram = new RollingHistogram(MINUTE, 5);
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000, 0);
+        }
+        assertEquals(1000, histogram.getCount(0));
+        assertEquals(1_000_000, histogram.getMax(0));
+        assertWithinAnEighth(500_000, histogram.getPercentile(0.5, 0));
+        assertWithinAnEighth(990_000, histogram.getPercentile(0.99, 0));
+        assertEquals(1_000_000, histogram.getPercentile(1, 0));
+    }
+
+    @Test
+    public void oldWindowsRollOff() {
+        RollingHistogram histogram = new RollingHistogram(MINUTE, 3);
+        histogram.record(100, 0);
+        histogram.record(200, MINUTE);
+        histogram.record(300, 2 * MINUTE);
+        assertEquals(3, histogram.getCount(2 * MINUTE));
+
+        assertEquals(2, histogram.getCount(3 * MINUTE));
+        assertEquals(300, histogram.getMax(3 * MINUTE));
+
+        assertEquals(0, histogram.getCount(10 * MINUTE));
+        assertEquals(0, histogram.getPercentile(0.5, 10 * MINUTE));
+    }
+
+    private static void assertWithinAnEighth(long expected, long actual) {
+        assertTrue(actual + " not near " + expected, Math.abs(actual - expected) <= expected / 8);
+    }
+}
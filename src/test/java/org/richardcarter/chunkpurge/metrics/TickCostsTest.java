@@ -0,0 +1,42 @@
+package org.richardcarter.chunkpurge.metrics;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TickCostsTest {
+
+    @Test
+    public void costsArePerTickAndPerChunk() {
+        TickCosts costs = new TickCosts(20, 100);
+        long chunk = ChunkKeys.of(3, -4);
+        costs.add(chunk, 20_000);
+        costs.add(chunk, 40_000);
+        // too little to count per tick
+        costs.add(ChunkKeys.of(5, 5), 10);
+
+        assertEquals(3_000, costs.getNanosPerTick(chunk));
+        assertEquals(0, costs.getNanosPerTick(ChunkKeys.of(5, 5)));
+        assertEquals(1, costs.getChunkCount());
+        assertEquals(3_000, costs.getTotalNanosPerTick());
+    }
+
+    @Test
+    public void regionsAddUpTheirChunks() {
+        TickCosts costs = new TickCosts(1, 0);
+        costs.add(ChunkKeys.of(0, 0), 100);
+        costs.add(ChunkKeys.of(31, 31), 100);
+        costs.add(ChunkKeys.of(-1, 0), 150);
+        costs.add(ChunkKeys.of(64, 0), 50);
+
+        List<TickCosts.Region> regions = costs.getCostliestRegions(2);
+        assertEquals(2, regions.size());
+        assertEquals(ChunkKeys.of(0, 0), regions.get(0).getRegion());
+        assertEquals(200, regions.get(0).getNanosPerTick());
+        assertEquals(2, regions.get(0).getChunks());
+        assertEquals(ChunkKeys.of(-1, 0), regions.get(1).getRegion());
+    }
+}
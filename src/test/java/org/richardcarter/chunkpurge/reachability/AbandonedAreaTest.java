@@ -0,0 +1,49 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class AbandonedAreaTest {
+
+    private static LongHashSet square(int fromX, int fromZ, int side) {
+        LongHashSet chunks = new LongHashSet();
+        for (int x = fromX; x < fromX + side; x++) {
+            for (int z = fromZ; z < fromZ + side; z++) {
+                chunks.add(ChunkKeys.of(x, z));
+            }
+        }
+        return chunks;
+    }
+
+    @Test
+    public void findsTheAreaAroundTheChunkLeft() {
+        LongHashSet loaded = square(0, 0, 5);
+        // not connected to the area
+        loaded.add(ChunkKeys.of(10, 10));
+        LongHashSet anchored = new LongHashSet();
+        anchored.add(ChunkKeys.of(10, 10));
+
+        long[] area = AbandonedArea.find(ChunkKeys.of(2, 2), loaded::contains, anchored::contains, 100);
+        assertEquals(25, area.length);
+    }
+
+    @Test
+    public void keepsAreasWithAnAnchor() {
+        LongHashSet loaded = square(0, 0, 5);
+        LongHashSet anchored = new LongHashSet();
+        anchored.add(ChunkKeys.of(4, 4));
+
+        assertEquals(0, AbandonedArea.find(ChunkKeys.of(0, 0), loaded::contains, anchored::contains, 100).length);
+    }
+
+    @Test
+    public void givesUpOnLargeAreas() {
+        LongHashSet loaded = square(0, 0, 20);
+
+        assertEquals(0, AbandonedArea.find(ChunkKeys.of(0, 0), loaded::contains, chunk -> false, 100).length);
+        assertEquals(0, AbandonedArea.find(ChunkKeys.of(50, 50), loaded::contains, chunk -> false, 1000).length);
+    }
+}
@@ -0,0 +1,72 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnchorRegistryTest {
+
+    @Test
+    public void onlyMovesBetweenChunksCountAsChanges() {
+        AnchorRegistry registry = new AnchorRegistry();
+        registry.playerEntered(1, ChunkKeys.of(0, 0));
+        int generation = registry.getGeneration();
+
+        registry.playerEntered(1, ChunkKeys.of(0, 0));
+        assertEquals(generation, registry.getGeneration());
+        registry.playerLeft(2);
+        assertEquals(generation, registry.getGeneration());
+
+        registry.playerEntered(1, ChunkKeys.of(1, 0));
+        registry.playerEntered(2, ChunkKeys.of(5, 5));
+        assertNotEquals(generation, registry.getGeneration());
+        LongHashSet chunks = new LongHashSet();
+        registry.forEachPlayer(chunks::add);
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.contains(ChunkKeys.of(1, 0)));
+
+        registry.playerLeft(1);
+        assertEquals(1, registry.getPlayerCount());
+    }
+
+    @Test
+    public void readsTicketsOnlyAfterTheyChanged() {
+        AnchorRegistry registry = new AnchorRegistry();
+        AtomicInteger reads = new AtomicInteger();
+        long[] tickets = {ChunkKeys.of(3, 4)};
+
+        assertArrayEquals(tickets, registry.getTickets(() -> {
+            reads.incrementAndGet();
+            return tickets;
+        }));
+        registry.getTickets(() -> {
+            reads.incrementAndGet();
+            return tickets;
+        });
+        assertEquals(1, reads.get());
+
+        int generation = registry.getGeneration();
+        registry.ticketsChanged();
+        assertNotEquals(generation, registry.getGeneration());
+        assertEquals(0, registry.getTickets(() -> new long[0]).length);
+    }
+
+    @Test
+    public void indexCountsLoadedChanges() {
+        ReachabilityIndex index = new ReachabilityIndex();
+        index.chunkLoaded(ChunkKeys.of(0, 0));
+        int generation = index.getLoadedGeneration();
+        index.chunkLoaded(ChunkKeys.of(0, 0));
+        index.chunkUnloaded(ChunkKeys.of(9, 9));
+        assertEquals(generation, index.getLoadedGeneration());
+        index.chunkUnloaded(ChunkKeys.of(0, 0));
+        assertNotEquals(generation, index.getLoadedGeneration());
+    }
+}
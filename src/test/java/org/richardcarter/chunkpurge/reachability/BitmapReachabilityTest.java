@@ -0,0 +1,103 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapReachabilityTest {
+
+    @Test
+    public void reachesWhatTheFloodFillReaches() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            // around the origin, so tiles on both sides of the negative coordinates meet
+            int size = 20 + random.nextInt(100);
+            LongHashSet loaded = new LongHashSet();
+            for (int i = size * size * (4 + random.nextInt(6)) / 16; i > 0; i--) {
+                loaded.add(ChunkKeys.of(random.nextInt(size) - size / 2, random.nextInt(size) - size / 2));
+            }
+            Anchors anchors = new Anchors();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                // now and then an anchor without a radius limit
+                int radius = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(40);
+                anchors.add(ChunkKeys.of(random.nextInt(size) - size / 2, random.nextInt(size) - size / 2), radius,
+                        AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+            }
+            // and a strip well away from the rest with an anchor without a limit, which mustn't lift the limit of
+            // the others
+            int strip = 1 + random.nextInt(40);
+            for (int x = 0; x < strip; x++) {
+                loaded.add(ChunkKeys.of(1000 + x, 0));
+            }
+            anchors.add(ChunkKeys.of(1000 + random.nextInt(strip), 0), 0,
+                    AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+
+            Reachability expected = MultiSourceFloodFill.find(loaded, anchors);
+            BitmapReachability actual = BitmapReachability.find(loaded.toArray(), anchors);
+
+            String message = "round " + round;
+            assertEquals(message, loaded.size(), actual.getLoadedCount());
+            assertEquals(message, expected.size(), actual.getReachedCount());
+            int counted = 0;
+            for (AnchorType type : AnchorType.values()) {
+                counted += actual.getCount(type);
+            }
+            assertEquals(message, expected.size(), counted);
+            loaded.forEach(chunk -> {
+                assertEquals(message, expected.isReached(chunk), actual.isReached(chunk));
+                assertTrue(message, actual.isLoaded(chunk));
+            });
+        }
+    }
+
+    @Test
+    public void followsLongPathsAcrossRegions() {
+        // a spiral a chunk wide, through several regions, with the anchor at its end
+        LongHashSet loaded = new LongHashSet();
+        int x = 0;
+        int z = 0;
+        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        for (int leg = 0; leg < 40; leg++) {
+            int[] direction = directions[leg % 4];
+            for (int step = 0; step < 4 + leg * 2; step++) {
+                loaded.add(ChunkKeys.of(x, z));
+                x += direction[0];
+                z += direction[1];
+            }
+        }
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(0, 0), 0, AnchorType.TICKET);
+
+        BitmapReachability reachability = BitmapReachability.find(loaded.toArray(), anchors);
+        assertEquals(loaded.size(), reachability.getReachedCount());
+        assertEquals(loaded.size(), reachability.getCount(AnchorType.TICKET));
+        assertFalse(reachability.isLoaded(ChunkKeys.of(1, 1)));
+    }
+
+    @Test
+    public void enginesAgreeOnOrphans() {
+        Random random = new Random(4);
+        LongHashSet loaded = new LongHashSet();
+        for (int i = 0; i < 5000; i++) {
+            loaded.add(ChunkKeys.of(random.nextInt(120), random.nextInt(120)));
+        }
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(30, 30), 14, AnchorType.PLAYER);
+        anchors.add(ChunkKeys.of(90, 60), 5, AnchorType.TICKET);
+        PurgeSnapshot snapshot = new PurgeSnapshot(0, loaded.toArray(), anchors);
+
+        PurgeAnalysis floodFill = PurgeAnalysis.analyse(snapshot, ReachabilityEngine.FLOOD_FILL);
+        PurgeAnalysis bitmap = PurgeAnalysis.analyse(snapshot, ReachabilityEngine.BITMAP);
+        assertEquals(new LongHashSet(floodFill.getOrphans().getChunks()).size(), bitmap.getOrphans().getChunks().length);
+        LongHashSet orphans = new LongHashSet(floodFill.getOrphans().getChunks());
+        for (long orphan : bitmap.getOrphans().getChunks()) {
+            assertTrue(orphans.contains(orphan));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdleTrackerTest {
+    // two groups of orphans, far from the one anchor
+    private static final long[] STRIP = {ChunkKeys.of(0, 0), ChunkKeys.of(1, 0), ChunkKeys.of(2, 0)};
+    private static final long[] PAIR = {ChunkKeys.of(10, 0), ChunkKeys.of(11, 0)};
+
+    @Test
+    public void onlyChunksIdleLongEnoughAreQueued() {
+        IdleTracker idle = new IdleTracker();
+        idle.update(groups(STRIP), 0);
+        // one chunk of the pair was only orphaned later, which holds back that chunk alone
+        idle.update(groups(STRIP, new long[]{PAIR[0]}), 20);
+        idle.update(groups(STRIP, PAIR), 50);
+
+        OrphanGroups orphans = groups(STRIP, PAIR);
+        Anchors anchors = anchors();
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(orphans, anchors.distancesTo(orphans.getChunks()), anchors);
+        queue.retain(chunk -> idle.isIdle(chunk, 120, 100));
+
+        assertEquals(STRIP.length + 1, queue.size());
+        LongHashSet drained = new LongHashSet();
+        queue.drain(Integer.MAX_VALUE, drained::add);
+        assertEquals(STRIP.length + 1, drained.size());
+        for (long chunk : STRIP) {
+            assertTrue(drained.contains(chunk));
+        }
+        assertTrue(drained.contains(PAIR[0]));
+        assertFalse(drained.contains(PAIR[1]));
+    }
+
+    @Test
+    public void heldBackChunksStillConnectTheirGroup() {
+        IdleTracker idle = new IdleTracker();
+        idle.update(groups(STRIP, new long[]{PAIR[0]}), 0);
+        idle.update(groups(STRIP, PAIR), 50);
+
+        OrphanGroups orphans = groups(STRIP, PAIR);
+        Anchors anchors = anchors();
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(orphans, anchors.distancesTo(orphans.getChunks()), anchors);
+        queue.retain(chunk -> idle.isIdle(chunk, 120, 100));
+
+        // a player in range of the young chunk only reaches the old one through it
+        Anchors moved = new Anchors();
+        moved.add(ChunkKeys.of(100, 100), 1, AnchorType.PLAYER);
+        moved.add(ChunkKeys.of(13, 0), 2, AnchorType.PLAYER);
+        queue.anchorsChanged(moved);
+
+        LongHashSet drained = new LongHashSet();
+        queue.drain(Integer.MAX_VALUE, drained::add);
+        assertEquals(STRIP.length, drained.size());
+        assertFalse(drained.contains(PAIR[0]));
+    }
+
+    @Test
+    public void chunksAnchoredAgainStartOver() {
+        IdleTracker idle = new IdleTracker();
+        idle.update(groups(STRIP), 0);
+        idle.update(groups(PAIR), 100);
+        idle.update(groups(STRIP, PAIR), 150);
+
+        assertFalse(idle.isIdle(STRIP[0], 200, 100));
+        assertTrue(idle.isIdle(PAIR[0], 200, 100));
+    }
+
+    @Test
+    public void chunksAPlayerCameBackToStartOver() {
+        IdleTracker idle = new IdleTracker();
+        idle.update(groups(STRIP, PAIR), 0);
+        // a player passed by the pair between purges, and left again
+        idle.update(groups(STRIP, PAIR), new long[]{ChunkKeys.of(13, 0)}, 2, 150);
+
+        assertTrue(idle.isIdle(STRIP[0], 200, 100));
+        assertFalse(idle.isIdle(PAIR[1], 200, 100));
+        assertTrue(idle.isIdle(PAIR[1], 250, 100));
+        // only chunks within the radius count as visited
+        assertTrue(idle.isIdle(PAIR[0], 200, 100));
+    }
+
+    @Test
+    public void reloadsOnlyCountWithinTheWindow() {
+        IdleTracker idle = new IdleTracker();
+        long chunk = STRIP[0];
+
+        idle.handedOver(chunk, 0);
+        assertTrue(idle.chunkLoaded(chunk, 100));
+        idle.handedOver(chunk, 200);
+        assertFalse(idle.chunkLoaded(chunk, 201 + IdleTracker.RELOAD_WINDOW_TICKS));
+        assertEquals(1, idle.getReloads(chunk));
+        assertFalse(idle.isRepeatedlyReloaded(chunk));
+
+        idle.handedOver(chunk, 10000);
+        assertTrue(idle.chunkLoaded(chunk, 10010));
+        assertTrue(idle.isRepeatedlyReloaded(chunk));
+
+        // forgotten once it stays away long enough
+        idle.update(groups(), 10010 + IdleTracker.RELOAD_MEMORY_TICKS + 1);
+        assertFalse(idle.isRepeatedlyReloaded(chunk));
+    }
+
+    @Test
+    public void repeatedlyReloadedChunksWaitForTheirBudget() {
+        IdleTracker idle = new IdleTracker();
+        for (long chunk : PAIR) {
+            for (int i = 0; i < IdleTracker.REPEATED_RELOADS; i++) {
+                idle.handedOver(chunk, i * 10);
+                idle.chunkLoaded(chunk, i * 10 + 5);
+            }
+        }
+
+        OrphanGroups orphans = groups(STRIP, PAIR);
+        Anchors anchors = anchors();
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(orphans, anchors.distancesTo(orphans.getChunks()), anchors);
+
+        LongHashSet drained = new LongHashSet();
+        assertEquals(STRIP.length + 1, queue.drain(10, 0, 1, idle::isRepeatedlyReloaded, drained::add));
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.drain(10, 0, 1, idle::isRepeatedlyReloaded, drained::add));
+        assertTrue(queue.isEmpty());
+        assertEquals(STRIP.length + PAIR.length, drained.size());
+    }
+
+    private static Anchors anchors() {
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(100, 100), 1, AnchorType.PLAYER);
+        return anchors;
+    }
+
+    private static OrphanGroups groups(long[]... parts) {
+        LongHashSet orphans = new LongHashSet();
+        for (long[] part : parts) {
+            for (long chunk : part) {
+                orphans.add(chunk);
+            }
+        }
+        return OrphanGroups.find(orphans.toArray(), orphans.size(), orphans::contains);
+    }
+}
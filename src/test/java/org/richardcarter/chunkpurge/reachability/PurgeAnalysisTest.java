@@ -0,0 +1,256 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+import org.richardcarter.chunkpurge.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PurgeAnalysisTest {
+
+    @Test
+    public void orphansMatchFullScan() {
+        Random random = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            LongHashSet loaded = randomChunks(random);
+            Anchors anchors = randomAnchors(random, 4);
+
+            PurgeAnalysis analysis = PurgeAnalysis.analyse(new PurgeSnapshot(0, loaded.toArray(), anchors));
+            Reachability full = MultiSourceFloodFill.find(loaded, anchors);
+
+            assertEquals(loaded.size() - full.size(), analysis.getOrphans().getChunks().length);
+            for (long orphan : analysis.getOrphans().getChunks()) {
+                assertTrue(loaded.contains(orphan));
+                assertFalse(full.isReached(orphan));
+            }
+        }
+    }
+
+    @Test
+    public void queuedAfterChangesAreNotReachable() {
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            LongHashSet loaded = randomChunks(random);
+            Anchors anchors = randomAnchors(random, 4);
+            PurgeAnalysis analysis = PurgeAnalysis.analyse(new PurgeSnapshot(0, loaded.toArray(), anchors));
+
+            // what happens on the server thread while the analysis runs
+            LongHashSet loadedSince = new LongHashSet();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                long chunk = ChunkKeys.of(random.nextInt(40), random.nextInt(40));
+                if (random.nextBoolean()) {
+                    if (loaded.add(chunk)) {
+                        loadedSince.add(chunk);
+                    }
+                } else {
+                    loaded.remove(chunk);
+                }
+            }
+            Anchors currentAnchors = random.nextBoolean() ? anchors : randomAnchors(random, 4);
+
+            UnloadQueue queue = new UnloadQueue();
+            queue.replace(analysis.getOrphans(), analysis.getDistances(), anchors);
+            loadedSince.forEach(queue::chunkLoaded);
+            queue.anchorsChanged(currentAnchors);
+
+            Reachability now = MultiSourceFloodFill.find(loaded, currentAnchors);
+            String message = "round " + round;
+            queue.drain(Integer.MAX_VALUE, orphan -> {
+                assertFalse(message, now.isReached(orphan));
+                return true;
+            });
+        }
+    }
+
+    @Test
+    public void queueDrainsRegionsFarthestFirst() {
+        Random random = new Random(3);
+        LongHashSet loaded = randomChunks(random, 100);
+        Anchors anchors = randomAnchors(random, 2, 100);
+        PurgeAnalysis analysis = PurgeAnalysis.analyse(new PurgeSnapshot(0, loaded.toArray(), anchors));
+        long[] orphans = analysis.getOrphans().getChunks();
+
+        LongIntHashMap farthest = new LongIntHashMap(-1);
+        int[] distances = analysis.getDistances();
+        for (int i = 0; i < orphans.length; i++) {
+            long region = ChunkKeys.region(orphans[i]);
+            farthest.put(region, Math.max(farthest.get(region), distances[i]));
+        }
+        assertTrue(farthest.size() > 1);
+
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(analysis.getOrphans(), distances, anchors);
+        LongHashSet finished = new LongHashSet();
+        long[] current = {0};
+        int[] last = {Integer.MAX_VALUE, -1};
+        int drained = 0;
+        while (!queue.isEmpty()) {
+            drained += queue.drain(7, orphan -> {
+                long region = ChunkKeys.region(orphan);
+                if (region != current[0] || last[1] < 0) {
+                    // each region comes out in one go, farthest first, in the order of the region file
+                    assertTrue(finished.add(region));
+                    assertTrue(farthest.get(region) <= last[0]);
+                    last[0] = farthest.get(region);
+                    current[0] = region;
+                } else {
+                    assertTrue(ChunkKeys.regionIndex(orphan) > last[1]);
+                }
+                last[1] = ChunkKeys.regionIndex(orphan);
+                return true;
+            });
+        }
+        assertEquals(orphans.length, drained);
+        assertEquals(farthest.size(), finished.size());
+    }
+
+    @Test
+    public void queueStopsAtRegionLimit() {
+        Random random = new Random(8);
+        LongHashSet loaded = randomChunks(random, 100);
+        Anchors anchors = randomAnchors(random, 2, 100);
+        PurgeAnalysis analysis = PurgeAnalysis.analyse(new PurgeSnapshot(0, loaded.toArray(), anchors));
+
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(analysis.getOrphans(), analysis.getDistances(), anchors);
+        while (!queue.isEmpty()) {
+            LongHashSet regions = new LongHashSet();
+            int drained = queue.drain(Integer.MAX_VALUE, 2, Integer.MAX_VALUE, chunk -> false, chunk -> {
+                regions.add(ChunkKeys.region(chunk));
+                return true;
+            });
+            assertTrue(drained > 0);
+            assertTrue(regions.size() <= 2);
+        }
+    }
+
+    @Test
+    public void queueTakesAddedGroupsAlongside() {
+        Random random = new Random(9);
+        LongHashSet loaded = randomChunks(random, 60);
+        Anchors anchors = randomAnchors(random, 2, 60);
+        PurgeAnalysis analysis = PurgeAnalysis.analyse(new PurgeSnapshot(0, loaded.toArray(), anchors));
+
+        UnloadQueue queue = new UnloadQueue();
+        queue.replace(analysis.getOrphans(), analysis.getDistances(), anchors);
+        long[] area = {ChunkKeys.of(500, 500), ChunkKeys.of(501, 500)};
+        queue.add(area, new int[]{1000, 1000});
+        // already queued, so only counted once
+        queue.add(area, new int[]{1000, 1000});
+        assertEquals(analysis.getOrphans().getChunks().length + 2, queue.size());
+
+        // a chunk loading next to the added group drops it, and only it
+        queue.chunkLoaded(ChunkKeys.of(502, 500));
+        LongHashSet drained = new LongHashSet();
+        queue.drain(Integer.MAX_VALUE, drained::add);
+        assertEquals(analysis.getOrphans().getChunks().length, drained.size());
+        assertFalse(drained.contains(area[0]));
+    }
+
+    @Test
+    public void queueDrainsCostliestRegionsFirst() {
+        long far = ChunkKeys.of(100, 0);
+        long costly = ChunkKeys.of(0, 0);
+        // as costly together as the chunk above, but nearer
+        long[] split = {ChunkKeys.of(40, 0), ChunkKeys.of(41, 0)};
+
+        UnloadQueue queue = new UnloadQueue();
+        queue.add(new long[]{far}, new int[]{900}, new int[]{0});
+        queue.add(new long[]{costly}, new int[]{10}, new int[]{50});
+        queue.add(split, new int[]{5, 5}, new int[]{25, 25});
+
+        List<Long> drained = new ArrayList<>();
+        queue.drain(Integer.MAX_VALUE, drained::add);
+        assertEquals(4, drained.size());
+        assertEquals(costly, (long) drained.get(0));
+        assertEquals(far, (long) drained.get(3));
+    }
+
+    @Test
+    public void addedSinceIgnoresUnchangedAnchors() {
+        Anchors before = new Anchors();
+        before.add(ChunkKeys.of(0, 0), 5, AnchorType.PLAYER);
+        before.add(ChunkKeys.of(10, 10), 3, AnchorType.TICKET);
+
+        Anchors after = new Anchors();
+        after.add(ChunkKeys.of(0, 0), 5, AnchorType.PLAYER);
+        after.add(ChunkKeys.of(10, 10), 4, AnchorType.TICKET);
+        after.add(ChunkKeys.of(20, 0), 5, AnchorType.PLAYER);
+
+        Anchors added = after.addedSince(before);
+        assertEquals(2, added.size());
+        assertEquals(ChunkKeys.of(10, 10), added.getKey(0));
+        assertEquals(ChunkKeys.of(20, 0), added.getKey(1));
+        assertTrue(before.addedSince(after).isEmpty());
+    }
+
+    @Test
+    public void distancesMatchNearestAnchor() {
+        Random random = new Random(17);
+        for (int round = 0; round < 100; round++) {
+            // clustered and far flung anchors, some removed, and chunks inside and well outside them
+            int size = 10 + random.nextInt(2000);
+            Anchors anchors = new Anchors();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                int spread = random.nextBoolean() ? size : 20;
+                anchors.add(ChunkKeys.of(random.nextInt(spread) - spread / 2, random.nextInt(spread) - spread / 2),
+                        random.nextInt(10), AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+            }
+            for (int i = 0; i < anchors.size(); i++) {
+                if (random.nextInt(5) == 0) {
+                    anchors.remove(i);
+                }
+            }
+            long[] chunks = new long[200];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = ChunkKeys.of(random.nextInt(3 * size) - 3 * size / 2,
+                        random.nextInt(3 * size) - 3 * size / 2);
+            }
+
+            int[] distances = anchors.distancesTo(chunks);
+            for (int i = 0; i < chunks.length; i++) {
+                int nearest = Integer.MAX_VALUE;
+                for (int anchor = 0; anchor < anchors.size(); anchor++) {
+                    if (!anchors.isRemoved(anchor)) {
+                        nearest = Math.min(nearest, Math.max(
+                                Math.abs(ChunkKeys.x(chunks[i]) - ChunkKeys.x(anchors.getKey(anchor))),
+                                Math.abs(ChunkKeys.z(chunks[i]) - ChunkKeys.z(anchors.getKey(anchor)))));
+                    }
+                }
+                assertEquals("round " + round, nearest, distances[i]);
+            }
+        }
+    }
+
+    private static LongHashSet randomChunks(Random random) {
+        return randomChunks(random, 40);
+    }
+
+    private static LongHashSet randomChunks(Random random, int size) {
+        LongHashSet loaded = new LongHashSet();
+        for (int i = size * size * 9 / 16; i > 0; i--) {
+            loaded.add(ChunkKeys.of(random.nextInt(size), random.nextInt(size)));
+        }
+        return loaded;
+    }
+
+    private static Anchors randomAnchors(Random random, int count) {
+        return randomAnchors(random, count, 40);
+    }
+
+    private static Anchors randomAnchors(Random random, int count, int size) {
+        Anchors anchors = new Anchors();
+        for (int i = 0; i < count; i++) {
+            anchors.add(ChunkKeys.of(random.nextInt(size), random.nextInt(size)), 1 + random.nextInt(8),
+                    AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+        }
+        return anchors;
+    }
+}
@@ -0,0 +1,107 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReachabilityIndexTest {
+
+    private static class TestAnchor {
+        final long key;
+        final int radius;
+        final AnchorType type;
+
+        TestAnchor(long key, int radius, AnchorType type) {
+            this.key = key;
+            this.radius = radius;
+            this.type = type;
+        }
+    }
+
+    @Test
+    public void matchesFullScanAfterRandomChanges() {
+        runRandomChanges(99, false);
+    }
+
+    @Test
+    public void matchesFullScanWhenSlicedWithChangesInBetween() {
+        runRandomChanges(123, true);
+    }
+
+    private void runRandomChanges(long seed, boolean sliced) {
+        Random random = new Random(seed);
+        for (int round = 0; round < 20; round++) {
+            ReachabilityIndex index = new ReachabilityIndex();
+            LongHashSet loaded = new LongHashSet();
+            List<TestAnchor> anchorList = new ArrayList<>();
+
+            for (int step = 0; step < 200; step++) {
+                boolean done;
+                do {
+                    randomChanges(random, index, loaded, anchorList);
+                    // a budget of 1ns stops the fill at its first clock check
+                    done = sliced ? index.update(1) : index.update(0);
+                } while (!done);
+
+                Reachability incremental = index.getReachability();
+                Reachability full = MultiSourceFloodFill.find(loaded, toAnchors(anchorList));
+
+                assertEquals("round " + round + " step " + step, full.size(), incremental.size());
+                full.forEachReached((chunk, owner) -> assertTrue(incremental.isReached(chunk)));
+                assertEquals(loaded.size() - full.size(), index.getOrphanCount());
+                index.forEachOrphan(chunk -> {
+                    assertTrue(loaded.contains(chunk));
+                    assertTrue(!full.isReached(chunk));
+                });
+
+                int total = 0;
+                for (AnchorType type : AnchorType.values()) {
+                    total += incremental.getCount(type);
+                }
+                assertEquals(incremental.size(), total);
+            }
+        }
+    }
+
+    private void randomChanges(Random random, ReachabilityIndex index, LongHashSet loaded, List<TestAnchor> anchorList) {
+        // a burst of loads and unloads
+        for (int i = random.nextInt(40); i > 0; i--) {
+            long chunk = ChunkKeys.of(random.nextInt(48), random.nextInt(48));
+            if (random.nextInt(5) < 3) {
+                loaded.add(chunk);
+                index.chunkLoaded(chunk);
+            } else {
+                loaded.remove(chunk);
+                index.chunkUnloaded(chunk);
+            }
+        }
+
+        // sometimes move, add or remove anchors
+        if (random.nextInt(3) == 0) {
+            if (!anchorList.isEmpty() && random.nextBoolean()) {
+                anchorList.remove(random.nextInt(anchorList.size()));
+            }
+            if (anchorList.size() < 8 && random.nextBoolean()) {
+                int radius = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(8);
+                anchorList.add(new TestAnchor(ChunkKeys.of(random.nextInt(48), random.nextInt(48)), radius,
+                        AnchorType.values()[random.nextInt(AnchorType.values().length)]));
+            }
+            index.setAnchors(toAnchors(anchorList));
+        }
+    }
+
+    private Anchors toAnchors(List<TestAnchor> anchorList) {
+        Anchors anchors = new Anchors();
+        for (TestAnchor anchor : anchorList) {
+            anchors.add(anchor.key, anchor.radius, anchor.type);
+        }
+        return anchors;
+    }
+}
@@ -0,0 +1,72 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThrashDetectorTest {
+    private static final int RELOADS = 3;
+    private static final int WINDOW = 1000;
+    private static final int PIN = 5000;
+
+    @Test
+    public void pinsAfterEnoughReloadsWithinTheWindow() {
+        ThrashDetector thrash = new ThrashDetector();
+        long chunk = ChunkKeys.of(3, -7);
+
+        assertFalse(thrash.reloaded(chunk, 0, RELOADS, WINDOW, PIN));
+        assertFalse(thrash.reloaded(chunk, 600, RELOADS, WINDOW, PIN));
+        // the first reload has left the window by now
+        assertFalse(thrash.reloaded(chunk, 1100, RELOADS, WINDOW, PIN));
+        assertEquals(2, thrash.getReloads(chunk));
+        assertTrue(thrash.reloaded(chunk, 1200, RELOADS, WINDOW, PIN));
+        assertTrue(thrash.isPinned(chunk));
+    }
+
+    @Test
+    public void pinsExpire() {
+        ThrashDetector thrash = new ThrashDetector();
+        long chunk = ChunkKeys.of(0, 0);
+        for (int i = 0; i < RELOADS; i++) {
+            thrash.reloaded(chunk, i, RELOADS, WINDOW, PIN);
+        }
+
+        assertFalse(thrash.expire(PIN, WINDOW));
+        assertTrue(thrash.isPinned(chunk));
+        assertEquals(0, thrash.getReloads(chunk));
+        assertTrue(thrash.expire(PIN + RELOADS, WINDOW));
+        assertFalse(thrash.isPinned(chunk));
+    }
+
+    @Test
+    public void keepsTheWorstOffendersPinned() {
+        ThrashDetector thrash = new ThrashDetector();
+        for (int i = 0; i < ThrashDetector.MAX_PINS; i++) {
+            for (int r = 0; r < RELOADS; r++) {
+                thrash.reloaded(ChunkKeys.of(i, 0), r, RELOADS, WINDOW, PIN);
+            }
+        }
+        assertEquals(ThrashDetector.MAX_PINS, thrash.getPinCount());
+
+        // as bad as the pinned ones: no room
+        long worse = ChunkKeys.of(0, 100);
+        for (int r = 0; r < RELOADS; r++) {
+            assertFalse(thrash.reloaded(worse, 10 + r, RELOADS, WINDOW, PIN));
+        }
+        // worse than all of them: takes a pin
+        assertTrue(thrash.reloaded(worse, 20, RELOADS, WINDOW, PIN));
+        assertTrue(thrash.isPinned(worse));
+        assertEquals(ThrashDetector.MAX_PINS, thrash.getPinCount());
+
+        List<ThrashDetector.Offender> worst = thrash.getWorst(3, 30);
+        assertEquals(3, worst.size());
+        assertEquals(worse, worst.get(0).getChunk());
+        assertEquals(RELOADS + 1, worst.get(0).getReloads());
+        assertEquals(PIN - 10, worst.get(0).getPinnedFor());
+    }
+}
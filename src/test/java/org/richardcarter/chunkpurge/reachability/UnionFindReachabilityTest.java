@@ -0,0 +1,96 @@
+package org.richardcarter.chunkpurge.reachability;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.util.ChunkKeys;
+import org.richardcarter.chunkpurge.util.LongHashSet;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnionFindReachabilityTest {
+
+    @Test
+    public void reachesWhatTheFloodFillReaches() {
+        Random random = new Random(23);
+        for (int round = 0; round < 200; round++) {
+            int size = 20 + random.nextInt(100);
+            LongHashSet loaded = new LongHashSet();
+            for (int i = size * size * (4 + random.nextInt(6)) / 16; i > 0; i--) {
+                loaded.add(ChunkKeys.of(random.nextInt(size) - size / 2, random.nextInt(size) - size / 2));
+            }
+            Anchors anchors = new Anchors();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                int radius = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(40);
+                anchors.add(ChunkKeys.of(random.nextInt(size) - size / 2, random.nextInt(size) - size / 2), radius,
+                        AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+            }
+            // and a strip well away from the rest with an anchor without a limit, which mustn't lift the limit of
+            // the others
+            int strip = 1 + random.nextInt(40);
+            for (int x = 0; x < strip; x++) {
+                loaded.add(ChunkKeys.of(1000 + x, 0));
+            }
+            anchors.add(ChunkKeys.of(1000 + random.nextInt(strip), 0), 0,
+                    AnchorType.values()[random.nextInt(AnchorType.values().length)]);
+
+            Reachability expected = MultiSourceFloodFill.find(loaded, anchors);
+            UnionFindReachability actual = UnionFindReachability.find(loaded.toArray(), anchors);
+
+            String message = "round " + round;
+            assertEquals(message, loaded.size(), actual.getLoadedCount());
+            assertEquals(message, expected.size(), actual.getReachedCount());
+            int counted = 0;
+            for (AnchorType type : AnchorType.values()) {
+                counted += actual.getCount(type);
+            }
+            assertEquals(message, expected.size(), counted);
+            loaded.forEach(chunk -> {
+                assertEquals(message, expected.isReached(chunk), actual.isReached(chunk));
+                assertTrue(message, actual.isLoaded(chunk));
+            });
+        }
+    }
+
+    @Test
+    public void radiusLimitSplitsAKeptComponent() {
+        // a U of chunks with a player at the end of one arm: the radius cuts the bend off, so the other arm stays
+        // orphaned even though it is within range
+        LongHashSet loaded = new LongHashSet();
+        for (int x = 0; x <= 20; x++) {
+            loaded.add(ChunkKeys.of(x, 0));
+        }
+        for (int x = 0; x <= 20; x++) {
+            loaded.add(ChunkKeys.of(x, 2));
+        }
+        loaded.add(ChunkKeys.of(20, 1));
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(0, 0), 10, AnchorType.PLAYER);
+
+        UnionFindReachability reachability = UnionFindReachability.find(loaded.toArray(), anchors);
+        assertTrue(reachability.isReached(ChunkKeys.of(10, 0)));
+        assertFalse(reachability.isReached(ChunkKeys.of(11, 0)));
+        assertFalse(reachability.isReached(ChunkKeys.of(0, 2)));
+        assertEquals(11, reachability.getReachedCount());
+        assertEquals(11, reachability.getCount(AnchorType.PLAYER));
+    }
+
+    @Test
+    public void dropsComponentsWithoutAnchors() {
+        LongHashSet loaded = new LongHashSet();
+        for (int x = 0; x < 5; x++) {
+            loaded.add(ChunkKeys.of(x, 0));
+            loaded.add(ChunkKeys.of(x + 100, 0));
+        }
+        Anchors anchors = new Anchors();
+        anchors.add(ChunkKeys.of(0, 0), 0, AnchorType.TICKET);
+
+        UnionFindReachability reachability = UnionFindReachability.find(loaded.toArray(), anchors);
+        assertEquals(5, reachability.getReachedCount());
+        assertEquals(5, reachability.getCount(AnchorType.TICKET));
+        assertFalse(reachability.isReached(ChunkKeys.of(100, 0)));
+        assertTrue(reachability.isLoaded(ChunkKeys.of(100, 0)));
+    }
+}
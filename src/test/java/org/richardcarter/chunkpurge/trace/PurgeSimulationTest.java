@@ -0,0 +1,85 @@
+package org.richardcarter.chunkpurge.trace;
+
+import org.junit.Test;
+import org.richardcarter.chunkpurge.Protos.ChunkLoad;
+import org.richardcarter.chunkpurge.Protos.ChunkUnload;
+import org.richardcarter.chunkpurge.Protos.PlayerPosition;
+import org.richardcarter.chunkpurge.Protos.Tick;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.Protos.TraceHeader;
+import org.richardcarter.chunkpurge.reachability.IdleTracker;
+
+import static org.junit.Assert.assertEquals;
+
+public class PurgeSimulationTest {
+    private static final PurgeSimulation.Settings SETTINGS = new PurgeSimulation.Settings(10, 10, false, 0, 0, 0, 100, 0,
+            0, 100, 0, 100, 1, 100);
+
+    @Test
+    public void purgesUnreachableAndCountsThrash() {
+        PurgeSimulation simulation = new PurgeSimulation(SETTINGS);
+        TraceHeader.Builder header = TraceHeader.newBuilder()
+                .setViewDistance(2)
+                .addPlayers(PlayerPosition.newBuilder().setPlayer("p").setChunk(TraceState.coord(0, 0)));
+        for (int x = -2; x <= 2; x++) {
+            for (int z = -2; z <= 2; z++) {
+                header.addLoadedChunks(TraceState.coord(x, z));
+            }
+        }
+        header.addLoadedChunks(TraceState.coord(20, 20));
+        header.addLoadedChunks(TraceState.coord(20, 21));
+        header.addLoadedChunks(TraceState.coord(30, 30));
+        simulation.accept(TraceEvent.newBuilder().setWorldTime(100).setHeader(header).build());
+
+        // the purge at tick 10 unloads the three chunks out of the player's reach
+        simulation.accept(tick(120));
+        // the server unloads one of them itself later on, so loading it again isn't the purge's doing
+        simulation.accept(TraceEvent.newBuilder().setWorldTime(130)
+                .setChunkUnload(ChunkUnload.newBuilder().setChunk(TraceState.coord(30, 30))).build());
+        simulation.accept(load(140, 30, 30));
+        // a resync doesn't bring back what the purge unloaded
+        simulation.accept(TraceEvent.newBuilder().setWorldTime(150).setHeader(header).build());
+        simulation.accept(load(160, 20, 20));
+        simulation.accept(load(150 + IdleTracker.RELOAD_WINDOW_TICKS, 20, 21));
+
+        PurgeSimulation.Report report = simulation.getReport();
+        assertEquals(50 + IdleTracker.RELOAD_WINDOW_TICKS, report.getTicks());
+        assertEquals(28, report.getPeakLoaded());
+        // the three, then again the two loaded back before a later purge
+        assertEquals(5, report.getPurgeUnloads());
+        assertEquals(0, report.getTraceUnloads());
+        assertEquals(2, report.getReloads());
+        assertEquals(1, report.getThrash());
+    }
+
+    @Test
+    public void pinsChunksThatKeepComingBack() {
+        PurgeSimulation simulation = new PurgeSimulation(new PurgeSimulation.Settings(10, 10, false, 0, 0, 0, 100, 0,
+                0, 100, 2, 1000, 1, 1000));
+        TraceHeader.Builder header = TraceHeader.newBuilder()
+                .setViewDistance(2)
+                .addPlayers(PlayerPosition.newBuilder().setPlayer("p").setChunk(TraceState.coord(0, 0)))
+                .addLoadedChunks(TraceState.coord(0, 0))
+                .addLoadedChunks(TraceState.coord(20, 20));
+        simulation.accept(TraceEvent.newBuilder().setWorldTime(100).setHeader(header).build());
+
+        simulation.accept(load(130, 20, 20));
+        // the second reload pins it, so later purges leave it alone
+        simulation.accept(load(160, 20, 20));
+        simulation.accept(tick(300));
+
+        PurgeSimulation.Report report = simulation.getReport();
+        assertEquals(2, report.getPurgeUnloads());
+        assertEquals(2, report.getThrash());
+        assertEquals(1, report.getPins());
+    }
+
+    private static TraceEvent tick(long worldTime) {
+        return TraceEvent.newBuilder().setWorldTime(worldTime).setTick(Tick.newBuilder().setTimeMillis(worldTime * 50)).build();
+    }
+
+    private static TraceEvent load(long worldTime, int x, int z) {
+        return TraceEvent.newBuilder().setWorldTime(worldTime)
+                .setChunkLoad(ChunkLoad.newBuilder().setChunk(TraceState.coord(x, z))).build();
+    }
+}
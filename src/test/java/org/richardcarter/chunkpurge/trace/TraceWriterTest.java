@@ -0,0 +1,68 @@
+package org.richardcarter.chunkpurge.trace;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.richardcarter.chunkpurge.Protos.ForceChunk;
+import org.richardcarter.chunkpurge.Protos.Ticket;
+import org.richardcarter.chunkpurge.Protos.TraceEvent;
+import org.richardcarter.chunkpurge.Protos.TraceHeader;
+import org.richardcarter.chunkpurge.util.SpscRingBuffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class TraceWriterTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("traces").toFile();
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void eventsThatStartAFileAreCountedOnce() throws IOException {
+        SpscRingBuffer<TraceWriter.Entry> buffer = new SpscRingBuffer<>(16);
+        // every event after the first starts a new file, and only the newest is kept
+        TraceWriter writer = new TraceWriter(buffer, directory, 1, 1);
+        Ticket ticket = Ticket.newBuilder().setChunk(TraceState.coord(3, 4)).setModId("mod").build();
+        buffer.offer(new TraceWriter.Entry(0, TraceEvent.newBuilder().setWorldTime(1)
+                .setHeader(TraceHeader.newBuilder().setViewDistance(2)).build()));
+        buffer.offer(new TraceWriter.Entry(0, TraceEvent.newBuilder().setWorldTime(2)
+                .setForceChunk(ForceChunk.newBuilder().setTicket(ticket)).build()));
+        writer.stop();
+        writer.run();
+
+        File[] traces = new File(directory, "DIM0").listFiles((dir, name) -> name.endsWith(".trace"));
+        assertNotNull(traces);
+        assertEquals(1, traces.length);
+        TraceState state = new TraceState();
+        int events = 0;
+        try (InputStream in = new FileInputStream(traces[0])) {
+            TraceEvent event;
+            while ((event = TraceEvent.parseDelimitedFrom(in)) != null) {
+                state.apply(event);
+                events++;
+            }
+        }
+        assertEquals(2, events);
+        assertEquals(2, state.getViewDistance());
+        assertEquals(1, state.toHeader(0).getTicketsCount());
+    }
+}
@@ -0,0 +1,68 @@
+package org.richardcarter.chunkpurge.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+
+    @Test
+    public void zeroKey() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void matchesHashSet() {
+        Random random = new Random(1234);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+
+        for (int i = 0; i < 100000; i++) {
+            // small coordinate range so adds and removes collide often
+            long key = ChunkKeys.of(random.nextInt(64) - 32, random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                assertEquals(expected.add(key), set.add(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+
+        for (int x = -32; x < 32; x++) {
+            for (int z = -32; z < 32; z++) {
+                long key = ChunkKeys.of(x, z);
+                assertEquals(expected.contains(key), set.contains(key));
+            }
+        }
+
+        Set<Long> iterated = new HashSet<>();
+        set.forEach(iterated::add);
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void chunkKeysRoundTrip() {
+        int[] testNums = {0, 1, -1, 30000000 / 16, -30000000 / 16, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int x : testNums) {
+            for (int z : testNums) {
+                long key = ChunkKeys.of(x, z);
+                assertEquals(x, ChunkKeys.x(key));
+                assertEquals(z, ChunkKeys.z(key));
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.richardcarter.chunkpurge.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpscRingBufferTest {
+
+    @Test
+    public void boundedAndInOrder() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(5);
+        assertEquals(8, buffer.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(8));
+        for (int i = 1; i <= 8; i++) {
+            assertEquals(i, (int) buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void handsOverBetweenThreads() throws InterruptedException {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(64);
+        final int count = 1000000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!buffer.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        for (int expected = 0; expected < count; ) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                assertEquals(expected++, (int) value);
+            }
+        }
+        producer.join();
+        assertNull(buffer.poll());
+    }
+}